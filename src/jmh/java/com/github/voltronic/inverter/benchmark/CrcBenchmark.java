@@ -0,0 +1,42 @@
+package com.github.voltronic.inverter.benchmark;
+
+import com.github.voltronic.inverter.digest.V1VoltronicCrc;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CrcBenchmark {
+
+  @Param({"8", "110", "1024", "8192"})
+  public int size;
+
+  private byte[] input;
+
+  @Setup
+  public void setup() {
+    this.input = new byte[this.size];
+    new Random(this.size).nextBytes(this.input);
+  }
+
+  @Benchmark
+  public int crc() {
+    return V1VoltronicCrc.calculate(this.input, 0, this.size);
+  }
+
+}
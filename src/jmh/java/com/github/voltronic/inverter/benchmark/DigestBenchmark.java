@@ -0,0 +1,54 @@
+package com.github.voltronic.inverter.benchmark;
+
+import com.github.voltronic.inverter.digest.V1VoltronicMessageDigest;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DigestBenchmark {
+
+  @Param({"8", "110", "1024", "8192"})
+  public int size;
+
+  @Param({"HALF_BYTE", "BYTE", "SLICING_BY_4", "SLICING_BY_8", "AUTOMATIC"})
+  public V1VoltronicMessageDigest.CrcStrategy strategy;
+
+  private byte[] input;
+  private byte[] output;
+  private MessageDigest digest;
+
+  @Setup
+  public void setup() {
+    this.input = new byte[this.size];
+    new Random(this.size).nextBytes(this.input);
+    this.output = new byte[2];
+    this.digest = new V1VoltronicMessageDigest(this.strategy);
+  }
+
+  @Benchmark
+  public int digest() throws DigestException {
+    this.digest.reset();
+    this.digest.update(this.input, 0, this.size);
+    this.digest.digest(this.output, 0, this.output.length);
+    return this.output[0] << 8 | this.output[1];
+  }
+
+}
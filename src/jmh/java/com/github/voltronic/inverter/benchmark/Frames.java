@@ -0,0 +1,47 @@
+package com.github.voltronic.inverter.benchmark;
+
+import com.github.voltronic.inverter.digest.V1VoltronicMessageDigest;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+
+final class Frames {
+
+  static final String QPIGS_RESPONSE =
+      "(240.1 49.9 240.1 49.9 0240 0185 004 435 54.00 000 100 0055 0000 000.0 00.00 00000 00010101 "
+          + "00 00 00000 110";
+  static final String QPIRI_RESPONSE =
+      "(230.0 21.7 230.0 50.0 21.7 5000 4000 48.0 46.0 42.0 56.4 54.0 2 02 060 0 1 2 1 01 0 0 "
+          + "54.0 0 1";
+  static final String QMOD_RESPONSE = "(B";
+
+  private static final Charset ASCII = Charset.forName("US-ASCII");
+
+  private Frames() {
+  }
+
+  static String response(final String command) {
+    if ("QPIGS".equals(command)) {
+      return QPIGS_RESPONSE;
+    } else if ("QPIRI".equals(command)) {
+      return QPIRI_RESPONSE;
+    } else if ("QMOD".equals(command)) {
+      return QMOD_RESPONSE;
+    } else {
+      throw new IllegalArgumentException("No response for " + command);
+    }
+  }
+
+  static byte[] frame(final String data) {
+    final byte[] dataBytes = data.getBytes(ASCII);
+    final MessageDigest digest = new V1VoltronicMessageDigest();
+    digest.update(dataBytes);
+    final byte[] digestBytes = digest.digest();
+
+    final byte[] frame = new byte[dataBytes.length + digestBytes.length + 1];
+    System.arraycopy(dataBytes, 0, frame, 0, dataBytes.length);
+    System.arraycopy(digestBytes, 0, frame, dataBytes.length, digestBytes.length);
+    frame[frame.length - 1] = (byte) '\r';
+    return frame;
+  }
+
+}
@@ -0,0 +1,46 @@
+package com.github.voltronic.inverter.benchmark;
+
+import com.github.voltronic.inverter.Device;
+
+/**
+ * Device answering every write, or every call to {@link #respond()}, with the same response frame
+ * handed out at most {@code bytesPerRead} bytes at a time.
+ */
+final class LoopbackDevice implements Device {
+
+  private final byte[] response;
+  private final int bytesPerRead;
+  private int position;
+  private long bytesWritten;
+
+  LoopbackDevice(final byte[] response, final int bytesPerRead) {
+    this.response = response.clone();
+    this.bytesPerRead = bytesPerRead;
+    this.position = response.length;
+  }
+
+  void respond() {
+    this.position = 0;
+  }
+
+  long getBytesWritten() {
+    return this.bytesWritten;
+  }
+
+  public int read(final byte[] b, final int off, final int len) {
+    final int length = Math.min(
+        Math.min(len, this.bytesPerRead), this.response.length - this.position);
+    System.arraycopy(this.response, this.position, b, off, length);
+    this.position += length;
+    return length;
+  }
+
+  public void write(final byte[] b, final int off, final int len) {
+    this.bytesWritten += len;
+    this.respond();
+  }
+
+  public void close() {
+  }
+
+}
@@ -0,0 +1,70 @@
+package com.github.voltronic.inverter.benchmark;
+
+import com.github.voltronic.inverter.protocol.P30Protocol;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadBenchmark {
+
+  @Param({"QPIGS", "QPIRI", "QMOD"})
+  public String command;
+
+  @Param({"1", "3", "8"})
+  public int bytesPerRead;
+
+  private P30Protocol protocol;
+  private LoopbackDevice device;
+  private ByteBuffer buffer;
+
+  @Setup
+  public void setup() {
+    this.protocol = new P30Protocol();
+    this.device = new LoopbackDevice(
+        Frames.frame(Frames.response(this.command)), this.bytesPerRead);
+    this.buffer = ByteBuffer.allocate(1024);
+  }
+
+  @Benchmark
+  public String readString() throws IOException {
+    this.device.respond();
+    return this.protocol.read(this.device, 1, TimeUnit.SECONDS);
+  }
+
+  @Benchmark
+  public int readAscii() throws IOException {
+    this.device.respond();
+    return this.protocol.readAscii(this.device, 1, TimeUnit.SECONDS).getFieldCount();
+  }
+
+  @Benchmark
+  public int readBuffer() throws IOException {
+    this.device.respond();
+    this.buffer.clear();
+    return this.protocol.read(this.device, this.buffer, 1, TimeUnit.SECONDS);
+  }
+
+  @Benchmark
+  public String requestResponse() throws IOException {
+    this.protocol.write(this.device, this.command);
+    return this.protocol.read(this.device, 1, TimeUnit.SECONDS);
+  }
+
+}
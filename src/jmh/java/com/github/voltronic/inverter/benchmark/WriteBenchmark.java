@@ -0,0 +1,62 @@
+package com.github.voltronic.inverter.benchmark;
+
+import com.github.voltronic.inverter.protocol.CommandFrame;
+import com.github.voltronic.inverter.protocol.P30Protocol;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBenchmark {
+
+  @Param({"QPIGS", "QPIRI", "QMOD"})
+  public String command;
+
+  private P30Protocol protocol;
+  private P30Protocol uncachedProtocol;
+  private CommandFrame frame;
+  private LoopbackDevice device;
+
+  @Setup
+  public void setup() {
+    this.protocol = new P30Protocol();
+    this.uncachedProtocol = new P30Protocol();
+    this.uncachedProtocol.setCommandCacheSize(0);
+    this.frame = this.protocol.prepare(this.command);
+    this.device = new LoopbackDevice(new byte[0], 0);
+  }
+
+  @Benchmark
+  public long write() throws IOException {
+    this.protocol.write(this.device, this.command);
+    return this.device.getBytesWritten();
+  }
+
+  @Benchmark
+  public long writeUncached() throws IOException {
+    this.uncachedProtocol.write(this.device, this.command);
+    return this.device.getBytesWritten();
+  }
+
+  @Benchmark
+  public long writePrepared() throws IOException {
+    this.protocol.write(this.device, this.frame);
+    return this.device.getBytesWritten();
+  }
+
+}
@@ -0,0 +1,6 @@
+package com.github.voltronic.inverter.concurrent;
+
+public enum CommandPriority {
+  CONTROL,
+  TELEMETRY
+}
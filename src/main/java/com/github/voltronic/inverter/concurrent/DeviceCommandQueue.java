@@ -0,0 +1,317 @@
+package com.github.voltronic.inverter.concurrent;
+
+import com.github.voltronic.inverter.Device;
+import com.github.voltronic.inverter.Protocol;
+import com.github.voltronic.inverter.exception.TimeoutException;
+import com.github.voltronic.inverter.protocol.P30Protocol;
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serializes commands sent to a single device, commands are executed one at a time on the supplied
+ * executor in priority order and completed through a {@link Future}.
+ *
+ * <p>After a command fails the line is resynchronized before the next command is written, so a
+ * response arriving late is discarded instead of completing the wrong command.  With a
+ * {@link P30Protocol} the write, resync and read of a command all end at its deadline, also on a
+ * {@link com.github.voltronic.inverter.device.TimeoutAwareDevice} whose transport blocks.
+ */
+public class DeviceCommandQueue implements Closeable {
+
+  private static final int MAXIMUM_COMMANDS_PER_DRAIN = 16;
+  private static final long RESYNC_QUIET_NANOSECONDS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final Protocol protocol;
+  private final Device device;
+  private final Executor executor;
+  private final PriorityBlockingQueue<QueuedCommand> queue;
+  private final AtomicLong sequence;
+  private final AtomicBoolean draining;
+  private final Runnable drainer;
+  private volatile boolean resyncRequired;
+  private volatile boolean closed;
+
+  public DeviceCommandQueue(
+      final Protocol protocol,
+      final Device device,
+      final Executor executor) {
+
+    if (protocol == null) {
+      throw new NullPointerException("protocol is null");
+    } else if (device == null) {
+      throw new NullPointerException("device is null");
+    } else if (executor == null) {
+      throw new NullPointerException("executor is null");
+    }
+
+    this.protocol = protocol;
+    this.device = device;
+    this.executor = executor;
+    this.queue = new PriorityBlockingQueue<QueuedCommand>();
+    this.sequence = new AtomicLong();
+    this.draining = new AtomicBoolean();
+    this.drainer = new Runnable() {
+      public void run() {
+        drain();
+      }
+    };
+  }
+
+  public Future<String> submit(
+      final CharSequence command,
+      final long timeout,
+      final TimeUnit timeoutTimeUnit) {
+
+    return this.submit(command, CommandPriority.TELEMETRY, timeout, timeoutTimeUnit, null);
+  }
+
+  public Future<String> submit(
+      final CharSequence command,
+      final CommandPriority priority,
+      final long timeout,
+      final TimeUnit timeoutTimeUnit) {
+
+    return this.submit(command, priority, timeout, timeoutTimeUnit, null);
+  }
+
+  /**
+   * Queue {@code command} for execution, {@code timeout} covers the time spent waiting in the queue
+   * as well as writing the command and reading the response.
+   */
+  public Future<String> submit(
+      final CharSequence command,
+      final CommandPriority priority,
+      final long timeout,
+      final TimeUnit timeoutTimeUnit,
+      final ResponseCallback callback) {
+
+    if (command == null) {
+      throw new NullPointerException("command is null");
+    } else if (priority == null) {
+      throw new NullPointerException("priority is null");
+    } else if (timeout < 0) {
+      throw new IllegalArgumentException("timeout < 0");
+    } else if (timeoutTimeUnit == null) {
+      throw new NullPointerException("timeoutTimeUnit is null");
+    } else if (this.closed) {
+      throw new RejectedExecutionException("queue is closed");
+    }
+
+    final QueuedCommand queuedCommand = new QueuedCommand(
+        new CommandCallable(command.toString(), System.nanoTime(), timeout, timeoutTimeUnit),
+        priority, this.sequence.getAndIncrement(), callback);
+
+    this.queue.add(queuedCommand);
+    if (this.closed && this.queue.remove(queuedCommand)) {
+      queuedCommand.cancel(false);
+      throw new RejectedExecutionException("queue is closed");
+    }
+
+    this.schedule();
+    return queuedCommand;
+  }
+
+  public int size() {
+    return this.queue.size();
+  }
+
+  public boolean isClosed() {
+    return this.closed;
+  }
+
+  /**
+   * Reject new commands and cancel all queued commands, a command already executing is allowed to
+   * complete.
+   */
+  public void close() {
+    this.closed = true;
+
+    QueuedCommand queuedCommand;
+    while ((queuedCommand = this.queue.poll()) != null) {
+      queuedCommand.cancel(false);
+    }
+  }
+
+  private void schedule() {
+    if (this.draining.compareAndSet(false, true)) {
+      try {
+        this.executor.execute(this.drainer);
+      } catch (final RuntimeException e) {
+        this.draining.set(false);
+        throw e;
+      }
+    }
+  }
+
+  private void drain() {
+    try {
+      QueuedCommand queuedCommand;
+      for (int count = 0; count < MAXIMUM_COMMANDS_PER_DRAIN
+          && (queuedCommand = this.queue.poll()) != null; ++count) {
+
+        queuedCommand.run();
+        Thread.interrupted();
+      }
+    } finally {
+      this.draining.set(false);
+
+      if (!this.queue.isEmpty()) {
+        try {
+          this.schedule();
+        } catch (final RejectedExecutionException e) {
+          this.close();
+        }
+      }
+    }
+  }
+
+  private final class CommandCallable implements Callable<String> {
+
+    private final String command;
+    private final long timeout;
+    private final TimeUnit timeoutTimeUnit;
+    private final long deadlineNanoTime;
+
+    private CommandCallable(
+        final String command,
+        final long submitNanoTime,
+        final long timeout,
+        final TimeUnit timeoutTimeUnit) {
+
+      this.command = command;
+      this.timeout = timeout;
+      this.timeoutTimeUnit = timeoutTimeUnit;
+      this.deadlineNanoTime = submitNanoTime + timeoutTimeUnit.toNanos(timeout);
+    }
+
+    public String call() throws Exception {
+      if (System.nanoTime() - this.deadlineNanoTime > 0) {
+        throw new TimeoutException(this.timeout, this.timeoutTimeUnit);
+      }
+
+      try {
+        if (resyncRequired) {
+          this.resync();
+          resyncRequired = false;
+        }
+
+        this.write();
+        return protocol.read(device, this.remainingNanos(), TimeUnit.NANOSECONDS);
+      } catch (final TimeoutException e) {
+        resyncRequired = true;
+        final TimeoutException e2 = new TimeoutException(this.timeout, this.timeoutTimeUnit);
+        e2.initCause(e);
+        throw e2;
+      } catch (final Exception e) {
+        resyncRequired = true;
+        throw e;
+      }
+    }
+
+    /**
+     * Write the command, within the deadline of this command when the protocol supports it.
+     */
+    private void write() throws Exception {
+      if (protocol instanceof P30Protocol) {
+        ((P30Protocol) protocol).write(device, this.command, this.remainingNanos(),
+            TimeUnit.NANOSECONDS);
+      } else {
+        protocol.write(device, this.command);
+      }
+    }
+
+    /**
+     * Discard whatever the failed command left on the line, within the deadline of this command.
+     */
+    private void resync() throws Exception {
+      if (protocol instanceof P30Protocol) {
+        ((P30Protocol) protocol).resync(device, RESYNC_QUIET_NANOSECONDS, this.remainingNanos(),
+            TimeUnit.NANOSECONDS);
+      } else {
+        protocol.clear(device);
+      }
+
+      if (System.nanoTime() - this.deadlineNanoTime > 0) {
+        throw new TimeoutException(this.timeout, this.timeoutTimeUnit);
+      }
+    }
+
+    private long remainingNanos() throws TimeoutException {
+      final long remainingNanos = this.deadlineNanoTime - System.nanoTime();
+      if (remainingNanos < 0) {
+        throw new TimeoutException(this.timeout, this.timeoutTimeUnit);
+      }
+
+      return remainingNanos;
+    }
+
+  }
+
+  private static final class QueuedCommand extends FutureTask<String>
+      implements Comparable<QueuedCommand> {
+
+    private final String command;
+    private final CommandPriority priority;
+    private final long sequence;
+    private final ResponseCallback callback;
+
+    private QueuedCommand(
+        final CommandCallable callable,
+        final CommandPriority priority,
+        final long sequence,
+        final ResponseCallback callback) {
+
+      super(callable);
+      this.command = callable.command;
+      this.priority = priority;
+      this.sequence = sequence;
+      this.callback = callback;
+    }
+
+    public int compareTo(final QueuedCommand other) {
+      final int priorityComparison = this.priority.compareTo(other.priority);
+      if (priorityComparison != 0) {
+        return priorityComparison;
+      } else if (this.sequence < other.sequence) {
+        return -1;
+      } else {
+        return (this.sequence == other.sequence) ? 0 : 1;
+      }
+    }
+
+    public boolean equals(final Object other) {
+      return this == other;
+    }
+
+    public int hashCode() {
+      return System.identityHashCode(this);
+    }
+
+    protected void done() {
+      if (this.callback != null) {
+        try {
+          this.callback.completed(this.command, this.get());
+        } catch (final ExecutionException e) {
+          this.callback.failed(this.command, e.getCause());
+        } catch (final CancellationException e) {
+          this.callback.failed(this.command, e);
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+          this.callback.failed(this.command, e);
+        }
+      }
+    }
+
+  }
+
+}
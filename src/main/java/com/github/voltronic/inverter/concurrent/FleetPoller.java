@@ -0,0 +1,130 @@
+package com.github.voltronic.inverter.concurrent;
+
+import com.github.voltronic.inverter.Device;
+import com.github.voltronic.inverter.protocol.P30Protocol;
+import java.io.Closeable;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Polls many devices from a small number of scheduler threads.
+ *
+ * <p>Devices are never waited on, each poll writes a command and then reads whatever the device
+ * has available, rescheduling itself with a short backoff until the response is complete. A thread
+ * is therefore only occupied while data is actually being moved.
+ */
+public class FleetPoller implements Closeable {
+
+  private final P30Protocol protocol;
+  private final ScheduledExecutorService scheduler;
+  private final boolean ownsScheduler;
+  private final Random random;
+  private volatile long jitterNanos;
+  private volatile boolean closed;
+
+  public FleetPoller(final P30Protocol protocol, final int schedulerThreads) {
+    this(protocol, createScheduler(schedulerThreads), true);
+  }
+
+  public FleetPoller(final P30Protocol protocol, final ScheduledExecutorService scheduler) {
+    this(protocol, scheduler, false);
+  }
+
+  private FleetPoller(
+      final P30Protocol protocol,
+      final ScheduledExecutorService scheduler,
+      final boolean ownsScheduler) {
+
+    if (protocol == null) {
+      throw new NullPointerException("protocol is null");
+    } else if (scheduler == null) {
+      throw new NullPointerException("scheduler is null");
+    }
+
+    this.protocol = protocol;
+    this.scheduler = scheduler;
+    this.ownsScheduler = ownsScheduler;
+    this.random = new Random();
+  }
+
+  public PolledDevice addDevice(final Device device, final PollListener listener) {
+    if (device == null) {
+      throw new NullPointerException("device is null");
+    } else if (listener == null) {
+      throw new NullPointerException("listener is null");
+    } else if (this.closed) {
+      throw new IllegalStateException("poller is closed");
+    }
+
+    return new PolledDevice(this, device, listener);
+  }
+
+  /**
+   * Spread polls by adding a random delay of up to {@code jitter} to every poll, avoiding
+   * synchronized bursts across devices sharing the same intervals.
+   */
+  public void setJitter(final long jitter, final TimeUnit timeUnit) {
+    if (jitter < 0) {
+      throw new IllegalArgumentException("jitter < 0");
+    } else if (timeUnit == null) {
+      throw new NullPointerException("timeUnit is null");
+    } else {
+      this.jitterNanos = timeUnit.toNanos(jitter);
+    }
+  }
+
+  public boolean isClosed() {
+    return this.closed;
+  }
+
+  /**
+   * Stop polling all devices, the scheduler is shut down if it was created by this poller.
+   */
+  public void close() {
+    this.closed = true;
+    if (this.ownsScheduler) {
+      this.scheduler.shutdownNow();
+    }
+  }
+
+  P30Protocol getProtocol() {
+    return this.protocol;
+  }
+
+  ScheduledExecutorService getScheduler() {
+    return this.scheduler;
+  }
+
+  long nextJitterNanos() {
+    return this.randomNanos(this.jitterNanos);
+  }
+
+  long randomNanos(final long bound) {
+    if (bound <= 0) {
+      return 0;
+    } else {
+      return (long) (this.random.nextDouble() * bound);
+    }
+  }
+
+  private static ScheduledExecutorService createScheduler(final int schedulerThreads) {
+    if (schedulerThreads <= 0) {
+      throw new IllegalArgumentException("schedulerThreads <= 0");
+    }
+
+    final AtomicInteger threadCount = new AtomicInteger();
+    return Executors.newScheduledThreadPool(schedulerThreads, new ThreadFactory() {
+      public Thread newThread(final Runnable runnable) {
+        final Thread thread = new Thread(runnable,
+            "voltronic-fleet-poller-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+}
@@ -0,0 +1,12 @@
+package com.github.voltronic.inverter.concurrent;
+
+import com.github.voltronic.inverter.Device;
+import java.io.IOException;
+
+public interface PollListener {
+
+  void onResponse(Device device, String command, String response);
+
+  void onFailure(Device device, String command, IOException cause);
+
+}
@@ -0,0 +1,317 @@
+package com.github.voltronic.inverter.concurrent;
+
+import com.github.voltronic.inverter.Device;
+import com.github.voltronic.inverter.exception.TimeoutException;
+import com.github.voltronic.inverter.protocol.P30Protocol;
+import com.github.voltronic.inverter.protocol.P30Session;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Poll state of a single device registered with a {@link FleetPoller}.
+ *
+ * <p>At most one command is in flight per device, failures only affect the device they occur on
+ * and delay its next poll with an exponential backoff.
+ */
+public final class PolledDevice {
+
+  private static final long DEFAULT_RESPONSE_TIMEOUT_MILLISECONDS = 2000;
+  private static final long INITIAL_READ_INTERVAL_NANOSECONDS = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long MAXIMUM_READ_INTERVAL_NANOSECONDS = TimeUnit.MILLISECONDS.toNanos(50);
+  private static final long INITIAL_FAILURE_BACKOFF_NANOSECONDS = TimeUnit.SECONDS.toNanos(1);
+  private static final long MAXIMUM_FAILURE_BACKOFF_NANOSECONDS = TimeUnit.SECONDS.toNanos(60);
+  private static final int MAXIMUM_DISCARD_READS = 64;
+
+  private final FleetPoller poller;
+  private final P30Protocol protocol;
+  private final P30Session session;
+  private final Device device;
+  private final PollListener listener;
+  private final List<PolledCommand> commands;
+  private final ByteBuffer buffer;
+  private final byte[] discardBuffer;
+  private long responseTimeoutNanos;
+  private PolledCommand current;
+  private long responseDeadlineNanoTime;
+  private long notBeforeNanoTime;
+  private boolean backingOff;
+  private int idleReads;
+  private int consecutiveFailures;
+  private long generation;
+  private boolean removed;
+
+  PolledDevice(final FleetPoller poller, final Device device, final PollListener listener) {
+    this.poller = poller;
+    this.protocol = poller.getProtocol();
+    this.device = device;
+    this.session = this.protocol.newSession(device);
+    this.listener = listener;
+    this.commands = new ArrayList<PolledCommand>();
+    this.buffer = ByteBuffer.allocate(this.protocol.getMaximumBufferSize());
+    this.discardBuffer = new byte[64];
+    this.responseTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(
+        DEFAULT_RESPONSE_TIMEOUT_MILLISECONDS);
+  }
+
+  public Device getDevice() {
+    return this.device;
+  }
+
+  /**
+   * Poll {@code command} every {@code interval}, the first poll happens at a random point within
+   * the first interval.
+   */
+  public synchronized void schedule(
+      final String command,
+      final long interval,
+      final TimeUnit timeUnit) {
+
+    if (command == null) {
+      throw new NullPointerException("command is null");
+    } else if (interval <= 0) {
+      throw new IllegalArgumentException("interval <= 0");
+    } else if (timeUnit == null) {
+      throw new NullPointerException("timeUnit is null");
+    } else if (this.removed) {
+      throw new IllegalStateException("device was removed");
+    }
+
+    final long intervalNanos = timeUnit.toNanos(interval);
+    final long firstPollNanoTime = System.nanoTime() + this.poller.randomNanos(intervalNanos);
+
+    for (int index = 0; index < this.commands.size(); ++index) {
+      if (this.commands.get(index).command.equals(command)) {
+        this.commands.remove(index);
+        break;
+      }
+    }
+
+    this.commands.add(new PolledCommand(command, intervalNanos, firstPollNanoTime));
+    if (this.current == null) {
+      this.rescheduleNextDue();
+    }
+  }
+
+  public synchronized void setResponseTimeout(final long timeout, final TimeUnit timeUnit) {
+    if (timeout <= 0) {
+      throw new IllegalArgumentException("timeout <= 0");
+    } else if (timeUnit == null) {
+      throw new NullPointerException("timeUnit is null");
+    } else {
+      this.responseTimeoutNanos = timeUnit.toNanos(timeout);
+    }
+  }
+
+  public synchronized int getConsecutiveFailures() {
+    return this.consecutiveFailures;
+  }
+
+  /**
+   * Stop polling this device, a response currently being read is abandoned.
+   */
+  public synchronized void remove() {
+    this.removed = true;
+    ++this.generation;
+    this.commands.clear();
+    this.current = null;
+  }
+
+  private void reschedule(final long nanoTime) {
+    final long scheduleGeneration = ++this.generation;
+    final Runnable step = new Runnable() {
+      public void run() {
+        step(scheduleGeneration);
+      }
+    };
+
+    try {
+      this.poller.getScheduler().schedule(
+          step, Math.max(0, nanoTime - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (final RejectedExecutionException e) {
+      this.removed = true;
+    }
+  }
+
+  private void step(final long scheduleGeneration) {
+    String completedCommand = null;
+    String response = null;
+    IOException failure = null;
+
+    synchronized (this) {
+      if (this.removed || scheduleGeneration != this.generation) {
+        return;
+      } else if (this.poller.isClosed()) {
+        this.remove();
+        return;
+      }
+
+      final long nanoTime = System.nanoTime();
+      try {
+        if (this.current == null) {
+          final PolledCommand due = this.nextDue();
+          if (due == null) {
+            return;
+          }
+
+          final long dueNanoTime = this.dueNanoTime(due);
+          if (dueNanoTime - nanoTime > 0) {
+            this.reschedule(dueNanoTime);
+            return;
+          }
+
+          this.start(due, nanoTime);
+        }
+
+        final int length = this.session.readAvailable(this.buffer);
+        if (length >= 0) {
+          this.buffer.flip();
+          completedCommand = this.current.command;
+          response = this.protocol.getCharset().decode(this.buffer).toString();
+          this.consecutiveFailures = 0;
+          this.backingOff = false;
+          this.current = null;
+        } else if (System.nanoTime() - this.responseDeadlineNanoTime > 0) {
+          throw new TimeoutException(this.responseTimeoutNanos, TimeUnit.NANOSECONDS);
+        } else {
+          this.reschedule(nanoTime + this.readIntervalNanos());
+          return;
+        }
+      } catch (final IOException e) {
+        failure = e;
+      } catch (final RuntimeException e) {
+        failure = new IOException(e.toString());
+        failure.initCause(e);
+      }
+
+      if (failure != null) {
+        completedCommand = (this.current == null) ? null : this.current.command;
+        this.current = null;
+        this.fail();
+      }
+
+      this.rescheduleNextDue();
+    }
+
+    if (failure != null) {
+      this.notifyListener(completedCommand, null, failure);
+    } else {
+      this.notifyListener(completedCommand, response, null);
+    }
+  }
+
+  private void start(final PolledCommand command, final long nanoTime) throws IOException {
+    command.nextBaseNanoTime += command.intervalNanos;
+    if (command.nextBaseNanoTime - nanoTime < 0) {
+      command.nextBaseNanoTime = nanoTime + command.intervalNanos;
+    }
+
+    command.dueNanoTime = command.nextBaseNanoTime + this.poller.nextJitterNanos();
+    this.current = command;
+    this.idleReads = 0;
+    this.buffer.clear();
+    this.discardAvailable();
+
+    this.responseDeadlineNanoTime = nanoTime + this.responseTimeoutNanos;
+    this.session.write(command.command);
+  }
+
+  private void discardAvailable() throws IOException {
+    for (int count = 0; count < MAXIMUM_DISCARD_READS; ++count) {
+      if (this.device.read(this.discardBuffer, 0, this.discardBuffer.length) <= 0) {
+        return;
+      }
+    }
+  }
+
+  private void fail() {
+    final int shift = Math.min(this.consecutiveFailures, 16);
+    if (this.consecutiveFailures < Integer.MAX_VALUE) {
+      ++this.consecutiveFailures;
+    }
+
+    this.backingOff = true;
+    this.notBeforeNanoTime = System.nanoTime() + Math.min(
+        MAXIMUM_FAILURE_BACKOFF_NANOSECONDS, INITIAL_FAILURE_BACKOFF_NANOSECONDS << shift);
+  }
+
+  /**
+   * Time {@code command} is due, delayed until the end of a failure backoff.
+   */
+  private long dueNanoTime(final PolledCommand command) {
+    if (this.backingOff && this.notBeforeNanoTime - command.dueNanoTime > 0) {
+      return this.notBeforeNanoTime;
+    } else {
+      return command.dueNanoTime;
+    }
+  }
+
+  private void rescheduleNextDue() {
+    final PolledCommand due = this.nextDue();
+    if (due != null) {
+      this.reschedule(this.dueNanoTime(due));
+    }
+  }
+
+  private PolledCommand nextDue() {
+    PolledCommand due = null;
+    for (int index = 0; index < this.commands.size(); ++index) {
+      final PolledCommand command = this.commands.get(index);
+      if (due == null || command.dueNanoTime - due.dueNanoTime < 0) {
+        due = command;
+      }
+    }
+
+    return due;
+  }
+
+  private long readIntervalNanos() {
+    final int shift = Math.min(this.idleReads, 16);
+    if (this.idleReads < Integer.MAX_VALUE) {
+      ++this.idleReads;
+    }
+
+    return Math.min(MAXIMUM_READ_INTERVAL_NANOSECONDS, INITIAL_READ_INTERVAL_NANOSECONDS << shift);
+  }
+
+  private void notifyListener(
+      final String command,
+      final String response,
+      final IOException failure) {
+
+    try {
+      if (failure != null) {
+        this.listener.onFailure(this.device, command, failure);
+      } else if (command != null) {
+        this.listener.onResponse(this.device, command, response);
+      }
+    } catch (final RuntimeException e) {
+      final Thread thread = Thread.currentThread();
+      thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+    }
+  }
+
+  private static final class PolledCommand {
+
+    private final String command;
+    private final long intervalNanos;
+    private long nextBaseNanoTime;
+    private long dueNanoTime;
+
+    private PolledCommand(
+        final String command,
+        final long intervalNanos,
+        final long firstPollNanoTime) {
+
+      this.command = command;
+      this.intervalNanos = intervalNanos;
+      this.nextBaseNanoTime = firstPollNanoTime - intervalNanos;
+      this.dueNanoTime = firstPollNanoTime;
+    }
+
+  }
+
+}
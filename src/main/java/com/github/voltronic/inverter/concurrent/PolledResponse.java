@@ -0,0 +1,84 @@
+package com.github.voltronic.inverter.concurrent;
+
+import com.github.voltronic.inverter.Device;
+import com.github.voltronic.inverter.response.TypedResponse;
+import java.io.IOException;
+
+/**
+ * Outcome of one poll, either a response or the failure that prevented it.
+ */
+public final class PolledResponse {
+
+  private final Device device;
+  private final String command;
+  private final String response;
+  private final TypedResponse typedResponse;
+  private final IOException failure;
+  private final long timestampMillis;
+
+  PolledResponse(
+      final Device device,
+      final String command,
+      final String response,
+      final TypedResponse typedResponse,
+      final IOException failure,
+      final long timestampMillis) {
+
+    this.device = device;
+    this.command = command;
+    this.response = response;
+    this.typedResponse = typedResponse;
+    this.failure = failure;
+    this.timestampMillis = timestampMillis;
+  }
+
+  public Device getDevice() {
+    return this.device;
+  }
+
+  /**
+   * @return command polled, {@code null} when a failure could not be attributed to a command
+   */
+  public String getCommand() {
+    return this.command;
+  }
+
+  /**
+   * @return response or {@code null} if the poll failed
+   */
+  public String getResponse() {
+    return this.response;
+  }
+
+  /**
+   * @return response decoded by the decoder added to the publisher for the command, {@code null}
+   *         if there is none or the poll failed
+   */
+  public TypedResponse getTypedResponse() {
+    return this.typedResponse;
+  }
+
+  public IOException getFailure() {
+    return this.failure;
+  }
+
+  public boolean isSuccessful() {
+    return this.failure == null;
+  }
+
+  /**
+   * @return time the poll completed in milliseconds since the epoch
+   */
+  public long getTimestampMillis() {
+    return this.timestampMillis;
+  }
+
+  public String toString() {
+    return "PolledResponse[command=" + this.command
+        + ", response=" + this.response
+        + ", typedResponse=" + this.typedResponse
+        + ", failure=" + this.failure
+        + ", timestampMillis=" + this.timestampMillis + "]";
+  }
+
+}
@@ -0,0 +1,11 @@
+package com.github.voltronic.inverter.concurrent;
+
+/**
+ * Source of items delivered to {@link Subscriber}s as they request them, shaped after
+ * {@code java.util.concurrent.Flow.Publisher} which is not available on the targeted Java version.
+ */
+public interface Publisher<T> {
+
+  void subscribe(Subscriber<? super T> subscriber);
+
+}
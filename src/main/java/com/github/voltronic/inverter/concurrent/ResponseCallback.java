@@ -0,0 +1,9 @@
+package com.github.voltronic.inverter.concurrent;
+
+public interface ResponseCallback {
+
+  void completed(String command, String response);
+
+  void failed(String command, Throwable cause);
+
+}
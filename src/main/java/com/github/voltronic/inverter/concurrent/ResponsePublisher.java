@@ -0,0 +1,348 @@
+package com.github.voltronic.inverter.concurrent;
+
+import com.github.voltronic.inverter.Device;
+import com.github.voltronic.inverter.exception.MalformedResponseException;
+import com.github.voltronic.inverter.response.TypedResponse;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the responses of a {@link FleetPoller} to subscribers that consume at their own pace.
+ *
+ * <p>Register the publisher as the {@link PollListener} of one or more devices.  Every subscriber
+ * holds at most one undelivered response per device and command, a newer response replaces the
+ * one still waiting, so a slow subscriber receives the latest state instead of a growing backlog
+ * and never blocks the poller.  Items are delivered on {@code executor}, one at a time per
+ * subscriber.
+ *
+ * <p>Responses to a command with a decoder added by {@link #addDecoder(Class)} are published
+ * together with their {@link TypedResponse}.
+ */
+public class ResponsePublisher implements Publisher<PolledResponse>, PollListener, Closeable {
+
+  private static final Charset CHARSET = Charset.forName("US-ASCII");
+
+  private final Executor executor;
+  private final ConcurrentMap<String, Class<? extends TypedResponse>> decoders =
+      new ConcurrentHashMap<String, Class<? extends TypedResponse>>();
+  private final List<ResponseSubscription> subscriptions =
+      new CopyOnWriteArrayList<ResponseSubscription>();
+  private final AtomicLong replacedResponses = new AtomicLong();
+  private volatile boolean closed;
+
+  public ResponsePublisher(final Executor executor) {
+    if (executor == null) {
+      throw new NullPointerException("executor is null");
+    }
+
+    this.executor = executor;
+  }
+
+  /**
+   * @throws java.util.concurrent.RejectedExecutionException if the executor rejects delivering
+   *         {@code onSubscribe}, the subscriber is then not registered and receives no signals
+   */
+  public void subscribe(final Subscriber<? super PolledResponse> subscriber) {
+    if (subscriber == null) {
+      throw new NullPointerException("subscriber is null");
+    }
+
+    final ResponseSubscription subscription = new ResponseSubscription(subscriber);
+    this.subscriptions.add(subscription);
+    if (this.closed) {
+      subscription.complete();
+    }
+
+    subscription.start();
+  }
+
+  /**
+   * Decode every response to the command of {@code type} into a new instance of {@code type}.
+   *
+   * <p>A response that cannot be decoded is published as a failure.  Subscribers receive their
+   * own decoded instance per response and must not decode into it again.
+   *
+   * @throws IllegalArgumentException if {@code type} cannot be instantiated with its public
+   *         no-argument constructor
+   */
+  public void addDecoder(final Class<? extends TypedResponse> type) {
+    if (type == null) {
+      throw new NullPointerException("type is null");
+    }
+
+    this.decoders.put(newTypedResponse(type).getCommand(), type);
+  }
+
+  public void removeDecoder(final String command) {
+    if (command == null) {
+      throw new NullPointerException("command is null");
+    }
+
+    this.decoders.remove(command);
+  }
+
+  public int getSubscriberCount() {
+    return this.subscriptions.size();
+  }
+
+  /**
+   * Number of responses replaced by a newer one before a subscriber requested them, summed over
+   * all subscribers.
+   */
+  public long getReplacedResponses() {
+    return this.replacedResponses.get();
+  }
+
+  public void onResponse(final Device device, final String command, final String response) {
+    if (this.closed) {
+      return;
+    }
+
+    final Class<? extends TypedResponse> type =
+        (command == null) ? null : this.decoders.get(command);
+    TypedResponse typedResponse = null;
+    if (type != null) {
+      typedResponse = newTypedResponse(type);
+      try {
+        typedResponse.decode(CHARSET.encode(CharBuffer.wrap(response)));
+      } catch (final MalformedResponseException e) {
+        this.onFailure(device, command, e);
+        return;
+      }
+    }
+
+    this.publish(new PolledResponse(
+        device, command, response, typedResponse, null, System.currentTimeMillis()));
+  }
+
+  public void onFailure(final Device device, final String command, final IOException cause) {
+    this.publish(new PolledResponse(
+        device, command, null, null, cause, System.currentTimeMillis()));
+  }
+
+  /**
+   * Complete all subscriptions once their waiting responses are delivered, responses published
+   * afterwards are ignored.
+   */
+  public void close() {
+    this.closed = true;
+    for (final ResponseSubscription subscription : this.subscriptions) {
+      subscription.complete();
+      subscription.schedule();
+    }
+  }
+
+  private static TypedResponse newTypedResponse(final Class<? extends TypedResponse> type) {
+    try {
+      return type.newInstance();
+    } catch (final InstantiationException e) {
+      throw new IllegalArgumentException(type.getName() + " cannot be instantiated", e);
+    } catch (final IllegalAccessException e) {
+      throw new IllegalArgumentException(type.getName() + " cannot be instantiated", e);
+    }
+  }
+
+  private void publish(final PolledResponse item) {
+    if (this.closed) {
+      return;
+    }
+
+    final ResponseKey key = new ResponseKey(item.getDevice(), item.getCommand());
+    for (final ResponseSubscription subscription : this.subscriptions) {
+      subscription.offer(key, item);
+    }
+  }
+
+  private static final class ResponseKey {
+
+    private final Device device;
+    private final String command;
+
+    private ResponseKey(final Device device, final String command) {
+      this.device = device;
+      this.command = command;
+    }
+
+    public boolean equals(final Object other) {
+      if (!(other instanceof ResponseKey)) {
+        return false;
+      }
+
+      final ResponseKey key = (ResponseKey) other;
+      return this.device == key.device
+          && ((this.command == null) ? key.command == null : this.command.equals(key.command));
+    }
+
+    public int hashCode() {
+      return System.identityHashCode(this.device) * 31
+          + ((this.command == null) ? 0 : this.command.hashCode());
+    }
+
+  }
+
+  private final class ResponseSubscription implements Subscription, Runnable {
+
+    private final Subscriber<? super PolledResponse> subscriber;
+    private final Map<ResponseKey, PolledResponse> pending =
+        new LinkedHashMap<ResponseKey, PolledResponse>();
+    private boolean subscribed;
+    private boolean scheduled;
+    private boolean completing;
+    private boolean terminated;
+    private long demand;
+    private Throwable failure;
+
+    private ResponseSubscription(final Subscriber<? super PolledResponse> subscriber) {
+      this.subscriber = subscriber;
+      // Held until the first run so that no other signal is scheduled ahead of onSubscribe
+      this.scheduled = true;
+    }
+
+    public void request(final long n) {
+      synchronized (this) {
+        if (this.terminated) {
+          return;
+        } else if (n <= 0) {
+          this.failure = new IllegalArgumentException("n <= 0");
+        } else {
+          this.demand = (Long.MAX_VALUE - this.demand < n) ? Long.MAX_VALUE : this.demand + n;
+        }
+      }
+
+      this.schedule();
+    }
+
+    public void cancel() {
+      synchronized (this) {
+        this.terminate();
+      }
+    }
+
+    private void offer(final ResponseKey key, final PolledResponse item) {
+      synchronized (this) {
+        if (this.terminated || this.completing) {
+          return;
+        } else if (this.pending.put(key, item) != null) {
+          replacedResponses.incrementAndGet();
+        }
+      }
+
+      this.schedule();
+    }
+
+    private synchronized void complete() {
+      this.completing = true;
+    }
+
+    private void start() {
+      try {
+        executor.execute(this);
+      } catch (final RuntimeException e) {
+        synchronized (this) {
+          this.terminate();
+        }
+        throw e;
+      }
+    }
+
+    /**
+     * Schedule delivery after {@code onSubscribe}, a rejection is signalled with
+     * {@code onError}.
+     */
+    private void schedule() {
+      synchronized (this) {
+        if (this.scheduled || this.terminated) {
+          return;
+        }
+
+        this.scheduled = true;
+      }
+
+      try {
+        executor.execute(this);
+      } catch (final RuntimeException e) {
+        synchronized (this) {
+          this.terminate();
+        }
+        this.subscriber.onError(e);
+      }
+    }
+
+    /**
+     * Deliver signals until demand or waiting responses run out.
+     */
+    public void run() {
+      while (true) {
+        final int signal;
+        PolledResponse item = null;
+        Throwable cause = null;
+
+        synchronized (this) {
+          if (this.terminated) {
+            this.scheduled = false;
+            return;
+          } else if (!this.subscribed) {
+            this.subscribed = true;
+            signal = 0;
+          } else if (this.failure != null) {
+            cause = this.failure;
+            this.terminate();
+            signal = 2;
+          } else if (this.demand > 0 && !this.pending.isEmpty()) {
+            final Iterator<PolledResponse> iterator = this.pending.values().iterator();
+            item = iterator.next();
+            iterator.remove();
+            if (this.demand != Long.MAX_VALUE) {
+              --this.demand;
+            }
+            signal = 1;
+          } else if (this.completing && this.pending.isEmpty()) {
+            this.terminate();
+            signal = 3;
+          } else {
+            this.scheduled = false;
+            return;
+          }
+        }
+
+        try {
+          if (signal == 0) {
+            this.subscriber.onSubscribe(this);
+          } else if (signal == 1) {
+            this.subscriber.onNext(item);
+          } else if (signal == 2) {
+            this.subscriber.onError(cause);
+          } else {
+            this.subscriber.onComplete();
+          }
+        } catch (final RuntimeException e) {
+          synchronized (this) {
+            this.terminate();
+          }
+
+          final Thread thread = Thread.currentThread();
+          thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+      }
+    }
+
+    private void terminate() {
+      this.terminated = true;
+      this.pending.clear();
+      subscriptions.remove(this);
+    }
+
+  }
+
+}
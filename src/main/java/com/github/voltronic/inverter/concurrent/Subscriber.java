@@ -0,0 +1,20 @@
+package com.github.voltronic.inverter.concurrent;
+
+/**
+ * Receiver of items from a {@link Publisher}, shaped after
+ * {@code java.util.concurrent.Flow.Subscriber}.
+ *
+ * <p>Methods are called one at a time, {@link #onSubscribe(Subscription)} first, and no item is
+ * delivered beyond what was requested through the subscription.
+ */
+public interface Subscriber<T> {
+
+  void onSubscribe(Subscription subscription);
+
+  void onNext(T item);
+
+  void onError(Throwable cause);
+
+  void onComplete();
+
+}
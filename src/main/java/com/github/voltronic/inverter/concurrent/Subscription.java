@@ -0,0 +1,16 @@
+package com.github.voltronic.inverter.concurrent;
+
+/**
+ * Link between a {@link Publisher} and one {@link Subscriber}, shaped after
+ * {@code java.util.concurrent.Flow.Subscription}.
+ */
+public interface Subscription {
+
+  /**
+   * Allow {@code n} more items to be delivered, {@code n <= 0} fails the subscription.
+   */
+  void request(long n);
+
+  void cancel();
+
+}
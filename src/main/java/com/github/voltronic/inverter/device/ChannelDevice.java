@@ -0,0 +1,99 @@
+package com.github.voltronic.inverter.device;
+
+import com.github.voltronic.inverter.Device;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link Device} backed by NIO channels.
+ *
+ * <p>Existing code using the {@link Device} contract works unchanged, while the channels remain
+ * available to the {@code ReadableByteChannel}/{@code WritableByteChannel} overloads of
+ * {@link com.github.voltronic.inverter.protocol.P30Protocol} which frame directly into direct
+ * buffers.
+ */
+public class ChannelDevice implements Device {
+
+  private static final long WRITE_RETRY_NANOSECONDS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final ReadableByteChannel readChannel;
+  private final WritableByteChannel writeChannel;
+  private byte[] readArray;
+  private ByteBuffer readBuffer;
+  private byte[] writeArray;
+  private ByteBuffer writeBuffer;
+
+  public ChannelDevice(final ByteChannel channel) {
+    this(channel, channel);
+  }
+
+  public ChannelDevice(
+      final ReadableByteChannel readChannel,
+      final WritableByteChannel writeChannel) {
+
+    if (readChannel == null) {
+      throw new NullPointerException("readChannel is null");
+    } else if (writeChannel == null) {
+      throw new NullPointerException("writeChannel is null");
+    }
+
+    this.readChannel = readChannel;
+    this.writeChannel = writeChannel;
+  }
+
+  public ReadableByteChannel getReadChannel() {
+    return this.readChannel;
+  }
+
+  public WritableByteChannel getWriteChannel() {
+    return this.writeChannel;
+  }
+
+  public synchronized int read(final byte[] b, final int off, final int len) throws IOException {
+    if (b != this.readArray) {
+      this.readArray = b;
+      this.readBuffer = ByteBuffer.wrap(b);
+    }
+
+    this.readBuffer.limit(off + len).position(off);
+    return this.readChannel.read(this.readBuffer);
+  }
+
+  public synchronized void write(final byte[] b, final int off, final int len) throws IOException {
+    if (b != this.writeArray) {
+      this.writeArray = b;
+      this.writeBuffer = ByteBuffer.wrap(b);
+    }
+
+    final ByteBuffer buffer = this.writeBuffer;
+    buffer.limit(off + len).position(off);
+    while (buffer.hasRemaining()) {
+      if (this.writeChannel.write(buffer) == 0) {
+        LockSupport.parkNanos(WRITE_RETRY_NANOSECONDS);
+        if (Thread.interrupted()) {
+          final InterruptedIOException e = new InterruptedIOException();
+          e.bytesTransferred = buffer.position() - off;
+          Thread.currentThread().interrupt();
+          throw e;
+        }
+      }
+    }
+  }
+
+  public void close() throws IOException {
+    try {
+      this.readChannel.close();
+    } finally {
+      if (this.writeChannel != this.readChannel) {
+        this.writeChannel.close();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,128 @@
+package com.github.voltronic.inverter.device;
+
+import com.github.voltronic.inverter.Device;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link Device} wrapper appending every chunk read from or written to the wrapped device to a
+ * memory-mapped capture file, which {@link ReplayDevice} can play back.
+ *
+ * <p>The capture file starts with a header of {@link #MAGIC} and {@link #VERSION}, followed by
+ * records of an 8 byte nanosecond offset from the creation of the device, a 1 byte record type,
+ * a 4 byte length and the data itself.  Unused space remains zero, so a capture is terminated by
+ * the first record type of 0 even if the process did not close the device.  Once the capacity is
+ * exhausted further chunks are passed through without being recorded.
+ */
+public class RecordingDevice implements Device {
+
+  public static final int MAGIC = 0x56434150;
+  public static final int VERSION = 1;
+
+  static final int HEADER_LENGTH = 8;
+  static final int RECORD_HEADER_LENGTH = 13;
+  static final byte END_RECORD = 0;
+  static final byte READ_RECORD = 1;
+  static final byte WRITE_RECORD = 2;
+
+  private final Device device;
+  private final RandomAccessFile file;
+  private final MappedByteBuffer capture;
+  private final long startNanoTime;
+  private long droppedBytes;
+
+  public RecordingDevice(
+      final Device device,
+      final File captureFile,
+      final int capacity) throws IOException {
+
+    if (device == null) {
+      throw new NullPointerException("device is null");
+    } else if (captureFile == null) {
+      throw new NullPointerException("captureFile is null");
+    } else if (capacity <= HEADER_LENGTH) {
+      throw new IllegalArgumentException("capacity <= " + HEADER_LENGTH);
+    }
+
+    final RandomAccessFile file = new RandomAccessFile(captureFile, "rw");
+    try {
+      file.setLength(0);
+      this.capture = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    } catch (final IOException e) {
+      file.close();
+      throw e;
+    }
+
+    this.device = device;
+    this.file = file;
+    this.capture.putInt(MAGIC).putInt(VERSION);
+    this.startNanoTime = System.nanoTime();
+  }
+
+  public Device getDevice() {
+    return this.device;
+  }
+
+  public int read(final byte[] b, final int off, final int len) throws IOException {
+    final int bytesRead = this.device.read(b, off, len);
+    if (bytesRead > 0) {
+      this.record(READ_RECORD, b, off, bytesRead);
+    }
+
+    return bytesRead;
+  }
+
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    this.device.write(b, off, len);
+    if (len > 0) {
+      this.record(WRITE_RECORD, b, off, len);
+    }
+  }
+
+  public synchronized long getRecordedBytes() {
+    return this.capture.position();
+  }
+
+  /**
+   * Number of data bytes not recorded because the capture file was full.
+   */
+  public synchronized long getDroppedBytes() {
+    return this.droppedBytes;
+  }
+
+  public void close() throws IOException {
+    try {
+      synchronized (this) {
+        this.capture.force();
+      }
+    } finally {
+      try {
+        this.file.close();
+      } finally {
+        this.device.close();
+      }
+    }
+  }
+
+  private synchronized void record(
+      final byte type,
+      final byte[] b,
+      final int off,
+      final int len) {
+
+    final MappedByteBuffer capture = this.capture;
+    if (capture.remaining() < RECORD_HEADER_LENGTH + len) {
+      this.droppedBytes += len;
+      return;
+    }
+
+    capture.putLong(System.nanoTime() - this.startNanoTime);
+    capture.put(type);
+    capture.putInt(len);
+    capture.put(b, off, len);
+  }
+
+}
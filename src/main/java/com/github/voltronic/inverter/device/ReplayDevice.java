@@ -0,0 +1,166 @@
+package com.github.voltronic.inverter.device;
+
+import com.github.voltronic.inverter.Device;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link Device} playing back a capture file written by {@link RecordingDevice}.
+ *
+ * <p>Each write is matched with the next recorded write, and the recorded reads following it
+ * become available with the same delays as when they were captured, divided by {@code speed}.  A
+ * speed of {@link Double#POSITIVE_INFINITY} makes every read available immediately.  Written
+ * bytes differing from the capture are counted by {@link #getMismatchedWrites()} but otherwise
+ * ignored.  Reads return 0 once the capture is exhausted, a record extending past the end of the
+ * file fails the read or write reaching it with an {@link IOException}.
+ */
+public class ReplayDevice implements Device {
+
+  private final ByteBuffer capture;
+  private final ByteBuffer readView;
+  private final double speed;
+  private long anchorTimestamp;
+  private long anchorNanoTime;
+  private boolean anchored;
+  private int pendingOffset;
+  private int pendingLength;
+  private int mismatchedWrites;
+
+  public ReplayDevice(final File captureFile, final double speed) throws IOException {
+    if (captureFile == null) {
+      throw new NullPointerException("captureFile is null");
+    } else if (!(speed > 0)) {
+      throw new IllegalArgumentException("speed <= 0");
+    }
+
+    final RandomAccessFile file = new RandomAccessFile(captureFile, "r");
+    try {
+      final FileChannel channel = file.getChannel();
+      this.capture = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } finally {
+      file.close();
+    }
+
+    if (this.capture.remaining() < RecordingDevice.HEADER_LENGTH
+        || this.capture.getInt() != RecordingDevice.MAGIC) {
+      throw new IOException("Not a capture file: " + captureFile);
+    } else if (this.capture.getInt() != RecordingDevice.VERSION) {
+      throw new IOException("Unsupported capture file version: " + captureFile);
+    }
+
+    this.readView = this.capture.duplicate();
+    this.speed = speed;
+  }
+
+  public synchronized int read(final byte[] b, final int off, final int len) throws IOException {
+    if (this.pendingLength == 0) {
+      final int type = this.nextRecordType();
+      if (type != RecordingDevice.READ_RECORD) {
+        return 0;
+      }
+
+      final long timestamp = this.capture.getLong(this.capture.position());
+      if (!this.anchored) {
+        this.anchor(timestamp);
+      } else if (!this.isDue(timestamp)) {
+        return 0;
+      }
+
+      this.pendingLength = this.recordLength(this.capture.position());
+      this.pendingOffset = this.capture.position() + RecordingDevice.RECORD_HEADER_LENGTH;
+      this.capture.position(this.pendingOffset + this.pendingLength);
+    }
+
+    final int length = Math.min(len, this.pendingLength);
+    this.readView.position(this.pendingOffset);
+    this.readView.get(b, off, length);
+
+    this.pendingOffset += length;
+    this.pendingLength -= length;
+    return length;
+  }
+
+  public synchronized void write(final byte[] b, final int off, final int len) throws IOException {
+    this.pendingLength = 0;
+
+    int type;
+    while ((type = this.nextRecordType()) == RecordingDevice.READ_RECORD) {
+      this.skipRecord();
+    }
+
+    if (type != RecordingDevice.WRITE_RECORD) {
+      ++this.mismatchedWrites;
+      return;
+    }
+
+    final int position = this.capture.position();
+    final int recordedLength = this.recordLength(position);
+    boolean matches = recordedLength == len;
+    for (int index = 0; matches && index < len; ++index) {
+      matches = b[off + index]
+          == this.capture.get(position + RecordingDevice.RECORD_HEADER_LENGTH + index);
+    }
+
+    if (!matches) {
+      ++this.mismatchedWrites;
+    }
+
+    this.anchor(this.capture.getLong(position));
+    this.skipRecord();
+  }
+
+  public synchronized boolean isFinished() {
+    return this.pendingLength == 0 && this.nextRecordType() == RecordingDevice.END_RECORD;
+  }
+
+  public synchronized int getMismatchedWrites() {
+    return this.mismatchedWrites;
+  }
+
+  public void close() throws IOException {
+  }
+
+  private int nextRecordType() {
+    final int position = this.capture.position();
+    if (this.capture.limit() - position < RecordingDevice.RECORD_HEADER_LENGTH) {
+      return RecordingDevice.END_RECORD;
+    }
+
+    return this.capture.get(position + 8);
+  }
+
+  private void skipRecord() throws IOException {
+    final int position = this.capture.position();
+    this.capture.position(
+        position + RecordingDevice.RECORD_HEADER_LENGTH + this.recordLength(position));
+  }
+
+  private int recordLength(final int position) throws IOException {
+    final int length = this.capture.getInt(position + 9);
+    if (length < 0
+        || length > this.capture.limit() - position - RecordingDevice.RECORD_HEADER_LENGTH) {
+      throw new IOException("Corrupt capture record at " + position + ", length " + length);
+    }
+
+    return length;
+  }
+
+  private void anchor(final long timestamp) {
+    this.anchorTimestamp = timestamp;
+    this.anchorNanoTime = System.nanoTime();
+    this.anchored = true;
+  }
+
+  private boolean isDue(final long timestamp) {
+    if (Double.isInfinite(this.speed)) {
+      return true;
+    }
+
+    final long recordedNanos = timestamp - this.anchorTimestamp;
+    return (System.nanoTime() - this.anchorNanoTime) * this.speed >= recordedNanos;
+  }
+
+}
@@ -0,0 +1,235 @@
+package com.github.voltronic.inverter.device;
+
+import com.github.voltronic.inverter.Device;
+import com.github.voltronic.inverter.digest.V1VoltronicCrc;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Device} answering common P30 queries like an inverter, for load testing without
+ * hardware.
+ *
+ * <p>Responses become readable after the configured latency plus a random jitter, and are
+ * delivered at most {@code bytesPerRead} bytes at a time.  Responses can randomly have their CRC
+ * corrupted or lose bytes.  Commands with an invalid CRC or without a configured response are
+ * answered with {@code (NAK}, setter commands not starting with {@code Q} with {@code (ACK}.
+ *
+ * <p>The device uses no threads, all timing is evaluated when it is read, so thousands of
+ * instances can be driven by a few polling threads.
+ */
+public class SimulatedInverterDevice implements Device {
+
+  private static final Charset CHARSET = Charset.forName("US-ASCII");
+  private static final int MAXIMUM_COMMAND_LENGTH = 64;
+  private static final byte END_OF_INPUT_BYTE = (byte) '\r';
+  private static final Map<String, String> DEFAULT_RESPONSES;
+  private static final byte[] NAK_FRAME = frame("(NAK");
+  private static final byte[] ACK_FRAME = frame("(ACK");
+
+  private final Map<String, byte[]> responses = new HashMap<String, byte[]>();
+  private final Random random;
+  private final byte[] command = new byte[MAXIMUM_COMMAND_LENGTH];
+  private int commandLength;
+  private long latencyNanos;
+  private long jitterNanos;
+  private int bytesPerRead = Integer.MAX_VALUE;
+  private double corruptionRate;
+  private double dropRate;
+  private byte[] pending;
+  private int pendingPosition;
+  private long availableNanoTime;
+  private boolean corruptPending;
+  private long commandsReceived;
+
+  public SimulatedInverterDevice() {
+    this(System.nanoTime());
+  }
+
+  public SimulatedInverterDevice(final long seed) {
+    this.random = new Random(seed);
+    for (final Map.Entry<String, String> response : DEFAULT_RESPONSES.entrySet()) {
+      this.setResponse(response.getKey(), response.getValue());
+    }
+  }
+
+  public synchronized void setResponse(final String command, final String response) {
+    if (command == null) {
+      throw new NullPointerException("command is null");
+    } else if (response == null) {
+      this.responses.remove(command);
+    } else {
+      this.responses.put(command, frame(response));
+    }
+  }
+
+  public synchronized void setLatency(final long latency, final TimeUnit timeUnit) {
+    if (latency < 0) {
+      throw new IllegalArgumentException("latency < 0");
+    }
+
+    this.latencyNanos = timeUnit.toNanos(latency);
+  }
+
+  /**
+   * Add a uniformly distributed random delay of up to {@code jitter} to every response.
+   */
+  public synchronized void setJitter(final long jitter, final TimeUnit timeUnit) {
+    if (jitter < 0) {
+      throw new IllegalArgumentException("jitter < 0");
+    }
+
+    this.jitterNanos = timeUnit.toNanos(jitter);
+  }
+
+  public synchronized void setBytesPerRead(final int bytesPerRead) {
+    if (bytesPerRead <= 0) {
+      throw new IllegalArgumentException("bytesPerRead <= 0");
+    }
+
+    this.bytesPerRead = bytesPerRead;
+  }
+
+  /**
+   * Probability of a response being sent with a corrupted CRC.
+   */
+  public synchronized void setCorruptionRate(final double corruptionRate) {
+    this.corruptionRate = checkRate(corruptionRate);
+  }
+
+  /**
+   * Probability of every single response byte being dropped.
+   */
+  public synchronized void setDropRate(final double dropRate) {
+    this.dropRate = checkRate(dropRate);
+  }
+
+  public synchronized long getCommandsReceived() {
+    return this.commandsReceived;
+  }
+
+  public synchronized int read(final byte[] b, final int off, final int len) throws IOException {
+    final byte[] pending = this.pending;
+    if (pending == null || System.nanoTime() - this.availableNanoTime < 0) {
+      return 0;
+    }
+
+    final int crcIndex = pending.length - V1VoltronicCrc.LENGTH - 1;
+    final int end = Math.min(pending.length,
+        this.pendingPosition + Math.min(len, this.bytesPerRead));
+    int length = 0;
+
+    for (int index = this.pendingPosition; index < end; ++index) {
+      if (this.dropRate > 0 && this.random.nextDouble() < this.dropRate) {
+        continue;
+      }
+
+      byte value = pending[index];
+      if (this.corruptPending && index == crcIndex) {
+        value = corrupt(value);
+      }
+
+      b[off + length++] = value;
+    }
+
+    this.pendingPosition = end;
+    if (end == pending.length) {
+      this.pending = null;
+    }
+
+    return length;
+  }
+
+  public synchronized void write(final byte[] b, final int off, final int len) throws IOException {
+    for (int index = off; index < off + len; ++index) {
+      if (b[index] == END_OF_INPUT_BYTE) {
+        this.respond();
+        this.commandLength = 0;
+      } else if (this.commandLength < MAXIMUM_COMMAND_LENGTH) {
+        this.command[this.commandLength++] = b[index];
+      }
+    }
+  }
+
+  public void close() throws IOException {
+  }
+
+  private void respond() {
+    ++this.commandsReceived;
+
+    final int dataLength = this.commandLength - V1VoltronicCrc.LENGTH;
+    byte[] response = NAK_FRAME;
+    if (dataLength > 0 && V1VoltronicCrc.verify(this.command, 0, this.commandLength)) {
+      final String command = CHARSET.decode(ByteBuffer.wrap(this.command, 0, dataLength))
+          .toString();
+      final byte[] configured = this.responses.get(command);
+      if (configured != null) {
+        response = configured;
+      } else if (command.charAt(0) != 'Q') {
+        response = ACK_FRAME;
+      }
+    }
+
+    long delayNanos = this.latencyNanos;
+    if (this.jitterNanos > 0) {
+      delayNanos += (long) (this.random.nextDouble() * this.jitterNanos);
+    }
+
+    this.pending = response;
+    this.pendingPosition = 0;
+    this.availableNanoTime = System.nanoTime() + delayNanos;
+    this.corruptPending = this.corruptionRate > 0 && this.random.nextDouble() < this.corruptionRate;
+  }
+
+  private static byte[] frame(final String response) {
+    final ByteBuffer data = CHARSET.encode(response);
+    final int length = data.remaining();
+    final byte[] frame = new byte[length + V1VoltronicCrc.LENGTH + 1];
+    data.get(frame, 0, length);
+    V1VoltronicCrc.write(V1VoltronicCrc.calculate(frame, 0, length), frame, length);
+    frame[frame.length - 1] = END_OF_INPUT_BYTE;
+    return frame;
+  }
+
+  /**
+   * Flip a bit of a CRC byte without producing a byte the CRC never contains, so the corruption
+   * cannot be mistaken for a frame boundary.
+   */
+  private static byte corrupt(final byte value) {
+    final byte corrupted = (byte) (value ^ 0x01);
+    if (corrupted == 0x0A || corrupted == 0x0D || corrupted == 0x28) {
+      return (byte) (value ^ 0x02);
+    }
+
+    return corrupted;
+  }
+
+  private static double checkRate(final double rate) {
+    if (!(rate >= 0 && rate <= 1)) {
+      throw new IllegalArgumentException("rate not between 0 and 1");
+    }
+
+    return rate;
+  }
+
+  static {
+    final Map<String, String> responses = new HashMap<String, String>();
+    responses.put("QPI", "(PI30");
+    responses.put("QID", "(92931701100510");
+    responses.put("QVFW", "(VERFW:00072.70");
+    responses.put("QMN", "(MKS2-5000");
+    responses.put("QMOD", "(L");
+    responses.put("QFLAG", "(EkxyzDabjuv");
+    responses.put("QPIWS", "(00000000000000000000000000000000");
+    responses.put("QPIGS", "(240.1 49.9 240.1 49.9 0240 0185 004 435 54.00 000 100 0055 0000 "
+        + "000.0 00.00 00000 00010101 00 00 00000 110");
+    responses.put("QPIRI", "(230.0 21.7 230.0 50.0 21.7 5000 4000 48.0 46.0 42.0 56.4 54.0 0 10 "
+        + "010 1 0 0 6 01 0 0 54.0 0 1");
+    DEFAULT_RESPONSES = responses;
+  }
+
+}
@@ -0,0 +1,31 @@
+package com.github.voltronic.inverter.device;
+
+import com.github.voltronic.inverter.Device;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Device} that can bound how long a single read or write blocks.
+ *
+ * <p>{@link com.github.voltronic.inverter.protocol.P30Protocol} uses these methods with the time
+ * remaining until its deadline, so the timeout of a read holds even when the underlying transport
+ * blocks.  {@link WatchdogDevice} adds this to any {@link Device}.
+ */
+public interface TimeoutAwareDevice extends Device {
+
+  /**
+   * Read like {@link #read(byte[], int, int)} but block for at most {@code timeout}.
+   *
+   * @return number of bytes read, {@code 0} if none arrived in time
+   */
+  int read(byte[] b, int off, int len, long timeout, TimeUnit timeUnit) throws IOException;
+
+  /**
+   * Write like {@link #write(byte[], int, int)} but block for at most {@code timeout}.
+   *
+   * @throws com.github.voltronic.inverter.exception.TimeoutException if the bytes could not be
+   *                                                                   written in time
+   */
+  void write(byte[] b, int off, int len, long timeout, TimeUnit timeUnit) throws IOException;
+
+}
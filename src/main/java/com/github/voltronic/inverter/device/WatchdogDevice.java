@@ -0,0 +1,253 @@
+package com.github.voltronic.inverter.device;
+
+import com.github.voltronic.inverter.Device;
+import com.github.voltronic.inverter.exception.TimeoutException;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link TimeoutAwareDevice} for a {@link Device} whose reads and writes may block indefinitely.
+ *
+ * <p>A timed read or write schedules a watchdog that interrupts the calling thread when the
+ * timeout expires and, if {@code closeOnTimeout} is set, closes the wrapped device for transports
+ * that ignore interrupts.  A read or write that fails after the watchdog fired is reported as a
+ * {@link TimeoutException}, one that completes anyway returns normally.  Consecutive calls of a
+ * thread ending within 10 milliseconds of the same deadline, as made while reading a frame, share
+ * one watchdog, which stays scheduled but idle between the calls.
+ *
+ * <p>The interrupt of the watchdog is cleared once it has fired, an interrupt the calling thread
+ * already had before the call or when the watchdog fired is restored.
+ */
+public class WatchdogDevice implements TimeoutAwareDevice {
+
+  private static final int RUNNING = 0;
+  private static final int IDLE = 1;
+  private static final int COMPLETED = 2;
+  private static final int FIRING = 3;
+  private static final int FIRED = 4;
+  private static final long DEADLINE_TOLERANCE_NANOSECONDS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private final Device device;
+  private final ScheduledExecutorService scheduler;
+  private final boolean closeOnTimeout;
+  private volatile Watch idleWatch;
+
+  /**
+   * Watch {@code device} from a shared daemon thread.
+   */
+  public WatchdogDevice(final Device device, final boolean closeOnTimeout) {
+    this(device, DefaultScheduler.INSTANCE, closeOnTimeout);
+  }
+
+  public WatchdogDevice(
+      final Device device,
+      final ScheduledExecutorService scheduler,
+      final boolean closeOnTimeout) {
+
+    if (device == null) {
+      throw new NullPointerException("device is null");
+    } else if (scheduler == null) {
+      throw new NullPointerException("scheduler is null");
+    }
+
+    this.device = device;
+    this.scheduler = scheduler;
+    this.closeOnTimeout = closeOnTimeout;
+  }
+
+  public Device getDevice() {
+    return this.device;
+  }
+
+  public int read(final byte[] b, final int off, final int len) throws IOException {
+    return this.device.read(b, off, len);
+  }
+
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    this.device.write(b, off, len);
+  }
+
+  public int read(
+      final byte[] b,
+      final int off,
+      final int len,
+      final long timeout,
+      final TimeUnit timeUnit) throws IOException {
+
+    final Watch watch = this.watch(timeout, timeUnit);
+    final int bytesRead;
+    try {
+      bytesRead = this.device.read(b, off, len);
+    } catch (final IOException e) {
+      throw watch.failed(e, timeout, timeUnit);
+    } catch (final RuntimeException e) {
+      watch.completed();
+      throw e;
+    }
+
+    watch.completed();
+    return bytesRead;
+  }
+
+  public void write(
+      final byte[] b,
+      final int off,
+      final int len,
+      final long timeout,
+      final TimeUnit timeUnit) throws IOException {
+
+    final Watch watch = this.watch(timeout, timeUnit);
+    try {
+      this.device.write(b, off, len);
+    } catch (final IOException e) {
+      throw watch.failed(e, timeout, timeUnit);
+    } catch (final RuntimeException e) {
+      watch.completed();
+      throw e;
+    }
+
+    watch.completed();
+  }
+
+  public void close() throws IOException {
+    this.device.close();
+  }
+
+  private Watch watch(final long timeout, final TimeUnit timeUnit) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("timeout < 0");
+    } else if (timeUnit == null) {
+      throw new NullPointerException("timeUnit is null");
+    }
+
+    final Thread thread = Thread.currentThread();
+    final boolean interrupted = thread.isInterrupted();
+    final long timeoutNanos = timeUnit.toNanos(timeout);
+    final long deadlineNanoTime = System.nanoTime() + timeoutNanos;
+
+    final Watch idle = this.idleWatch;
+    if (idle != null && idle.thread == thread) {
+      final long offsetNanos = deadlineNanoTime - idle.deadlineNanoTime;
+      if (offsetNanos >= -DEADLINE_TOLERANCE_NANOSECONDS
+          && offsetNanos <= DEADLINE_TOLERANCE_NANOSECONDS
+          && idle.state.compareAndSet(IDLE, RUNNING)) {
+        idle.interruptedBefore = interrupted;
+        return idle;
+      }
+
+      idle.cancel();
+    }
+
+    final Watch watch = new Watch(thread, deadlineNanoTime, interrupted);
+    watch.future = this.scheduler.schedule(watch, timeoutNanos, TimeUnit.NANOSECONDS);
+    this.idleWatch = watch;
+    return watch;
+  }
+
+  private final class Watch implements Runnable {
+
+    private final Thread thread;
+    private final long deadlineNanoTime;
+    private final AtomicInteger state = new AtomicInteger(RUNNING);
+    private volatile Future<?> future;
+    private boolean interruptedBefore;
+    private volatile boolean interruptedWhenFired;
+
+    private Watch(
+        final Thread thread,
+        final long deadlineNanoTime,
+        final boolean interruptedBefore) {
+
+      this.thread = thread;
+      this.deadlineNanoTime = deadlineNanoTime;
+      this.interruptedBefore = interruptedBefore;
+    }
+
+    public void run() {
+      if (!this.state.compareAndSet(RUNNING, FIRING)) {
+        this.state.compareAndSet(IDLE, COMPLETED);
+        return;
+      }
+
+      try {
+        this.interruptedWhenFired = this.thread.isInterrupted();
+        this.thread.interrupt();
+        if (closeOnTimeout) {
+          try {
+            device.close();
+          } catch (final IOException e) {
+            // The device is being abandoned, the caller is told about the timeout instead
+          }
+        }
+      } finally {
+        this.state.set(FIRED);
+      }
+    }
+
+    /**
+     * Stop watching until the watch is reused for the same deadline, replacing the interrupt of the
+     * watchdog, if it fired, with the interrupt status of the thread before it fired.
+     *
+     * @return {@code true} if the watchdog fired
+     */
+    private boolean completed() {
+      if (this.state.compareAndSet(RUNNING, IDLE)) {
+        return false;
+      }
+
+      while (this.state.get() != FIRED) {
+        Thread.yield();
+      }
+
+      Thread.interrupted();
+      if (this.interruptedBefore || this.interruptedWhenFired) {
+        this.thread.interrupt();
+      }
+
+      return true;
+    }
+
+    private void cancel() {
+      if (this.state.compareAndSet(IDLE, COMPLETED)) {
+        final Future<?> watchFuture = this.future;
+        if (watchFuture != null) {
+          watchFuture.cancel(false);
+        }
+      }
+    }
+
+    private IOException failed(
+        final IOException cause,
+        final long timeout,
+        final TimeUnit timeUnit) {
+
+      if (!this.completed()) {
+        return cause;
+      }
+
+      final TimeoutException e = new TimeoutException(timeout, timeUnit);
+      e.initCause(cause);
+      return e;
+    }
+
+  }
+
+  private static final class DefaultScheduler {
+
+    private static final ScheduledExecutorService INSTANCE = Executors.newScheduledThreadPool(1,
+        new ThreadFactory() {
+          public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "device-watchdog");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+
+  }
+
+}
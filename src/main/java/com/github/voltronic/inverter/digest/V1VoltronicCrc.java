@@ -0,0 +1,110 @@
+package com.github.voltronic.inverter.digest;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Static form of {@link V1VoltronicMessageDigest} working on primitive CRC values.
+ *
+ * <p>CRC values are the plain 16-bit CRC-16 XMODEM of the data, the reserved bytes are only
+ * incremented when a value is written with {@link #write(int, byte[], int)} or
+ * {@link #put(int, ByteBuffer, int)}.
+ */
+public final class V1VoltronicCrc {
+
+  public static final int LENGTH = 2;
+
+  private static final int SLICING_THRESHOLD = 16;
+
+  private V1VoltronicCrc() {
+  }
+
+  public static int calculate(final byte[] b, final int off, final int len) {
+    return update(0, b, off, len);
+  }
+
+  public static int update(final int crc, final byte[] b, final int off, final int len) {
+    if (b == null) {
+      throw new NullPointerException("b is null");
+    } else if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException();
+    } else if (len >= SLICING_THRESHOLD) {
+      return V1VoltronicMessageDigest.updateSlicingBy8(crc & 0xFFFF, b, off, len);
+    } else {
+      return V1VoltronicMessageDigest.updateByte(crc & 0xFFFF, b, off, len);
+    }
+  }
+
+  /**
+   * Calculate the CRC of the bytes between the position and limit of {@code buffer}, without
+   * modifying its position.
+   */
+  public static int calculate(final ByteBuffer buffer) {
+    return calculate(buffer, buffer.position(), buffer.remaining());
+  }
+
+  /**
+   * Calculate the CRC of {@code length} bytes of {@code buffer} starting at absolute
+   * {@code index}.
+   */
+  public static int calculate(final ByteBuffer buffer, final int index, final int length) {
+    if (buffer == null) {
+      throw new NullPointerException("buffer is null");
+    } else if (index < 0 || length < 0 || length > buffer.limit() - index) {
+      throw new IndexOutOfBoundsException();
+    } else if (buffer.hasArray()) {
+      return update(0, buffer.array(), buffer.arrayOffset() + index, length);
+    }
+
+    final int end = index + length;
+    int crc = 0;
+    for (int offset = index; offset < end; ++offset) {
+      crc = V1VoltronicMessageDigest.updateByte(crc, buffer.get(offset));
+    }
+
+    return crc;
+  }
+
+  public static void write(final int crc, final byte[] b, final int off) {
+    b[off] = encode((byte) (crc >> 8));
+    b[off + 1] = encode((byte) crc);
+  }
+
+  public static void put(final int crc, final ByteBuffer buffer, final int index) {
+    buffer.put(index, encode((byte) (crc >> 8)));
+    buffer.put(index + 1, encode((byte) crc));
+  }
+
+  /**
+   * Whether the last {@link #LENGTH} bytes of the range are the CRC of the bytes preceding them.
+   */
+  public static boolean verify(final byte[] b, final int off, final int len) {
+    if (len < LENGTH) {
+      throw new IllegalArgumentException("len < " + LENGTH);
+    }
+
+    final int dataLength = len - LENGTH;
+    final int crc = calculate(b, off, dataLength);
+    return b[off + dataLength] == encode((byte) (crc >> 8))
+        && b[off + dataLength + 1] == encode((byte) crc);
+  }
+
+  /**
+   * Whether the last {@link #LENGTH} bytes of the {@code length} bytes starting at absolute
+   * {@code index} of {@code buffer} are the CRC of the bytes preceding them.
+   */
+  public static boolean verify(final ByteBuffer buffer, final int index, final int length) {
+    if (length < LENGTH) {
+      throw new IllegalArgumentException("length < " + LENGTH);
+    }
+
+    final int dataLength = length - LENGTH;
+    final int crc = calculate(buffer, index, dataLength);
+    return buffer.get(index + dataLength) == encode((byte) (crc >> 8))
+        && buffer.get(index + dataLength + 1) == encode((byte) crc);
+  }
+
+  private static byte encode(final byte b) {
+    return (b == 0x0A || b == 0x0D || b == 0x28) ? (byte) (b + 1) : b;
+  }
+
+}
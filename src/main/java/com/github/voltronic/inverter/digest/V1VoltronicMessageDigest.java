@@ -1,10 +1,19 @@
 package com.github.voltronic.inverter.digest;
 
+import java.nio.ByteBuffer;
 import java.security.DigestException;
 import java.security.MessageDigest;
 
 public class V1VoltronicMessageDigest extends MessageDigest {
 
+  public enum CrcStrategy {
+    HALF_BYTE,
+    BYTE,
+    SLICING_BY_4,
+    SLICING_BY_8,
+    AUTOMATIC
+  }
+
   private static final char[] HALF_BYTE_CRC_TABLE = new char[]{
       (char) 0x0000, (char) 0x1021, (char) 0x2042, (char) 0x3063,
       (char) 0x4084, (char) 0x50A5, (char) 0x60C6, (char) 0x70E7,
@@ -12,14 +21,38 @@ public class V1VoltronicMessageDigest extends MessageDigest {
       (char) 0xC18C, (char) 0xD1AD, (char) 0xE1CE, (char) 0xF1EF
   };
 
+  private static final int TABLE_SIZE = 256;
+  private static final int SLICES = 8;
+  private static final int AUTOMATIC_SLICING_THRESHOLD = 16;
+
+  /**
+   * {@code SLICING_CRC_TABLE[k * 256 + b]} is the CRC of byte {@code b} followed by {@code k} zero
+   * bytes, the first 256 entries are therefore the byte-wise table.
+   */
+  private static final char[] SLICING_CRC_TABLE;
+
   private static final int DIGEST_LENGTH = 2;
+  private final CrcStrategy strategy;
   private char crc;
 
   public V1VoltronicMessageDigest() {
+    this(CrcStrategy.AUTOMATIC);
+  }
+
+  public V1VoltronicMessageDigest(final CrcStrategy strategy) {
     super("Voltronic Modified CRC-16 XMODEM");
+    if (strategy == null) {
+      throw new NullPointerException("strategy is null");
+    }
+
+    this.strategy = strategy;
     this.engineReset();
   }
 
+  public CrcStrategy getStrategy() {
+    return this.strategy;
+  }
+
   protected void engineReset() {
     this.crc = 0;
   }
@@ -29,16 +62,52 @@ public class V1VoltronicMessageDigest extends MessageDigest {
   }
 
   protected void engineUpdate(final byte b) {
-    this.crc = (char) (HALF_BYTE_CRC_TABLE[(this.crc >> 12) ^ (b >> 4)] ^ (this.crc << 4));
-    this.crc = (char) (HALF_BYTE_CRC_TABLE[(this.crc >> 12) ^ (b & 0x0F)] ^ (this.crc << 4));
+    if (this.strategy == CrcStrategy.HALF_BYTE) {
+      this.crc = (char) updateHalfByte(this.crc, b);
+    } else {
+      this.crc = (char) updateByte(this.crc, b);
+    }
   }
 
-  protected void engineUpdate(final byte[] b, int off, int len) {
+  protected void engineUpdate(final byte[] b, final int off, final int len) {
     if (len > 0) {
-      --off;
-      do {
-        this.engineUpdate(b[++off]);
-      } while (--len != 0);
+      switch (this.strategy) {
+        case HALF_BYTE:
+          this.crc = (char) updateHalfByte(this.crc, b, off, len);
+          break;
+        case BYTE:
+          this.crc = (char) updateByte(this.crc, b, off, len);
+          break;
+        case SLICING_BY_4:
+          this.crc = (char) updateSlicingBy4(this.crc, b, off, len);
+          break;
+        case SLICING_BY_8:
+          this.crc = (char) updateSlicingBy8(this.crc, b, off, len);
+          break;
+        default:
+          if (len >= AUTOMATIC_SLICING_THRESHOLD) {
+            this.crc = (char) updateSlicingBy8(this.crc, b, off, len);
+          } else {
+            this.crc = (char) updateByte(this.crc, b, off, len);
+          }
+          break;
+      }
+    }
+  }
+
+  protected void engineUpdate(final ByteBuffer input) {
+    if (input.hasArray()) {
+      super.engineUpdate(input);
+    } else {
+      final int limit = input.limit();
+      int crc = this.crc;
+      for (int index = input.position(); index < limit; ++index) {
+        crc = (this.strategy == CrcStrategy.HALF_BYTE)
+            ? updateHalfByte(crc, input.get(index)) : updateByte(crc, input.get(index));
+      }
+
+      this.crc = (char) crc;
+      input.position(limit);
     }
   }
 
@@ -84,4 +153,85 @@ public class V1VoltronicMessageDigest extends MessageDigest {
     buf[off + 1] = b1;
   }
 
+  static int updateHalfByte(int crc, final byte b) {
+    crc = (HALF_BYTE_CRC_TABLE[((crc >> 12) ^ (b >> 4)) & 0x0F] ^ (crc << 4)) & 0xFFFF;
+    return (HALF_BYTE_CRC_TABLE[((crc >> 12) ^ b) & 0x0F] ^ (crc << 4)) & 0xFFFF;
+  }
+
+  static int updateHalfByte(int crc, final byte[] b, int off, final int len) {
+    final int end = off + len;
+    while (off < end) {
+      crc = updateHalfByte(crc, b[off++]);
+    }
+
+    return crc;
+  }
+
+  static int updateByte(final int crc, final byte b) {
+    return (SLICING_CRC_TABLE[((crc >> 8) ^ b) & 0xFF] ^ (crc << 8)) & 0xFFFF;
+  }
+
+  static int updateByte(int crc, final byte[] b, int off, final int len) {
+    final char[] table = SLICING_CRC_TABLE;
+    final int end = off + len;
+    while (off < end) {
+      crc = (table[((crc >> 8) ^ b[off++]) & 0xFF] ^ (crc << 8)) & 0xFFFF;
+    }
+
+    return crc;
+  }
+
+  static int updateSlicingBy4(int crc, final byte[] b, int off, final int len) {
+    final char[] table = SLICING_CRC_TABLE;
+    final int end = off + len;
+    final int slicedEnd = end - 3;
+
+    while (off < slicedEnd) {
+      crc = table[3 * TABLE_SIZE + (((crc >> 8) ^ b[off]) & 0xFF)]
+          ^ table[2 * TABLE_SIZE + ((crc ^ b[off + 1]) & 0xFF)]
+          ^ table[TABLE_SIZE + (b[off + 2] & 0xFF)]
+          ^ table[b[off + 3] & 0xFF];
+      off += 4;
+    }
+
+    return updateByte(crc, b, off, end - off);
+  }
+
+  static int updateSlicingBy8(int crc, final byte[] b, int off, final int len) {
+    final char[] table = SLICING_CRC_TABLE;
+    final int end = off + len;
+    final int slicedEnd = end - 7;
+
+    while (off < slicedEnd) {
+      crc = table[7 * TABLE_SIZE + (((crc >> 8) ^ b[off]) & 0xFF)]
+          ^ table[6 * TABLE_SIZE + ((crc ^ b[off + 1]) & 0xFF)]
+          ^ table[5 * TABLE_SIZE + (b[off + 2] & 0xFF)]
+          ^ table[4 * TABLE_SIZE + (b[off + 3] & 0xFF)]
+          ^ table[3 * TABLE_SIZE + (b[off + 4] & 0xFF)]
+          ^ table[2 * TABLE_SIZE + (b[off + 5] & 0xFF)]
+          ^ table[TABLE_SIZE + (b[off + 6] & 0xFF)]
+          ^ table[b[off + 7] & 0xFF];
+      off += 8;
+    }
+
+    return updateByte(crc, b, off, end - off);
+  }
+
+  static {
+    final char[] table = new char[SLICES * TABLE_SIZE];
+    for (int index = 0; index < TABLE_SIZE; ++index) {
+      table[index] = (char) updateHalfByte(0, (byte) index);
+    }
+
+    for (int slice = 1; slice < SLICES; ++slice) {
+      for (int index = 0; index < TABLE_SIZE; ++index) {
+        final int previous = table[(slice - 1) * TABLE_SIZE + index];
+        table[slice * TABLE_SIZE + index] =
+            (char) ((table[(previous >> 8) & 0xFF] ^ (previous << 8)) & 0xFFFF);
+      }
+    }
+
+    SLICING_CRC_TABLE = table;
+  }
+
 }
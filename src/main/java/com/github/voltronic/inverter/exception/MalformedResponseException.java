@@ -0,0 +1,23 @@
+package com.github.voltronic.inverter.exception;
+
+import java.io.IOException;
+
+public class MalformedResponseException extends IOException {
+
+  private static final long serialVersionUID = -2874146376180465823L;
+
+  private final int fieldIndex;
+
+  public MalformedResponseException(final String message, final int fieldIndex) {
+    super(message);
+    this.fieldIndex = fieldIndex;
+  }
+
+  /**
+   * Index of the field that could not be decoded, -1 if the response as a whole was rejected.
+   */
+  public int getFieldIndex() {
+    return this.fieldIndex;
+  }
+
+}
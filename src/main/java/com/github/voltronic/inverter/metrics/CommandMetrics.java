@@ -0,0 +1,145 @@
+package com.github.voltronic.inverter.metrics;
+
+import com.github.voltronic.inverter.exception.BufferOverflowException;
+import com.github.voltronic.inverter.exception.DigestMismatchException;
+import com.github.voltronic.inverter.exception.TimeoutException;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of the writes of a single command to a single device and of the responses read after
+ * them.
+ */
+public final class CommandMetrics {
+
+  private final String command;
+  private final LatencyHistogram writeLatency = new LatencyHistogram();
+  private final LatencyHistogram readLatency = new LatencyHistogram();
+  private final AtomicLong bytesWritten = new AtomicLong();
+  private final AtomicLong bytesRead = new AtomicLong();
+  private final AtomicLong reads = new AtomicLong();
+  private final AtomicLong waitNanos = new AtomicLong();
+  private final AtomicLong writeFailures = new AtomicLong();
+  private final AtomicLong timeouts = new AtomicLong();
+  private final AtomicLong digestMismatches = new AtomicLong();
+  private final AtomicLong bufferOverflows = new AtomicLong();
+  private final AtomicLong otherReadFailures = new AtomicLong();
+
+  CommandMetrics(final String command) {
+    this.command = command;
+  }
+
+  void recordWrite(final int bytesWritten, final long elapsedNanos) {
+    this.writeLatency.record(elapsedNanos);
+    this.bytesWritten.addAndGet(bytesWritten);
+  }
+
+  void recordWriteFailure() {
+    this.writeFailures.incrementAndGet();
+  }
+
+  void recordRead(
+      final int bytesRead,
+      final int reads,
+      final long waitNanos,
+      final long elapsedNanos) {
+
+    this.readLatency.record(elapsedNanos);
+    this.recordTransfer(bytesRead, reads, waitNanos);
+  }
+
+  void recordReadFailure(
+      final IOException cause,
+      final int bytesRead,
+      final int reads,
+      final long waitNanos) {
+
+    this.recordTransfer(bytesRead, reads, waitNanos);
+    if (cause instanceof TimeoutException) {
+      this.timeouts.incrementAndGet();
+    } else if (cause instanceof DigestMismatchException) {
+      this.digestMismatches.incrementAndGet();
+    } else if (cause instanceof BufferOverflowException) {
+      this.bufferOverflows.incrementAndGet();
+    } else {
+      this.otherReadFailures.incrementAndGet();
+    }
+  }
+
+  private void recordTransfer(final int bytesRead, final int reads, final long waitNanos) {
+    this.bytesRead.addAndGet(bytesRead);
+    this.reads.addAndGet(reads);
+    this.waitNanos.addAndGet(waitNanos);
+  }
+
+  public String getCommand() {
+    return this.command;
+  }
+
+  public LatencyHistogram getWriteLatency() {
+    return this.writeLatency;
+  }
+
+  /**
+   * Latency of successful reads, from the first read until the response was verified.
+   */
+  public LatencyHistogram getReadLatency() {
+    return this.readLatency;
+  }
+
+  public long getBytesWritten() {
+    return this.bytesWritten.get();
+  }
+
+  public long getBytesRead() {
+    return this.bytesRead.get();
+  }
+
+  public long getReads() {
+    return this.reads.get();
+  }
+
+  /**
+   * Average number of device reads per successfully read response.
+   */
+  public double getReadsPerFrame() {
+    final long frames = this.readLatency.getCount();
+    return (frames == 0) ? 0 : (double) this.reads.get() / frames;
+  }
+
+  public long getWaitNanos() {
+    return this.waitNanos.get();
+  }
+
+  public long getWriteFailures() {
+    return this.writeFailures.get();
+  }
+
+  public long getTimeouts() {
+    return this.timeouts.get();
+  }
+
+  public long getDigestMismatches() {
+    return this.digestMismatches.get();
+  }
+
+  public long getBufferOverflows() {
+    return this.bufferOverflows.get();
+  }
+
+  public long getOtherReadFailures() {
+    return this.otherReadFailures.get();
+  }
+
+  public String toString() {
+    return "CommandMetrics[command=" + this.command
+        + ", writeLatency=" + this.writeLatency
+        + ", readLatency=" + this.readLatency
+        + ", readsPerFrame=" + this.getReadsPerFrame()
+        + ", waitNanos=" + this.getWaitNanos()
+        + ", timeouts=" + this.getTimeouts()
+        + ", digestMismatches=" + this.getDigestMismatches()
+        + ", bufferOverflows=" + this.getBufferOverflows() + "]";
+  }
+
+}
@@ -0,0 +1,88 @@
+package com.github.voltronic.inverter.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in power of two nanosecond buckets.
+ *
+ * <p>Bucket {@code n} counts latencies in {@code [2^(n-1), 2^n)} nanoseconds, so percentiles are
+ * reported as the upper bound of their bucket and are accurate to within a factor of two.
+ */
+public final class LatencyHistogram {
+
+  private static final int BUCKETS = 64;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong totalNanos = new AtomicLong();
+  private final AtomicLong maximumNanos = new AtomicLong();
+
+  public void record(final long nanos) {
+    final long value = Math.max(0, nanos);
+    this.buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value)));
+    this.count.incrementAndGet();
+    this.totalNanos.addAndGet(value);
+
+    long maximum;
+    while (value > (maximum = this.maximumNanos.get())) {
+      if (this.maximumNanos.compareAndSet(maximum, value)) {
+        break;
+      }
+    }
+  }
+
+  public long getCount() {
+    return this.count.get();
+  }
+
+  public long getTotalNanos() {
+    return this.totalNanos.get();
+  }
+
+  public long getMaximumNanos() {
+    return this.maximumNanos.get();
+  }
+
+  public long getMean(final TimeUnit timeUnit) {
+    final long count = this.count.get();
+    return (count == 0) ? 0 : timeUnit.convert(this.totalNanos.get() / count, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Upper bound in nanoseconds of the bucket containing the given percentile, 0 when empty.
+   */
+  public long getPercentileNanos(final double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("percentile out of range");
+    }
+
+    long total = 0;
+    final long[] counts = new long[BUCKETS];
+    for (int bucket = 0; bucket < BUCKETS; ++bucket) {
+      counts[bucket] = this.buckets.get(bucket);
+      total += counts[bucket];
+    }
+
+    final long threshold = (long) Math.ceil(total * percentile / 100);
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKETS; ++bucket) {
+      seen += counts[bucket];
+      if (counts[bucket] > 0 && seen >= threshold) {
+        return (bucket == BUCKETS - 1) ? Long.MAX_VALUE : (1L << bucket) - 1;
+      }
+    }
+
+    return 0;
+  }
+
+  public String toString() {
+    return "LatencyHistogram[count=" + this.getCount()
+        + ", meanNanos=" + this.getMean(TimeUnit.NANOSECONDS)
+        + ", p50Nanos=" + this.getPercentileNanos(50)
+        + ", p99Nanos=" + this.getPercentileNanos(99)
+        + ", maximumNanos=" + this.getMaximumNanos() + "]";
+  }
+
+}
@@ -0,0 +1,180 @@
+package com.github.voltronic.inverter.metrics;
+
+import com.github.voltronic.inverter.Device;
+import com.github.voltronic.inverter.protocol.ProtocolListener;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link ProtocolListener} collecting {@link CommandMetrics} per device and command.
+ *
+ * <p>Reads are attributed to the command last written to the same device, or to
+ * {@link #UNKNOWN_COMMAND} when nothing has been written to it yet.  Devices are retained until
+ * {@link #remove(Device)} is called.
+ *
+ * <p>Commands not starting with {@code Q} are keyed by their leading upper case letters, so
+ * setters such as {@code PBCV44.0} and {@code PBCV48.0} share the key {@code PBCV}.  Once a device
+ * has the maximum number of keys, further commands are counted under {@link #OTHER_COMMAND}.
+ */
+public class ProtocolMetrics implements ProtocolListener {
+
+  public static final String UNKNOWN_COMMAND = "";
+  public static final String OTHER_COMMAND = "*";
+
+  private static final int DEFAULT_MAXIMUM_COMMANDS = 64;
+
+  private final ConcurrentMap<Device, DeviceMetrics> devices =
+      new ConcurrentHashMap<Device, DeviceMetrics>();
+  private final int maximumCommands;
+
+  public ProtocolMetrics() {
+    this(DEFAULT_MAXIMUM_COMMANDS);
+  }
+
+  /**
+   * @param maximumCommands number of command keys kept per device before commands are counted
+   *                        under {@link #OTHER_COMMAND}
+   */
+  public ProtocolMetrics(final int maximumCommands) {
+    if (maximumCommands <= 0) {
+      throw new IllegalArgumentException("maximumCommands <= 0");
+    }
+
+    this.maximumCommands = maximumCommands;
+  }
+
+  /**
+   * @return key {@code command} is counted under, before the per device maximum is applied
+   */
+  public static String commandKey(final CharSequence command) {
+    final int length = command.length();
+    if (length == 0 || command.charAt(0) == 'Q') {
+      return command.toString();
+    }
+
+    int end = 0;
+    while (end < length && command.charAt(end) >= 'A' && command.charAt(end) <= 'Z') {
+      ++end;
+    }
+
+    return (end == 0) ? command.toString() : command.subSequence(0, end).toString();
+  }
+
+  public void onWrite(
+      final Device device,
+      final CharSequence command,
+      final int bytesWritten,
+      final long elapsedNanos) {
+
+    final DeviceMetrics metrics = this.deviceMetrics(device);
+    final CommandMetrics commandMetrics = metrics.commandMetrics(commandKey(command));
+    metrics.lastCommand = commandMetrics;
+    commandMetrics.recordWrite(bytesWritten, elapsedNanos);
+  }
+
+  public void onWriteFailure(
+      final Device device,
+      final CharSequence command,
+      final IOException cause,
+      final long elapsedNanos) {
+
+    final DeviceMetrics metrics = this.deviceMetrics(device);
+    final CommandMetrics commandMetrics = metrics.commandMetrics(commandKey(command));
+    metrics.lastCommand = commandMetrics;
+    commandMetrics.recordWriteFailure();
+  }
+
+  public void onRead(
+      final Device device,
+      final int bytesRead,
+      final int reads,
+      final long waitNanos,
+      final long elapsedNanos) {
+
+    this.deviceMetrics(device).lastCommand().recordRead(bytesRead, reads, waitNanos, elapsedNanos);
+  }
+
+  public void onReadFailure(
+      final Device device,
+      final IOException cause,
+      final int bytesRead,
+      final int reads,
+      final long waitNanos,
+      final long elapsedNanos) {
+
+    this.deviceMetrics(device).lastCommand().recordReadFailure(cause, bytesRead, reads, waitNanos);
+  }
+
+  public CommandMetrics getMetrics(final Device device, final String command) {
+    final DeviceMetrics metrics = this.devices.get(device);
+    return (metrics == null) ? null : metrics.commands.get(command);
+  }
+
+  public Map<String, CommandMetrics> getMetrics(final Device device) {
+    final DeviceMetrics metrics = this.devices.get(device);
+    if (metrics == null) {
+      return Collections.emptyMap();
+    } else {
+      return Collections.unmodifiableMap(new HashMap<String, CommandMetrics>(metrics.commands));
+    }
+  }
+
+  public void remove(final Device device) {
+    this.devices.remove(device);
+  }
+
+  private DeviceMetrics deviceMetrics(final Device device) {
+    DeviceMetrics metrics = this.devices.get(device);
+    if (metrics == null) {
+      final DeviceMetrics created = new DeviceMetrics(this.maximumCommands);
+      metrics = this.devices.putIfAbsent(device, created);
+      if (metrics == null) {
+        metrics = created;
+      }
+    }
+
+    return metrics;
+  }
+
+  private static final class DeviceMetrics {
+
+    private final ConcurrentMap<String, CommandMetrics> commands =
+        new ConcurrentHashMap<String, CommandMetrics>();
+    private final int maximumCommands;
+    private volatile CommandMetrics lastCommand;
+
+    private DeviceMetrics(final int maximumCommands) {
+      this.maximumCommands = maximumCommands;
+    }
+
+    private CommandMetrics commandMetrics(final String key) {
+      CommandMetrics metrics = this.commands.get(key);
+      if (metrics != null) {
+        return metrics;
+      }
+
+      final String command = (this.commands.size() < this.maximumCommands) ? key : OTHER_COMMAND;
+      metrics = this.commands.get(command);
+      if (metrics == null) {
+        final CommandMetrics created = new CommandMetrics(command);
+        metrics = this.commands.putIfAbsent(command, created);
+        if (metrics == null) {
+          metrics = created;
+        }
+      }
+
+      return metrics;
+    }
+
+    private CommandMetrics lastCommand() {
+      final CommandMetrics metrics = this.lastCommand;
+      return (metrics == null) ? this.commandMetrics(UNKNOWN_COMMAND) : metrics;
+    }
+
+  }
+
+}
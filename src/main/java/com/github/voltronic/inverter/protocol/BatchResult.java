@@ -0,0 +1,83 @@
+package com.github.voltronic.inverter.protocol;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Responses to the commands of a batch executed by {@link P30Session#execute}, in the order the
+ * commands were given.
+ */
+public final class BatchResult {
+
+  private final String[] commands;
+  private final String[] responses;
+  private final IOException[] failures;
+  private final long elapsedNanos;
+
+  BatchResult(
+      final String[] commands,
+      final String[] responses,
+      final IOException[] failures,
+      final long elapsedNanos) {
+
+    this.commands = commands;
+    this.responses = responses;
+    this.failures = failures;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  public int size() {
+    return this.commands.length;
+  }
+
+  public String getCommand(final int index) {
+    return this.commands[index];
+  }
+
+  /**
+   * Response to the command at {@code index}, {@code null} if it failed.
+   */
+  public String getResponse(final int index) {
+    return this.responses[index];
+  }
+
+  /**
+   * Failure of the command at {@code index}, {@code null} if it succeeded.
+   */
+  public IOException getFailure(final int index) {
+    return this.failures[index];
+  }
+
+  public boolean isSuccessful(final int index) {
+    return this.failures[index] == null;
+  }
+
+  public boolean isAllSuccessful() {
+    for (final IOException failure : this.failures) {
+      if (failure != null) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  public long getElapsed(final TimeUnit timeUnit) {
+    return timeUnit.convert(this.elapsedNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public String toString() {
+    final StringBuilder builder = new StringBuilder("BatchResult[");
+    for (int index = 0; index < this.commands.length; ++index) {
+      if (index > 0) {
+        builder.append(", ");
+      }
+
+      builder.append(this.commands[index]).append('=').append(
+          (this.failures[index] == null) ? this.responses[index] : this.failures[index]);
+    }
+
+    return builder.append(", elapsedNanos=").append(this.elapsedNanos).append(']').toString();
+  }
+
+}
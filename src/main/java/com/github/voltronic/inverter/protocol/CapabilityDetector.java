@@ -0,0 +1,383 @@
+package com.github.voltronic.inverter.protocol;
+
+import com.github.voltronic.inverter.Device;
+import com.github.voltronic.inverter.exception.TimeoutException;
+import com.github.voltronic.inverter.response.AsciiResponse;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds out which commands a device supports by probing them and remembers the result per serial
+ * number.
+ *
+ * <p>A device is first asked for its serial number with {@code QID}, when capabilities for that
+ * serial number are already known, either from an earlier detection or from the cache file, they
+ * are returned without probing.  Otherwise every probe command is written and counted as
+ * supported unless the device answers {@code (NAK} or does not answer at all.  Results are written
+ * to the cache file, a {@link Properties} file, as soon as they are known, or once per batch by
+ * {@link #detectAll(Collection, ExecutorService)}.
+ *
+ * <p>After a probe times out or fails the line is resynchronized, so a late response is not taken
+ * for the response to the next probe.  Capabilities detected while any probe timed out are
+ * returned but not remembered, the device is probed again by the next detection.
+ */
+public class CapabilityDetector {
+
+  private static final String SERIAL_NUMBER_COMMAND = "QID";
+  private static final String PROTOCOL_ID_COMMAND = "QPI";
+  private static final String MODEL_COMMAND = "QMN";
+  private static final String FIRMWARE_VERSION_COMMAND = "QVFW";
+  private static final List<String> DEFAULT_PROBE_COMMANDS = Collections.unmodifiableList(
+      Arrays.asList("QPIGS", "QPIRI", "QPIWS", "QMOD", "QFLAG", "QPIGS2", "QBEQI", "QMCHGCR",
+          "QMUCHGCR", "QOPPT", "QCHPT", "QET", "QT"));
+  private static final long DEFAULT_TIMEOUT_MILLISECONDS = 1000;
+
+  private final P30Protocol protocol;
+  private final File cacheFile;
+  private final Map<String, DeviceCapabilities> capabilities =
+      new LinkedHashMap<String, DeviceCapabilities>();
+  private volatile List<String> probeCommands = DEFAULT_PROBE_COMMANDS;
+  private volatile long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMEOUT_MILLISECONDS);
+
+  /**
+   * @param cacheFile file capabilities are loaded from and saved to, {@code null} to only keep them
+   *                  in memory
+   */
+  public CapabilityDetector(final P30Protocol protocol, final File cacheFile) throws IOException {
+    if (protocol == null) {
+      throw new NullPointerException("protocol is null");
+    }
+
+    this.protocol = protocol;
+    this.cacheFile = cacheFile;
+    if (cacheFile != null && cacheFile.isFile()) {
+      this.load();
+    }
+  }
+
+  public List<String> getProbeCommands() {
+    return this.probeCommands;
+  }
+
+  public void setProbeCommands(final Collection<String> probeCommands) {
+    if (probeCommands == null) {
+      throw new NullPointerException("probeCommands is null");
+    }
+
+    this.probeCommands = Collections.unmodifiableList(
+        new ArrayList<String>(new LinkedHashSet<String>(probeCommands)));
+  }
+
+  /**
+   * Time each probe waits for a response before the command is counted as unsupported.
+   */
+  public void setTimeout(final long timeout, final TimeUnit timeUnit) {
+    if (timeout <= 0) {
+      throw new IllegalArgumentException("timeout <= 0");
+    } else if (timeUnit == null) {
+      throw new NullPointerException("timeUnit is null");
+    } else {
+      this.timeoutNanos = timeUnit.toNanos(timeout);
+    }
+  }
+
+  /**
+   * @return capabilities known for {@code serialNumber} or {@code null}
+   */
+  public synchronized DeviceCapabilities getCapabilities(final String serialNumber) {
+    return this.capabilities.get(serialNumber);
+  }
+
+  /**
+   * Forget the capabilities of {@code serialNumber} so the next detection probes the device again.
+   */
+  public void invalidate(final String serialNumber) throws IOException {
+    synchronized (this) {
+      if (this.capabilities.remove(serialNumber) == null) {
+        return;
+      }
+    }
+
+    this.save();
+  }
+
+  public DeviceCapabilities detect(final Device device) throws IOException {
+    if (device == null) {
+      throw new NullPointerException("device is null");
+    }
+
+    return this.detect(device, true);
+  }
+
+  private DeviceCapabilities detect(final Device device, final boolean save) throws IOException {
+    final Prober prober = new Prober(this.protocol.newSession(device));
+    final String serialNumber = prober.probe(SERIAL_NUMBER_COMMAND);
+    if (serialNumber != null) {
+      final DeviceCapabilities known = this.getCapabilities(serialNumber);
+      if (known != null) {
+        return known;
+      }
+    }
+
+    final String protocolId = prober.probe(PROTOCOL_ID_COMMAND);
+    final String model = prober.probe(MODEL_COMMAND);
+    final String firmwareVersion = prober.probe(FIRMWARE_VERSION_COMMAND);
+    final Set<String> supportedCommands = new LinkedHashSet<String>();
+    for (final String command : this.probeCommands) {
+      if (prober.probe(command) != null) {
+        supportedCommands.add(command);
+      }
+    }
+
+    final DeviceCapabilities detected = new DeviceCapabilities(
+        serialNumber, protocolId, model, firmwareVersion, supportedCommands);
+    if (serialNumber != null && !prober.timedOut) {
+      synchronized (this) {
+        this.capabilities.put(serialNumber, detected);
+      }
+
+      if (save) {
+        this.save();
+      }
+    }
+
+    return detected;
+  }
+
+  /**
+   * Detect the capabilities of every device on {@code executor}, devices are probed concurrently
+   * while commands to a single device are written one after the other.  The cache file is written
+   * once after every detection finished, failed or was rejected by the executor.
+   */
+  public DetectionBatch detectAll(
+      final Collection<? extends Device> devices,
+      final ExecutorService executor) {
+
+    if (devices == null) {
+      throw new NullPointerException("devices is null");
+    } else if (executor == null) {
+      throw new NullPointerException("executor is null");
+    }
+
+    for (final Device device : devices) {
+      if (device == null) {
+        throw new NullPointerException("device is null");
+      }
+    }
+
+    final FutureTask<Void> save = new FutureTask<Void>(new Callable<Void>() {
+      public Void call() throws IOException {
+        save();
+        return null;
+      }
+    });
+
+    final AtomicInteger remaining = new AtomicInteger();
+    final Map<Device, Future<DeviceCapabilities>> futures =
+        new LinkedHashMap<Device, Future<DeviceCapabilities>>();
+    final List<DetectionTask> tasks = new ArrayList<DetectionTask>();
+    for (final Device device : devices) {
+      final DetectionTask task = new DetectionTask(new Callable<DeviceCapabilities>() {
+        public DeviceCapabilities call() throws IOException {
+          return detect(device, false);
+        }
+      }, remaining, save);
+
+      futures.put(device, task);
+      tasks.add(task);
+    }
+
+    remaining.set(tasks.size());
+    if (tasks.isEmpty()) {
+      save.run();
+    }
+
+    for (final DetectionTask task : tasks) {
+      try {
+        executor.execute(task);
+      } catch (final RejectedExecutionException e) {
+        task.reject(e);
+      }
+    }
+
+    return new DetectionBatch(futures, save);
+  }
+
+  private void load() throws IOException {
+    final Properties properties = new Properties();
+    final InputStream input = new FileInputStream(this.cacheFile);
+    try {
+      properties.load(input);
+    } finally {
+      input.close();
+    }
+
+    for (final Object name : Collections.list(properties.propertyNames())) {
+      final String key = (String) name;
+      if (!key.endsWith(".commands")) {
+        continue;
+      }
+
+      final String serialNumber = key.substring(0, key.length() - ".commands".length());
+      final Set<String> supportedCommands = new LinkedHashSet<String>();
+      for (final String command : properties.getProperty(key).split(",")) {
+        if (command.length() > 0) {
+          supportedCommands.add(command);
+        }
+      }
+
+      this.capabilities.put(serialNumber, new DeviceCapabilities(serialNumber,
+          properties.getProperty(serialNumber + ".protocol"),
+          properties.getProperty(serialNumber + ".model"),
+          properties.getProperty(serialNumber + ".firmware"),
+          supportedCommands));
+    }
+  }
+
+  /**
+   * Write all known capabilities to a temporary file and rename it over the cache file.
+   */
+  private synchronized void save() throws IOException {
+    if (this.cacheFile == null) {
+      return;
+    }
+
+    final Properties properties = new Properties();
+    for (final DeviceCapabilities known : this.capabilities.values()) {
+      final String serialNumber = known.getSerialNumber();
+      final StringBuilder commands = new StringBuilder();
+      for (final String command : known.getSupportedCommands()) {
+        if (commands.length() > 0) {
+          commands.append(',');
+        }
+        commands.append(command);
+      }
+
+      properties.setProperty(serialNumber + ".commands", commands.toString());
+      setIfNotNull(properties, serialNumber + ".protocol", known.getProtocolId());
+      setIfNotNull(properties, serialNumber + ".model", known.getModel());
+      setIfNotNull(properties, serialNumber + ".firmware", known.getFirmwareVersion());
+    }
+
+    final File directory = this.cacheFile.getAbsoluteFile().getParentFile();
+    final File temporaryFile = File.createTempFile(this.cacheFile.getName(), ".tmp", directory);
+    try {
+      final OutputStream output = new FileOutputStream(temporaryFile);
+      try {
+        properties.store(output, "Detected inverter capabilities");
+      } finally {
+        output.close();
+      }
+
+      if (!temporaryFile.renameTo(this.cacheFile)
+          && !(this.cacheFile.delete() && temporaryFile.renameTo(this.cacheFile))) {
+        throw new IOException("Could not replace " + this.cacheFile);
+      }
+    } finally {
+      temporaryFile.delete();
+    }
+  }
+
+  /**
+   * Detection of one device of a batch, the last one to finish writes the cache file.
+   */
+  private static final class DetectionTask extends FutureTask<DeviceCapabilities> {
+
+    private final AtomicInteger remaining;
+    private final Runnable save;
+
+    private DetectionTask(
+        final Callable<DeviceCapabilities> detection,
+        final AtomicInteger remaining,
+        final Runnable save) {
+
+      super(detection);
+      this.remaining = remaining;
+      this.save = save;
+    }
+
+    protected void done() {
+      if (this.remaining.decrementAndGet() == 0) {
+        this.save.run();
+      }
+    }
+
+    private void reject(final RejectedExecutionException e) {
+      this.setException(e);
+    }
+
+  }
+
+  /**
+   * Probes of a single detection.
+   */
+  private final class Prober {
+
+    private final P30Session session;
+    private boolean timedOut;
+
+    private Prober(final P30Session session) {
+      this.session = session;
+    }
+
+    /**
+     * @return response without its leading {@code (} or {@code null} if the device answered
+     *         {@code (NAK} or did not answer in time
+     */
+    private String probe(final String command) throws IOException {
+      final AsciiResponse response;
+      try {
+        this.session.write(command);
+        response = this.session.readAscii(timeoutNanos, TimeUnit.NANOSECONDS);
+      } catch (final TimeoutException e) {
+        this.timedOut = true;
+        protocol.clear(this.session.getDevice());
+        return null;
+      } catch (final IOException e) {
+        protocol.clear(this.session.getDevice());
+        throw e;
+      }
+
+      if (response.isNak()) {
+        return null;
+      } else if (response.length() > 0 && response.charAt(0) == '(') {
+        return response.subSequence(1, response.length()).toString();
+      } else {
+        return response.toString();
+      }
+    }
+
+  }
+
+  private static void setIfNotNull(
+      final Properties properties,
+      final String key,
+      final String value) {
+
+    if (value != null) {
+      properties.setProperty(key, value);
+    }
+  }
+
+}
@@ -0,0 +1,43 @@
+package com.github.voltronic.inverter.protocol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Immutable command framed once, including the digest and end of input bytes, so it can be written
+ * repeatedly without being encoded again.
+ */
+public final class CommandFrame {
+
+  private final String command;
+  private final byte[] bytes;
+
+  CommandFrame(final String command, final byte[] bytes) {
+    this.command = command;
+    this.bytes = bytes;
+  }
+
+  public String getCommand() {
+    return this.command;
+  }
+
+  public int getLength() {
+    return this.bytes.length;
+  }
+
+  public byte[] toByteArray() {
+    return this.bytes.clone();
+  }
+
+  public ByteBuffer asByteBuffer() {
+    return ByteBuffer.wrap(this.bytes).asReadOnlyBuffer();
+  }
+
+  byte[] bytes() {
+    return this.bytes;
+  }
+
+  public String toString() {
+    return "CommandFrame[command=" + this.command + ", length=" + this.bytes.length + "]";
+  }
+
+}
@@ -0,0 +1,45 @@
+package com.github.voltronic.inverter.protocol;
+
+import com.github.voltronic.inverter.Device;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * Detections started by {@link CapabilityDetector#detectAll}, one future per device and one for
+ * writing the cache file after all of them finished.
+ */
+public final class DetectionBatch {
+
+  private final Map<Device, Future<DeviceCapabilities>> futures;
+  private final Future<Void> save;
+
+  DetectionBatch(
+      final Map<Device, Future<DeviceCapabilities>> futures,
+      final Future<Void> save) {
+
+    this.futures = Collections.unmodifiableMap(futures);
+    this.save = save;
+  }
+
+  /**
+   * Detection of each device in the order given, a device the executor rejected fails with the
+   * {@link java.util.concurrent.RejectedExecutionException}.
+   */
+  public Map<Device, Future<DeviceCapabilities>> getFutures() {
+    return this.futures;
+  }
+
+  public Future<DeviceCapabilities> getFuture(final Device device) {
+    return this.futures.get(device);
+  }
+
+  /**
+   * Write of the cache file, done once every detection finished and failing with the
+   * {@link java.io.IOException} if the file could not be written.
+   */
+  public Future<Void> getSave() {
+    return this.save;
+  }
+
+}
@@ -0,0 +1,74 @@
+package com.github.voltronic.inverter.protocol;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Protocol and commands supported by a device as found by a {@link CapabilityDetector}.
+ */
+public final class DeviceCapabilities {
+
+  private final String serialNumber;
+  private final String protocolId;
+  private final String model;
+  private final String firmwareVersion;
+  private final Set<String> supportedCommands;
+
+  public DeviceCapabilities(
+      final String serialNumber,
+      final String protocolId,
+      final String model,
+      final String firmwareVersion,
+      final Set<String> supportedCommands) {
+
+    if (supportedCommands == null) {
+      throw new NullPointerException("supportedCommands is null");
+    }
+
+    this.serialNumber = serialNumber;
+    this.protocolId = protocolId;
+    this.model = model;
+    this.firmwareVersion = firmwareVersion;
+    this.supportedCommands = Collections.unmodifiableSet(new TreeSet<String>(supportedCommands));
+  }
+
+  /**
+   * @return serial number reported by {@code QID} or {@code null} if the device did not answer it
+   */
+  public String getSerialNumber() {
+    return this.serialNumber;
+  }
+
+  /**
+   * @return protocol reported by {@code QPI}, e.g. {@code PI30}, or {@code null}
+   */
+  public String getProtocolId() {
+    return this.protocolId;
+  }
+
+  public String getModel() {
+    return this.model;
+  }
+
+  public String getFirmwareVersion() {
+    return this.firmwareVersion;
+  }
+
+  public Set<String> getSupportedCommands() {
+    return this.supportedCommands;
+  }
+
+  public boolean isSupported(final String command) {
+    return this.supportedCommands.contains(command);
+  }
+
+  public String toString() {
+    return "DeviceCapabilities[serialNumber=" + this.serialNumber
+        + ", protocolId=" + this.protocolId
+        + ", model=" + this.model
+        + ", firmwareVersion=" + this.firmwareVersion
+        + ", supportedCommands=" + this.supportedCommands + "]";
+  }
+
+}
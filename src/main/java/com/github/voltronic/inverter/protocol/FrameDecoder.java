@@ -0,0 +1,156 @@
+package com.github.voltronic.inverter.protocol;
+
+import com.github.voltronic.inverter.Device;
+import com.github.voltronic.inverter.exception.BufferOverflowException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Push-based decoder splitting arbitrary chunks of input into verified responses.
+ *
+ * <p>Unlike the blocking reads of {@link P30Protocol}, bytes following the end of input of one
+ * response are kept as the start of the next, so responses arriving back to back are decoded
+ * without resynchronizing.  A response that fails verification or exceeds the maximum buffer size
+ * is reported to the {@link FrameListener} and decoding resumes after its end of input.
+ *
+ * <p>Instances are not thread-safe.
+ */
+public final class FrameDecoder {
+
+  private static final int CHUNK_SIZE = 64;
+  private static final byte END_OF_INPUT_BYTE = (byte) '\r';
+
+  private final P30Protocol protocol;
+  private final FrameListener listener;
+  private final ByteBuffer frame;
+  private final byte[] chunk = new byte[CHUNK_SIZE];
+  private boolean discarding;
+
+  FrameDecoder(
+      final P30Protocol protocol,
+      final FrameListener listener,
+      final int maximumBufferSize) {
+
+    this.protocol = protocol;
+    this.listener = listener;
+    this.frame = ByteBuffer.allocate(maximumBufferSize);
+  }
+
+  /**
+   * @return number of verified responses passed to the listener
+   */
+  public int decode(
+      final byte[] bytes,
+      int off,
+      final int len) {
+
+    if (bytes == null) {
+      throw new NullPointerException("bytes is null");
+    } else if (off < 0 || len < 0 || len > bytes.length - off) {
+      throw new IndexOutOfBoundsException();
+    }
+
+    final int end = off + len;
+    int frames = 0;
+    while (off < end) {
+      int index = off;
+      while (index < end && bytes[index] != END_OF_INPUT_BYTE) {
+        ++index;
+      }
+
+      final boolean complete = index < end;
+      final int length = (complete ? index + 1 : end) - off;
+
+      if (this.discarding) {
+        this.discarding = !complete;
+      } else if (length > this.frame.remaining()) {
+        final int byteLimit = this.frame.capacity();
+        this.frame.clear();
+        this.discarding = !complete;
+        this.listener.onFrameError(new BufferOverflowException(byteLimit));
+      } else {
+        this.frame.put(bytes, off, length);
+        if (complete && this.emit()) {
+          ++frames;
+        }
+      }
+
+      off += length;
+    }
+
+    return frames;
+  }
+
+  public int decode(final ByteBuffer input) {
+    if (input == null) {
+      throw new NullPointerException("input is null");
+    } else if (input.hasArray()) {
+      final int position = input.position();
+      final int remaining = input.remaining();
+      input.position(position + remaining);
+      return this.decode(input.array(), input.arrayOffset() + position, remaining);
+    }
+
+    int frames = 0;
+    while (input.hasRemaining()) {
+      final int length = Math.min(input.remaining(), CHUNK_SIZE);
+      input.get(this.chunk, 0, length);
+      frames += this.decode(this.chunk, 0, length);
+    }
+
+    return frames;
+  }
+
+  /**
+   * Decode whatever is immediately available from {@code device} without waiting.
+   *
+   * @return number of verified responses passed to the listener
+   */
+  public int readAvailable(final Device device) throws IOException {
+    if (device == null) {
+      throw new NullPointerException("device is null");
+    }
+
+    int frames = 0;
+    int bytesRead;
+    while ((bytesRead = device.read(this.chunk, 0, CHUNK_SIZE)) > 0) {
+      frames += this.decode(this.chunk, 0, bytesRead);
+    }
+
+    return frames;
+  }
+
+  /**
+   * Number of bytes of an incomplete response held by the decoder.
+   */
+  public int getBufferedBytes() {
+    return this.frame.position();
+  }
+
+  /**
+   * Discard any incomplete response.
+   */
+  public void reset() {
+    this.frame.clear();
+    this.discarding = false;
+  }
+
+  private boolean emit() {
+    final int frameLength = this.frame.position();
+    try {
+      try {
+        this.protocol.verifyFrame(this.frame, 0, frameLength);
+      } catch (final IOException e) {
+        this.listener.onFrameError(e);
+        return false;
+      }
+
+      this.frame.flip();
+      this.listener.onFrame(this.frame);
+      return true;
+    } finally {
+      this.frame.clear();
+    }
+  }
+
+}
@@ -0,0 +1,19 @@
+package com.github.voltronic.inverter.protocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public interface FrameListener {
+
+  /**
+   * Called for every verified response, {@code data} holds the response data between its position
+   * and limit and is only valid until this method returns.
+   */
+  void onFrame(ByteBuffer data);
+
+  /**
+   * Called when a response is discarded, decoding continues with the bytes that follow it.
+   */
+  void onFrameError(IOException cause);
+
+}
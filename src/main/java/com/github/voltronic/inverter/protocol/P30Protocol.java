@@ -3,17 +3,28 @@ package com.github.voltronic.inverter.protocol;
 import com.github.voltronic.inverter.Device;
 import com.github.voltronic.inverter.MessageDigestSupplier;
 import com.github.voltronic.inverter.Protocol;
+import com.github.voltronic.inverter.device.TimeoutAwareDevice;
+import com.github.voltronic.inverter.digest.V1VoltronicCrc;
 import com.github.voltronic.inverter.digest.V1VoltronicMessageDigest;
 import com.github.voltronic.inverter.exception.BufferOverflowException;
 import com.github.voltronic.inverter.exception.DigestMismatchException;
 import com.github.voltronic.inverter.exception.TimeoutException;
 import com.github.voltronic.inverter.exception.TruncatedDataException;
-import java.io.ByteArrayOutputStream;
+import com.github.voltronic.inverter.response.AsciiResponse;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.security.DigestException;
 import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 public class P30Protocol implements Protocol {
@@ -22,31 +33,44 @@ public class P30Protocol implements Protocol {
   private static final Charset DEFAULT_CHARSET;
 
   private static final int READ_SIZE = 8;
-  private static final int INITIAL_BUFFER_SIZE = 128;
   private static final long READ_INTERVAL_MILLISECONDS = 50;
+  private static final long INITIAL_READ_INTERVAL_MILLISECONDS = 1;
   private static final int DEFAULT_MAXIMUM_BUFFER_SIZE = 1024 * 8;
+  private static final int INITIAL_WRITE_BUFFER_SIZE = 64;
+  private static final int DEFAULT_COMMAND_CACHE_SIZE = 32;
+  private static final long DEFAULT_RESYNC_QUIET_MILLISECONDS = 100;
+  private static final long DEFAULT_RESYNC_TIMEOUT_MILLISECONDS = 1200;
+  private static final long WRITE_RETRY_NANOSECONDS = TimeUnit.MILLISECONDS.toNanos(1);
   private static final byte END_OF_INPUT_BYTE = (byte) '\r';
+  private static final long NO_TIMEOUT = -1;
 
   private final MessageDigestSupplier messageDigestSupplier;
+  private final boolean defaultDigest;
   private final Charset protocolCharset;
-  private int maximumBufferSize;
-  private boolean verifyDigest;
+  private final ThreadLocal<Scratch> scratch;
+  private final CommandCache commandCache;
+  private final boolean immutable;
+  private volatile int maximumBufferSize;
+  private volatile boolean verifyDigest;
+  private volatile ReadWaitStrategy readWaitStrategy;
+  private volatile ProtocolListener protocolListener;
 
   public P30Protocol() {
-    this(DEFAULT_MESSAGE_DIGEST_SUPPLIER, DEFAULT_CHARSET, false);
+    this(DEFAULT_MESSAGE_DIGEST_SUPPLIER, DEFAULT_CHARSET, false, null);
   }
 
   protected P30Protocol(
       final MessageDigestSupplier messageDigestSupplier,
       final Charset protocolCharset) {
 
-    this(messageDigestSupplier, protocolCharset, true);
+    this(messageDigestSupplier, protocolCharset, true, null);
   }
 
   private P30Protocol(
       final MessageDigestSupplier messageDigestSupplier,
       final Charset protocolCharset,
-      final boolean overrideConstructor) {
+      final boolean overrideConstructor,
+      final Builder builder) {
 
     if (messageDigestSupplier == null) {
       throw new NullPointerException("messageDigestSupplier is null");
@@ -70,9 +94,56 @@ public class P30Protocol implements Protocol {
     }
 
     this.messageDigestSupplier = messageDigestSupplier;
+    this.defaultDigest = messageDigestSupplier == DEFAULT_MESSAGE_DIGEST_SUPPLIER;
     this.protocolCharset = protocolCharset;
-    this.setMaximumBufferSize(DEFAULT_MAXIMUM_BUFFER_SIZE);
-    this.verifyDigest = true;
+    this.scratch = new ThreadLocal<Scratch>() {
+      protected Scratch initialValue() {
+        return newScratch();
+      }
+    };
+
+    if (builder == null) {
+      this.immutable = false;
+      this.commandCache = (messageDigestSupplier == DEFAULT_MESSAGE_DIGEST_SUPPLIER)
+          ? new CommandCache(DEFAULT_COMMAND_CACHE_SIZE) : null;
+      this.maximumBufferSize = DEFAULT_MAXIMUM_BUFFER_SIZE;
+      this.verifyDigest = true;
+      this.readWaitStrategy = ReadWaitStrategies.exponentialBackoff(
+          INITIAL_READ_INTERVAL_MILLISECONDS, READ_INTERVAL_MILLISECONDS, TimeUnit.MILLISECONDS);
+    } else {
+      final int commandCacheSize = (builder.commandCacheSize < 0)
+          ? DEFAULT_COMMAND_CACHE_SIZE : builder.commandCacheSize;
+      if (messageDigestSupplier == DEFAULT_MESSAGE_DIGEST_SUPPLIER) {
+        this.commandCache = (commandCacheSize == 0) ? null : new CommandCache(commandCacheSize);
+      } else if (builder.commandCacheSize > 0) {
+        throw new UnsupportedOperationException(
+            "Commands are only cached when using the default digest");
+      } else {
+        this.commandCache = null;
+      }
+
+      this.immutable = true;
+      this.maximumBufferSize = builder.maximumBufferSize;
+      this.verifyDigest = builder.verifyDigest;
+      this.readWaitStrategy = builder.readWaitStrategy;
+      this.protocolListener = builder.protocolListener;
+    }
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Create a session reading and writing {@code device} with scratch buffers of its own, avoiding
+   * the thread-local lookup done by the methods of this protocol.
+   */
+  public P30Session newSession(final Device device) {
+    if (device == null) {
+      throw new NullPointerException("device is null");
+    }
+
+    return new P30Session(this, device);
   }
 
   public String read(
@@ -88,151 +159,1037 @@ public class P30Protocol implements Protocol {
       throw new NullPointerException("timeoutTimeUnit is null");
     }
 
-    final byte[] bytes = this.readLoop(device, timeout, timeoutTimeUnit);
-    final MessageDigest digest = this.messageDigestSupplier.get();
+    return this.read(device, this.scratch.get(), timeout, timeoutTimeUnit);
+  }
 
-    final int bytesLength = bytes.length;
-    final int digestLength = digest.getDigestLength();
-    final int dataLength = bytesLength - digestLength - 1;
+  /**
+   * Read a single response into {@code buffer} without allocating on the steady-state path.
+   *
+   * <p>The response is framed starting at the current position of {@code buffer}.  On return the
+   * position has been advanced past the response data, the digest and end of input bytes that
+   * follow it are not considered part of the response.  At most the smaller of
+   * {@code buffer.remaining()} and the configured maximum buffer size is accepted, digest and end
+   * of input bytes included.
+   *
+   * @return number of response data bytes written to {@code buffer}
+   */
+  public int read(
+      final Device device,
+      final ByteBuffer buffer,
+      final long timeout,
+      final TimeUnit timeoutTimeUnit) throws IOException {
 
-    if (dataLength < 0) {
-      throw new TruncatedDataException(digestLength + 1, bytesLength);
-    } else if (this.verifyDigest) {
-      digest.update(bytes, 0, dataLength);
-      final byte[] calculatedDigest = digest.digest();
-      final byte[] receivedDigest = new byte[digestLength];
+    if (device == null) {
+      throw new NullPointerException("device is null");
+    } else if (buffer == null) {
+      throw new NullPointerException("buffer is null");
+    } else if (buffer.isReadOnly()) {
+      throw new IllegalArgumentException("buffer is read-only");
+    } else if (timeout < 0) {
+      throw new IllegalArgumentException("timeout < 0");
+    } else if (timeoutTimeUnit == null) {
+      throw new NullPointerException("timeoutTimeUnit is null");
+    }
 
-      for (int bytesIdx = dataLength - 1, digestIdx = 0; digestIdx < digestLength; ++digestIdx) {
-        receivedDigest[digestIdx] = bytes[++bytesIdx];
-      }
+    return this.readFrame(device, buffer, this.scratch.get(), timeout, timeoutTimeUnit);
+  }
 
-      if (!MessageDigest.isEqual(calculatedDigest, receivedDigest)) {
-        throw new DigestMismatchException(receivedDigest, calculatedDigest);
-      }
+  /**
+   * Read a single response as an {@link AsciiResponse}, interpreting the response data as ASCII
+   * whatever the charset of this protocol, and only creating a {@code String} when it is asked
+   * for.
+   */
+  public AsciiResponse readAscii(
+      final Device device,
+      final long timeout,
+      final TimeUnit timeoutTimeUnit) throws IOException {
+
+    if (device == null) {
+      throw new NullPointerException("device is null");
+    } else if (timeout < 0) {
+      throw new IllegalArgumentException("timeout < 0");
+    } else if (timeoutTimeUnit == null) {
+      throw new NullPointerException("timeoutTimeUnit is null");
     }
 
-    return this.protocolCharset.decode(ByteBuffer.wrap(bytes, 0, dataLength)).toString();
+    return this.readAscii(device, this.scratch.get(), timeout, timeoutTimeUnit);
+  }
+
+  AsciiResponse readAscii(
+      final Device device,
+      final Scratch scratch,
+      final long timeout,
+      final TimeUnit timeoutTimeUnit) throws IOException {
+
+    final ByteBuffer frame = scratch.frameBuffer(this.maximumBufferSize);
+    this.readFrame(device, frame, scratch, timeout, timeoutTimeUnit);
+    frame.flip();
+
+    return AsciiResponse.copyOf(frame);
+  }
+
+  String read(
+      final Device device,
+      final Scratch scratch,
+      final long timeout,
+      final TimeUnit timeoutTimeUnit) throws IOException {
+
+    final ByteBuffer frame = scratch.frameBuffer(this.maximumBufferSize);
+    this.readFrame(device, frame, scratch, timeout, timeoutTimeUnit);
+    frame.flip();
+
+    return this.protocolCharset.decode(frame).toString();
+  }
+
+  /**
+   * Read whatever is immediately available from {@code device} without waiting.
+   *
+   * <p>The partial response accumulates from index 0 of {@code buffer} up to its position, so the
+   * same buffer must be passed in until the response is complete and cleared before the next one.
+   * Once the end of input has been received the response is verified and the position of
+   * {@code buffer} is set to the end of the response data.
+   *
+   * @return number of response data bytes once the response is complete, otherwise -1
+   */
+  public int readAvailable(
+      final Device device,
+      final ByteBuffer buffer) throws IOException {
+
+    if (device == null) {
+      throw new NullPointerException("device is null");
+    } else if (buffer == null) {
+      throw new NullPointerException("buffer is null");
+    } else if (buffer.isReadOnly()) {
+      throw new IllegalArgumentException("buffer is read-only");
+    }
+
+    return this.readAvailable(device, buffer, this.scratch.get());
+  }
+
+  int readAvailable(
+      final Device device,
+      final ByteBuffer buffer,
+      final Scratch scratch) throws IOException {
+
+    final ProtocolListener listener = this.protocolListener;
+    final byte[] bytes = scratch.chunk;
+    final int byteLimit = Math.min(buffer.limit(), this.maximumBufferSize);
+
+    if (buffer.position() == 0) {
+      scratch.availableReads = 0;
+      scratch.availableStartNanoTime = System.nanoTime();
+    }
+
+    try {
+      while (true) {
+        final int bytesRead = device.read(bytes, 0, bytes.length);
+        ++scratch.availableReads;
+        if (bytesRead <= 0) {
+          return -1;
+        }
+
+        final int endIndex = endOfInputIndex(bytes, bytesRead);
+        final int length = (endIndex < 0) ? bytesRead : endIndex + 1;
+        if (buffer.position() + length > byteLimit) {
+          throw new BufferOverflowException(byteLimit);
+        }
+
+        buffer.put(bytes, 0, length);
+        if (endIndex >= 0) {
+          final int frameLength = buffer.position();
+          final int dataLength = this.verifyFrame(buffer, 0, frameLength, scratch);
+          if (listener != null) {
+            listener.onRead(device, frameLength, scratch.availableReads, 0,
+                System.nanoTime() - scratch.availableStartNanoTime);
+          }
+
+          return dataLength;
+        }
+      }
+    } catch (final IOException e) {
+      if (listener != null) {
+        listener.onReadFailure(device, e, buffer.position(), scratch.availableReads, 0,
+            System.nanoTime() - scratch.availableStartNanoTime);
+      }
+
+      throw e;
+    }
   }
 
   public void write(
       final Device device,
       final CharSequence input) throws IOException {
 
-    final byte[] bytes;
     if (device == null) {
       throw new NullPointerException("device is null");
     } else if (input == null) {
       throw new NullPointerException("input is null");
-    } else {
-      final byte[] inputBytes = this.protocolCharset.encode(input.toString()).array();
-      final int inputBytesLength = inputBytes.length;
-      final MessageDigest digest = this.messageDigestSupplier.get();
-      final ByteArrayOutputStream buffer = new ByteArrayOutputStream(
-          inputBytesLength + digest.getDigestLength() + 1);
+    }
+
+    this.writeFrame(device, input, this.commandBytes(input), NO_TIMEOUT);
+  }
+
+  /**
+   * Write {@code input}, blocking for at most {@code timeout} when {@code device} is a
+   * {@link TimeoutAwareDevice}.
+   */
+  public void write(
+      final Device device,
+      final CharSequence input,
+      final long timeout,
+      final TimeUnit timeoutTimeUnit) throws IOException {
 
-      if (inputBytesLength > 0) {
-        digest.update(inputBytes, 0, inputBytesLength);
-        buffer.write(inputBytes, 0, inputBytesLength);
+    if (device == null) {
+      throw new NullPointerException("device is null");
+    } else if (input == null) {
+      throw new NullPointerException("input is null");
+    } else if (timeout < 0) {
+      throw new IllegalArgumentException("timeout < 0");
+    } else if (timeoutTimeUnit == null) {
+      throw new NullPointerException("timeoutTimeUnit is null");
+    }
+
+    this.writeFrame(device, input, this.commandBytes(input), timeoutTimeUnit.toNanos(timeout));
+  }
+
+  /**
+   * Write {@code input}, blocking for at most {@code timeoutNanos} when {@code device} is a
+   * {@link TimeoutAwareDevice}.
+   */
+  void write(
+      final Device device,
+      final CharSequence input,
+      final long timeoutNanos) throws IOException {
+
+    this.writeFrame(device, input, this.commandBytes(input), Math.max(0, timeoutNanos));
+  }
+
+  public void write(
+      final Device device,
+      final CommandFrame frame) throws IOException {
+
+    if (device == null) {
+      throw new NullPointerException("device is null");
+    } else if (frame == null) {
+      throw new NullPointerException("frame is null");
+    }
+
+    this.writeFrame(device, frame.getCommand(), frame.bytes(), NO_TIMEOUT);
+  }
+
+  /**
+   * Frame {@code command} once so that it can be written repeatedly with
+   * {@link #write(Device, CommandFrame)}.
+   */
+  public CommandFrame prepare(final CharSequence command) {
+    if (command == null) {
+      throw new NullPointerException("command is null");
+    }
+
+    return new CommandFrame(command.toString(), this.frameBytes(command));
+  }
+
+  /**
+   * Read a single response from {@code channel} directly into {@code buffer}, with the same
+   * position semantics as {@link #read(Device, ByteBuffer, long, TimeUnit)}.
+   *
+   * <p>Bytes received after the end of input are discarded.
+   */
+  public int read(
+      final ReadableByteChannel channel,
+      final ByteBuffer buffer,
+      final long timeout,
+      final TimeUnit timeoutTimeUnit) throws IOException {
+
+    if (channel == null) {
+      throw new NullPointerException("channel is null");
+    } else if (buffer == null) {
+      throw new NullPointerException("buffer is null");
+    } else if (buffer.isReadOnly()) {
+      throw new IllegalArgumentException("buffer is read-only");
+    } else if (timeout < 0) {
+      throw new IllegalArgumentException("timeout < 0");
+    } else if (timeoutTimeUnit == null) {
+      throw new NullPointerException("timeoutTimeUnit is null");
+    }
+
+    final ReadWaitStrategy waitStrategy = this.readWaitStrategy;
+    final int start = buffer.position();
+    final int limit = buffer.limit();
+    final int byteLimit = Math.min(buffer.remaining(), this.maximumBufferSize);
+    final long endNanoTime = System.nanoTime() + Math.max(0, timeoutTimeUnit.toNanos(timeout));
+    int idleReads = 0;
+
+    try {
+      buffer.limit(start + byteLimit);
+      while (true) {
+        final int position = buffer.position();
+        if (position - start == byteLimit) {
+          throw new BufferOverflowException(byteLimit);
+        }
+
+        final int bytesRead = channel.read(buffer);
+        if (bytesRead < 0) {
+          throw new EOFException("Channel reached end of stream after "
+              + (position - start) + " bytes");
+        }
+
+        for (int index = position; index < position + bytesRead; ++index) {
+          if (buffer.get(index) == END_OF_INPUT_BYTE) {
+            return this.verifyFrame(buffer, start, index + 1 - start, this.scratch.get());
+          }
+        }
+
+        final long remainingNanos = endNanoTime - System.nanoTime();
+        if (remainingNanos < 0) {
+          throw new TimeoutException(timeout, timeoutTimeUnit);
+        } else if (bytesRead > 0) {
+          idleReads = 0;
+          continue;
+        }
+
+        if (idleReads < Integer.MAX_VALUE) {
+          ++idleReads;
+        }
+
+        await(waitStrategy, idleReads, remainingNanos, buffer.position() - start);
       }
+    } finally {
+      buffer.limit(limit);
+    }
+  }
 
-      buffer.write(digest.digest());
-      buffer.write(END_OF_INPUT_BYTE);
-      bytes = buffer.toByteArray();
+  /**
+   * Frame {@code input} into a direct buffer and write it to {@code channel}, waiting for
+   * non-blocking channels to accept the complete frame.
+   */
+  public void write(
+      final WritableByteChannel channel,
+      final CharSequence input) throws IOException {
+
+    if (channel == null) {
+      throw new NullPointerException("channel is null");
+    } else if (input == null) {
+      throw new NullPointerException("input is null");
     }
 
-    device.write(bytes, 0, bytes.length);
+    writeFully(channel, this.frame(input, this.scratch.get()));
   }
 
-  public void clear(Device device) throws IOException {
-    device.write(new byte[]{END_OF_INPUT_BYTE}, 0, 1);
+  public void write(
+      final WritableByteChannel channel,
+      final CommandFrame frame) throws IOException {
 
-    while (findEndAndDiscardBytes(device, 100)) {
+    if (channel == null) {
+      throw new NullPointerException("channel is null");
+    } else if (frame == null) {
+      throw new NullPointerException("frame is null");
     }
 
-    device.write(new byte[]{END_OF_INPUT_BYTE}, 0, 1);
+    writeFully(channel, ByteBuffer.wrap(frame.bytes()));
+  }
 
-    while (findEndAndDiscardBytes(device, 100)) {
+  /**
+   * Create a decoder verifying responses with the digest settings and maximum buffer size of this
+   * protocol.
+   */
+  public FrameDecoder newFrameDecoder(final FrameListener listener) {
+    if (listener == null) {
+      throw new NullPointerException("listener is null");
     }
 
-    findEndAndDiscardBytes(device, 1000);
+    return new FrameDecoder(this, listener, this.maximumBufferSize);
+  }
+
+  public void clear(final Device device) throws IOException {
+    this.resync(device, DEFAULT_RESYNC_QUIET_MILLISECONDS, DEFAULT_RESYNC_TIMEOUT_MILLISECONDS,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Terminate any partial input on the device and discard output until the device has been quiet
+   * for {@code quietTime} or {@code timeout} is reached, whichever happens first.
+   *
+   * <p>On a {@link TimeoutAwareDevice} the write and reads are bounded by {@code timeout} as well,
+   * a read still blocking at the deadline ends the resync without the device being quiet.
+   */
+  public ResyncResult resync(
+      final Device device,
+      final long quietTime,
+      final long timeout,
+      final TimeUnit timeUnit) throws IOException {
+
+    if (device == null) {
+      throw new NullPointerException("device is null");
+    } else if (quietTime <= 0) {
+      throw new IllegalArgumentException("quietTime <= 0");
+    } else if (timeout < 0) {
+      throw new IllegalArgumentException("timeout < 0");
+    } else if (timeUnit == null) {
+      throw new NullPointerException("timeUnit is null");
+    }
+
+    final ReadWaitStrategy waitStrategy = this.readWaitStrategy;
+    final TimeoutAwareDevice timeoutAwareDevice =
+        (device instanceof TimeoutAwareDevice) ? (TimeoutAwareDevice) device : null;
+    final byte[] bytes = this.scratch.get().chunk;
+    final long quietNanos = timeUnit.toNanos(quietTime);
+    final long startNanoTime = System.nanoTime();
+    final long endNanoTime = startNanoTime + timeUnit.toNanos(timeout);
+
+    bytes[0] = END_OF_INPUT_BYTE;
+    if (timeoutAwareDevice == null) {
+      device.write(bytes, 0, 1);
+    } else {
+      timeoutAwareDevice.write(bytes, 0, 1,
+          Math.max(0, endNanoTime - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    long lastReceivedNanoTime = System.nanoTime();
+    long bytesDiscarded = 0;
+    int idleReads = 0;
+
+    while (true) {
+      final int bytesRead;
+      try {
+        bytesRead = (timeoutAwareDevice == null)
+            ? device.read(bytes, 0, bytes.length)
+            : timeoutAwareDevice.read(bytes, 0, bytes.length,
+                Math.max(0, endNanoTime - System.nanoTime()), TimeUnit.NANOSECONDS);
+      } catch (final TimeoutException e) {
+        return new ResyncResult(bytesDiscarded, System.nanoTime() - startNanoTime, false);
+      }
+
+      final long nanoTime = System.nanoTime();
+
+      if (bytesRead > 0) {
+        bytesDiscarded += bytesRead;
+        lastReceivedNanoTime = nanoTime;
+        idleReads = 0;
+      } else if (nanoTime - lastReceivedNanoTime >= quietNanos) {
+        return new ResyncResult(bytesDiscarded, nanoTime - startNanoTime, true);
+      }
+
+      final long remainingNanos = endNanoTime - nanoTime;
+      if (remainingNanos <= 0) {
+        return new ResyncResult(bytesDiscarded, nanoTime - startNanoTime, false);
+      } else if (bytesRead <= 0) {
+        if (idleReads < Integer.MAX_VALUE) {
+          ++idleReads;
+        }
+
+        await(waitStrategy, idleReads,
+            Math.min(remainingNanos, lastReceivedNanoTime + quietNanos - nanoTime),
+            bytesDiscarded);
+      }
+    }
+  }
+
+  public Charset getCharset() {
+    return this.protocolCharset;
+  }
+
+  public int getMaximumBufferSize() {
+    return this.maximumBufferSize;
   }
 
   public void setMaximumBufferSize(final int maximumBufferSize) {
-    if (maximumBufferSize <= 0) {
-      throw new IllegalArgumentException("maximumBufferSize <= 0");
-    } else if (maximumBufferSize > Character.MAX_VALUE) {
-      throw new IllegalArgumentException("maximumBufferSize > " + Character.MAX_VALUE);
+    this.checkMutable();
+    this.maximumBufferSize = checkMaximumBufferSize(maximumBufferSize);
+  }
+
+  public int getCommandCacheSize() {
+    return (this.commandCache == null) ? 0 : this.commandCache.getMaximumSize();
+  }
+
+  /**
+   * Set the number of most recently written commands kept framed, 0 disables the cache.
+   *
+   * <p>Only {@code String} commands written with the default digest are cached.
+   */
+  public void setCommandCacheSize(final int commandCacheSize) {
+    this.checkMutable();
+    if (commandCacheSize < 0) {
+      throw new IllegalArgumentException("commandCacheSize < 0");
+    } else if (this.commandCache == null) {
+      if (commandCacheSize > 0) {
+        throw new UnsupportedOperationException(
+            "Commands are only cached when using the default digest");
+      }
     } else {
-      this.maximumBufferSize = maximumBufferSize;
+      this.commandCache.setMaximumSize(commandCacheSize);
     }
   }
 
+  public boolean isVerifyDigest() {
+    return this.verifyDigest;
+  }
+
   public void setVerifyDigest(final boolean verifyDigest) {
+    this.checkMutable();
     this.verifyDigest = verifyDigest;
   }
 
-  private byte[] readLoop(
+  public ReadWaitStrategy getReadWaitStrategy() {
+    return this.readWaitStrategy;
+  }
+
+  public void setReadWaitStrategy(final ReadWaitStrategy readWaitStrategy) {
+    this.checkMutable();
+    if (readWaitStrategy == null) {
+      throw new NullPointerException("readWaitStrategy is null");
+    } else {
+      this.readWaitStrategy = readWaitStrategy;
+    }
+  }
+
+  public ProtocolListener getProtocolListener() {
+    return this.protocolListener;
+  }
+
+  /**
+   * Set the listener notified of reads and writes on a {@link Device}, {@code null} disables
+   * instrumentation.
+   */
+  public void setProtocolListener(final ProtocolListener protocolListener) {
+    this.checkMutable();
+    this.protocolListener = protocolListener;
+  }
+
+  /**
+   * Whether this protocol was created by a {@link Builder}, in which case its setters throw
+   * {@link UnsupportedOperationException}.
+   */
+  public boolean isImmutable() {
+    return this.immutable;
+  }
+
+  Scratch newScratch() {
+    return new Scratch();
+  }
+
+  private void checkMutable() {
+    if (this.immutable) {
+      throw new UnsupportedOperationException("P30Protocol created by a Builder is immutable");
+    }
+  }
+
+  private void writeFrame(
+      final Device device,
+      final CharSequence command,
+      final byte[] bytes,
+      final long timeoutNanos) throws IOException {
+
+    final ProtocolListener listener = this.protocolListener;
+    if (listener == null) {
+      writeDevice(device, bytes, timeoutNanos);
+      return;
+    }
+
+    final long startNanoTime = System.nanoTime();
+    try {
+      writeDevice(device, bytes, timeoutNanos);
+    } catch (final IOException e) {
+      listener.onWriteFailure(device, command, e, System.nanoTime() - startNanoTime);
+      throw e;
+    }
+
+    listener.onWrite(device, command, bytes.length, System.nanoTime() - startNanoTime);
+  }
+
+  int readFrame(
       final Device device,
+      final ByteBuffer buffer,
+      final Scratch scratch,
       final long timeout,
       final TimeUnit timeoutTimeUnit) throws IOException {
 
-    final ByteArrayOutputStream buffer = new ByteArrayOutputStream(
-        Math.min(INITIAL_BUFFER_SIZE, this.maximumBufferSize));
+    final ProtocolListener listener = this.protocolListener;
+    final int start = buffer.position();
+    if (listener == null) {
+      final int frameLength = this.readLoop(device, buffer, scratch, timeout, timeoutTimeUnit);
+      return this.verifyFrame(buffer, start, frameLength, scratch);
+    }
 
-    final byte[] bytes = new byte[READ_SIZE];
-    final int bytesLength = bytes.length;
-    final long endNanoTime = System.nanoTime() + Math.max(0, timeoutTimeUnit.toNanos(timeout));
+    final long startNanoTime = System.nanoTime();
+    final int dataLength;
+    try {
+      final int frameLength = this.readLoop(device, buffer, scratch, timeout, timeoutTimeUnit);
+      dataLength = this.verifyFrame(buffer, start, frameLength, scratch);
+    } catch (final IOException e) {
+      listener.onReadFailure(device, e, scratch.bytesRead, scratch.reads, scratch.waitNanos,
+          System.nanoTime() - startNanoTime);
+      throw e;
+    }
 
-    while (true) {
-      final int bytesRead = device.read(bytes, 0, bytesLength);
+    listener.onRead(device, scratch.bytesRead, scratch.reads, scratch.waitNanos,
+        System.nanoTime() - startNanoTime);
+    return dataLength;
+  }
+
+  int verifyFrame(
+      final ByteBuffer buffer,
+      final int start,
+      final int frameLength) throws IOException {
+
+    return this.verifyFrame(buffer, start, frameLength, this.scratch.get());
+  }
 
-      if (buffer.size() + bytesRead > this.maximumBufferSize) {
-        throw new BufferOverflowException(this.maximumBufferSize);
+  private int verifyFrame(
+      final ByteBuffer buffer,
+      final int start,
+      final int frameLength,
+      final Scratch scratch) throws IOException {
+
+    if (!this.defaultDigest) {
+      return this.verifyFrameDigest(buffer, start, frameLength, scratch);
+    }
+
+    final int dataLength = frameLength - V1VoltronicCrc.LENGTH - 1;
+    if (dataLength < 0) {
+      throw new TruncatedDataException(V1VoltronicCrc.LENGTH + 1, frameLength);
+    } else if (this.verifyDigest
+        && !V1VoltronicCrc.verify(buffer, start, dataLength + V1VoltronicCrc.LENGTH)) {
+
+      final int crc = V1VoltronicCrc.calculate(buffer, start, dataLength);
+      final byte[] calculatedDigest = new byte[V1VoltronicCrc.LENGTH];
+      V1VoltronicCrc.write(crc, calculatedDigest, 0);
+      throw new DigestMismatchException(
+          copy(buffer, start + dataLength, V1VoltronicCrc.LENGTH), calculatedDigest);
+    }
+
+    buffer.position(start + dataLength);
+    return dataLength;
+  }
+
+  private int verifyFrameDigest(
+      final ByteBuffer buffer,
+      final int start,
+      final int frameLength,
+      final Scratch scratch) throws IOException {
+
+    final MessageDigest digest = this.messageDigestSupplier.get();
+    final int digestLength = digest.getDigestLength();
+    final int dataLength = frameLength - digestLength - 1;
+
+    if (dataLength < 0) {
+      throw new TruncatedDataException(digestLength + 1, frameLength);
+    } else if (this.verifyDigest) {
+      final int digestStart = start + dataLength;
+
+      if (buffer.hasArray()) {
+        digest.update(buffer.array(), buffer.arrayOffset() + start, dataLength);
+      } else {
+        final int limit = buffer.limit();
+        buffer.limit(digestStart).position(start);
+        digest.update(buffer);
+        buffer.limit(limit);
       }
 
-      for (int index = 0; index < bytesRead; ++index) {
-        final byte b = bytes[index];
-        buffer.write(b);
-        if (b == END_OF_INPUT_BYTE) {
-          return buffer.toByteArray();
+      final byte[] calculatedDigest = scratch.digestBuffer(digestLength);
+      try {
+        digest.digest(calculatedDigest, 0, digestLength);
+      } catch (final DigestException e) {
+        throw new IllegalStateException("Could not calculate digest; " + e.getMessage(), e);
+      }
+
+      for (int index = 0; index < digestLength; ++index) {
+        if (buffer.get(digestStart + index) != calculatedDigest[index]) {
+          throw new DigestMismatchException(
+              copy(buffer, digestStart, digestLength), calculatedDigest.clone());
         }
       }
+    }
+
+    buffer.position(start + dataLength);
+    return dataLength;
+  }
+
+  private int readLoop(
+      final Device device,
+      final ByteBuffer buffer,
+      final Scratch scratch,
+      final long timeout,
+      final TimeUnit timeoutTimeUnit) throws IOException {
+
+    final ReadWaitStrategy waitStrategy = this.readWaitStrategy;
+    final TimeoutAwareDevice timeoutAwareDevice =
+        (device instanceof TimeoutAwareDevice) ? (TimeoutAwareDevice) device : null;
+    final byte[] bytes = scratch.chunk;
+    final int bytesLength = bytes.length;
+    final int byteLimit = Math.min(buffer.remaining(), this.maximumBufferSize);
+    final long endNanoTime = System.nanoTime() + Math.max(0, timeoutTimeUnit.toNanos(timeout));
+    int frameLength = 0;
+    int idleReads = 0;
+    int reads = 0;
+    long waitNanos = 0;
+
+    try {
+      while (true) {
+        final int bytesRead = (timeoutAwareDevice == null)
+            ? device.read(bytes, 0, bytesLength)
+            : timeoutAwareDevice.read(bytes, 0, bytesLength,
+                Math.max(0, endNanoTime - System.nanoTime()), TimeUnit.NANOSECONDS);
+        ++reads;
+
+        if (bytesRead > 0) {
+          final int endIndex = endOfInputIndex(bytes, bytesRead);
+          final int length = (endIndex < 0) ? bytesRead : endIndex + 1;
+          if (frameLength + length > byteLimit) {
+            throw new BufferOverflowException(byteLimit);
+          }
+
+          buffer.put(bytes, 0, length);
+          frameLength += length;
+          if (endIndex >= 0) {
+            return frameLength;
+          }
+        }
+
+        final long nanoTime = System.nanoTime();
+        final long remainingNanos = endNanoTime - nanoTime;
+        if (remainingNanos < 0) {
+          throw new TimeoutException(timeout, timeoutTimeUnit);
+        } else if (bytesRead > 0) {
+          idleReads = 0;
+          continue;
+        }
 
-      if (System.nanoTime() > endNanoTime) {
-        throw new TimeoutException(timeout, timeoutTimeUnit);
+        if (idleReads < Integer.MAX_VALUE) {
+          ++idleReads;
+        }
+
+        await(waitStrategy, idleReads, remainingNanos, frameLength);
+        waitNanos += System.nanoTime() - nanoTime;
       }
+    } finally {
+      scratch.bytesRead = frameLength;
+      scratch.reads = reads;
+      scratch.waitNanos = waitNanos;
+    }
+  }
+
+  private byte[] commandBytes(final CharSequence input) {
+    if (this.commandCache != null && input instanceof String) {
+      return this.cachedFrame((String) input).bytes();
+    } else {
+      return this.frameBytes(input);
+    }
+  }
+
+  private CommandFrame cachedFrame(final String command) {
+    CommandFrame frame = this.commandCache.get(command);
+    if (frame == null) {
+      frame = this.prepare(command);
+      this.commandCache.put(command, frame);
+    }
+
+    return frame;
+  }
 
+  private byte[] frameBytes(final CharSequence input) {
+    final ByteBuffer inputBytes = this.protocolCharset.encode(CharBuffer.wrap(input));
+    final int inputBytesLength = inputBytes.remaining();
+    final byte[] bytes;
+
+    if (this.defaultDigest) {
+      bytes = new byte[inputBytesLength + V1VoltronicCrc.LENGTH + 1];
+      inputBytes.get(bytes, 0, inputBytesLength);
+      V1VoltronicCrc.write(V1VoltronicCrc.calculate(bytes, 0, inputBytesLength), bytes,
+          inputBytesLength);
+    } else {
+      final MessageDigest digest = this.messageDigestSupplier.get();
+      final int digestLength = digest.getDigestLength();
+      bytes = new byte[inputBytesLength + digestLength + 1];
+
+      inputBytes.get(bytes, 0, inputBytesLength);
+      digest.update(bytes, 0, inputBytesLength);
       try {
-        Thread.sleep(READ_INTERVAL_MILLISECONDS);
-      } catch (final InterruptedException e) {
-        final InterruptedIOException e2 = new InterruptedIOException(e.getMessage());
-        e2.bytesTransferred = buffer.size();
-        Thread.currentThread().interrupt();
-        throw e2;
+        digest.digest(bytes, inputBytesLength, digestLength);
+      } catch (final DigestException e) {
+        throw new IllegalStateException("Could not calculate digest; " + e.getMessage(), e);
       }
     }
+
+    bytes[bytes.length - 1] = END_OF_INPUT_BYTE;
+    return bytes;
   }
 
-  private boolean findEndAndDiscardBytes(final Device device, long timeoutMilliseconds) {
-    final byte[] bytes = new byte[READ_SIZE];
-    final long endTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMilliseconds);
+  private ByteBuffer frame(final CharSequence input, final Scratch scratch) throws IOException {
+    final MessageDigest digest = this.defaultDigest ? null : this.messageDigestSupplier.get();
+    final int digestLength = (digest == null) ? V1VoltronicCrc.LENGTH : digest.getDigestLength();
+    final CharsetEncoder encoder = scratch.encoder(this.protocolCharset);
+    final ByteBuffer frame = scratch.writeBuffer(
+        (int) Math.ceil(encoder.maxBytesPerChar() * input.length()) + digestLength + 1);
 
-    while (endTime > System.nanoTime()) {
-      int bytesRead;
-      try {
-        bytesRead = device.read(bytes, 0, READ_SIZE);
-      } catch (IOException e) {
-        bytesRead = 0;
+    encoder.encode(CharBuffer.wrap(input), frame, true);
+    encoder.flush(frame);
+
+    if (digest == null) {
+      final int dataLength = frame.position();
+      V1VoltronicCrc.put(V1VoltronicCrc.calculate(frame, 0, dataLength), frame, dataLength);
+      frame.position(dataLength + V1VoltronicCrc.LENGTH);
+      frame.put(END_OF_INPUT_BYTE);
+      frame.flip();
+      return frame;
+    }
+
+    final int limit = frame.limit();
+    frame.flip();
+    digest.update(frame);
+    frame.limit(limit);
+
+    final byte[] calculatedDigest = scratch.digestBuffer(digestLength);
+    try {
+      digest.digest(calculatedDigest, 0, digestLength);
+    } catch (final DigestException e) {
+      throw new IllegalStateException("Could not calculate digest; " + e.getMessage(), e);
+    }
+
+    frame.put(calculatedDigest, 0, digestLength);
+    frame.put(END_OF_INPUT_BYTE);
+    frame.flip();
+    return frame;
+  }
+
+  private static byte[] copy(final ByteBuffer buffer, final int index, final int length) {
+    final byte[] bytes = new byte[length];
+    for (int offset = 0; offset < length; ++offset) {
+      bytes[offset] = buffer.get(index + offset);
+    }
+
+    return bytes;
+  }
+
+  private static int endOfInputIndex(final byte[] bytes, final int length) {
+    for (int index = 0; index < length; ++index) {
+      if (bytes[index] == END_OF_INPUT_BYTE) {
+        return index;
       }
+    }
+
+    return -1;
+  }
+
+  private static int checkMaximumBufferSize(final int maximumBufferSize) {
+    if (maximumBufferSize <= 0) {
+      throw new IllegalArgumentException("maximumBufferSize <= 0");
+    } else if (maximumBufferSize > Character.MAX_VALUE) {
+      throw new IllegalArgumentException("maximumBufferSize > " + Character.MAX_VALUE);
+    } else {
+      return maximumBufferSize;
+    }
+  }
+
+  private static void writeDevice(
+      final Device device,
+      final byte[] bytes,
+      final long timeoutNanos) throws IOException {
+
+    if (timeoutNanos != NO_TIMEOUT && device instanceof TimeoutAwareDevice) {
+      ((TimeoutAwareDevice) device).write(
+          bytes, 0, bytes.length, timeoutNanos, TimeUnit.NANOSECONDS);
+    } else {
+      device.write(bytes, 0, bytes.length);
+    }
+  }
 
-      for (int index = 0; index < bytesRead; ++index) {
-        if (bytes[index] == END_OF_INPUT_BYTE) {
-          return true;
+  private static void writeFully(
+      final WritableByteChannel channel,
+      final ByteBuffer frame) throws IOException {
+
+    final int frameLength = frame.remaining();
+    while (frame.hasRemaining()) {
+      if (channel.write(frame) == 0) {
+        try {
+          ReadWaitStrategies.park(WRITE_RETRY_NANOSECONDS);
+        } catch (final InterruptedException e) {
+          final InterruptedIOException e2 = new InterruptedIOException(e.getMessage());
+          e2.bytesTransferred = frameLength - frame.remaining();
+          Thread.currentThread().interrupt();
+          throw e2;
         }
       }
     }
+  }
+
+  private static void await(
+      final ReadWaitStrategy waitStrategy,
+      final int idleReads,
+      final long remainingNanos,
+      final long bytesTransferred) throws InterruptedIOException {
+
+    try {
+      waitStrategy.await(idleReads, remainingNanos);
+    } catch (final InterruptedException e) {
+      final InterruptedIOException e2 = new InterruptedIOException(e.getMessage());
+      e2.bytesTransferred = (int) Math.min(Integer.MAX_VALUE, bytesTransferred);
+      Thread.currentThread().interrupt();
+      throw e2;
+    }
+  }
+
+  private static final class CommandCache extends LinkedHashMap<String, CommandFrame> {
+
+    private static final long serialVersionUID = 1L;
+    private int maximumSize;
+
+    private CommandCache(final int maximumSize) {
+      super(16, 0.75f, true);
+      this.maximumSize = maximumSize;
+    }
+
+    private synchronized int getMaximumSize() {
+      return this.maximumSize;
+    }
+
+    private synchronized void setMaximumSize(final int maximumSize) {
+      this.maximumSize = maximumSize;
+      while (this.size() > maximumSize) {
+        this.remove(this.keySet().iterator().next());
+      }
+    }
+
+    public synchronized CommandFrame get(final Object key) {
+      return (this.maximumSize == 0) ? null : super.get(key);
+    }
+
+    public synchronized CommandFrame put(final String key, final CommandFrame value) {
+      return (this.maximumSize == 0) ? null : super.put(key, value);
+    }
+
+    protected boolean removeEldestEntry(final Map.Entry<String, CommandFrame> eldest) {
+      return this.size() > this.maximumSize;
+    }
+
+  }
+
+  /**
+   * Builder of immutable protocols which may be shared by any number of threads.
+   */
+  public static final class Builder {
+
+    private MessageDigestSupplier messageDigestSupplier = DEFAULT_MESSAGE_DIGEST_SUPPLIER;
+    private Charset protocolCharset = DEFAULT_CHARSET;
+    private int maximumBufferSize = DEFAULT_MAXIMUM_BUFFER_SIZE;
+    private boolean verifyDigest = true;
+    private ReadWaitStrategy readWaitStrategy = ReadWaitStrategies.exponentialBackoff(
+        INITIAL_READ_INTERVAL_MILLISECONDS, READ_INTERVAL_MILLISECONDS, TimeUnit.MILLISECONDS);
+    private int commandCacheSize = -1;
+    private ProtocolListener protocolListener;
+
+    private Builder() {
+    }
+
+    public Builder setMessageDigestSupplier(final MessageDigestSupplier messageDigestSupplier) {
+      if (messageDigestSupplier == null) {
+        throw new NullPointerException("messageDigestSupplier is null");
+      }
+
+      this.messageDigestSupplier = messageDigestSupplier;
+      return this;
+    }
+
+    public Builder setCharset(final Charset protocolCharset) {
+      if (protocolCharset == null) {
+        throw new NullPointerException("protocolCharset is null");
+      }
+
+      this.protocolCharset = protocolCharset;
+      return this;
+    }
+
+    public Builder setMaximumBufferSize(final int maximumBufferSize) {
+      this.maximumBufferSize = checkMaximumBufferSize(maximumBufferSize);
+      return this;
+    }
+
+    public Builder setVerifyDigest(final boolean verifyDigest) {
+      this.verifyDigest = verifyDigest;
+      return this;
+    }
+
+    public Builder setReadWaitStrategy(final ReadWaitStrategy readWaitStrategy) {
+      if (readWaitStrategy == null) {
+        throw new NullPointerException("readWaitStrategy is null");
+      }
+
+      this.readWaitStrategy = readWaitStrategy;
+      return this;
+    }
+
+    public Builder setCommandCacheSize(final int commandCacheSize) {
+      if (commandCacheSize < 0) {
+        throw new IllegalArgumentException("commandCacheSize < 0");
+      }
+
+      this.commandCacheSize = commandCacheSize;
+      return this;
+    }
+
+    public Builder setProtocolListener(final ProtocolListener protocolListener) {
+      this.protocolListener = protocolListener;
+      return this;
+    }
+
+    public P30Protocol build() {
+      return new P30Protocol(this.messageDigestSupplier, this.protocolCharset,
+          this.messageDigestSupplier != DEFAULT_MESSAGE_DIGEST_SUPPLIER
+              || this.protocolCharset != DEFAULT_CHARSET, this);
+    }
+
+  }
+
+  static final class Scratch {
+
+    private final byte[] chunk = new byte[READ_SIZE];
+    private int bytesRead;
+    private int reads;
+    private long waitNanos;
+    private int availableReads;
+    private long availableStartNanoTime;
+    private byte[] calculatedDigest;
+    private ByteBuffer frame;
+    private CharsetEncoder encoder;
+    private ByteBuffer writeBuffer;
+
+    private byte[] digestBuffer(final int digestLength) {
+      if (this.calculatedDigest == null || this.calculatedDigest.length != digestLength) {
+        this.calculatedDigest = new byte[digestLength];
+      }
+
+      return this.calculatedDigest;
+    }
+
+    private CharsetEncoder encoder(final Charset charset) {
+      if (this.encoder == null) {
+        this.encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      }
+
+      return this.encoder.reset();
+    }
+
+    private ByteBuffer writeBuffer(final int capacity) {
+      if (this.writeBuffer == null || this.writeBuffer.capacity() < capacity) {
+        this.writeBuffer = ByteBuffer.allocateDirect(Math.max(capacity, INITIAL_WRITE_BUFFER_SIZE));
+      }
+
+      this.writeBuffer.clear();
+      return this.writeBuffer;
+    }
+
+    private ByteBuffer frameBuffer(final int maximumBufferSize) {
+      if (this.frame == null || this.frame.capacity() < maximumBufferSize) {
+        this.frame = ByteBuffer.allocate(maximumBufferSize);
+      }
+
+      this.frame.clear();
+      this.frame.limit(maximumBufferSize);
+      return this.frame;
+    }
 
-    return false;
   }
 
   static {
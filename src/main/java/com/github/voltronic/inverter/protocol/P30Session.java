@@ -0,0 +1,255 @@
+package com.github.voltronic.inverter.protocol;
+
+import com.github.voltronic.inverter.Device;
+import com.github.voltronic.inverter.device.TimeoutAwareDevice;
+import com.github.voltronic.inverter.exception.TimeoutException;
+import com.github.voltronic.inverter.response.AsciiResponse;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and writes a single device with the configuration of a shared {@link P30Protocol}.
+ *
+ * <p>Sessions hold the scratch buffers used while reading, so they are cheap to keep per device
+ * but must only be used by one thread at a time.
+ */
+public final class P30Session {
+
+  private static final int MAXIMUM_DISCARD_READS = 64;
+
+  private final P30Protocol protocol;
+  private final Device device;
+  private final P30Protocol.Scratch scratch;
+  private final byte[] discardBuffer = new byte[64];
+
+  P30Session(final P30Protocol protocol, final Device device) {
+    this.protocol = protocol;
+    this.device = device;
+    this.scratch = protocol.newScratch();
+  }
+
+  public P30Protocol getProtocol() {
+    return this.protocol;
+  }
+
+  public Device getDevice() {
+    return this.device;
+  }
+
+  public void write(final CharSequence input) throws IOException {
+    this.protocol.write(this.device, input);
+  }
+
+  public void write(final CommandFrame frame) throws IOException {
+    this.protocol.write(this.device, frame);
+  }
+
+  public String read(
+      final long timeout,
+      final TimeUnit timeoutTimeUnit) throws IOException {
+
+    checkTimeout(timeout, timeoutTimeUnit);
+    return this.protocol.read(this.device, this.scratch, timeout, timeoutTimeUnit);
+  }
+
+  /**
+   * @see P30Protocol#readAscii(Device, long, TimeUnit)
+   */
+  public AsciiResponse readAscii(
+      final long timeout,
+      final TimeUnit timeoutTimeUnit) throws IOException {
+
+    checkTimeout(timeout, timeoutTimeUnit);
+    return this.protocol.readAscii(this.device, this.scratch, timeout, timeoutTimeUnit);
+  }
+
+  /**
+   * @see P30Protocol#read(Device, ByteBuffer, long, TimeUnit)
+   */
+  public int read(
+      final ByteBuffer buffer,
+      final long timeout,
+      final TimeUnit timeoutTimeUnit) throws IOException {
+
+    checkBuffer(buffer);
+    checkTimeout(timeout, timeoutTimeUnit);
+    return this.protocol.readFrame(this.device, buffer, this.scratch, timeout, timeoutTimeUnit);
+  }
+
+  /**
+   * @see P30Protocol#readAvailable(Device, ByteBuffer)
+   */
+  public int readAvailable(final ByteBuffer buffer) throws IOException {
+    checkBuffer(buffer);
+    return this.protocol.readAvailable(this.device, buffer, this.scratch);
+  }
+
+  /**
+   * Write {@code command} and read its response within {@code timeout}.
+   *
+   * <p>The read gets whatever time the write left, when the device is a
+   * {@link com.github.voltronic.inverter.device.TimeoutAwareDevice} the write is bounded by the
+   * same deadline.
+   */
+  public String query(
+      final CharSequence command,
+      final long timeout,
+      final TimeUnit timeoutTimeUnit) throws IOException {
+
+    if (command == null) {
+      throw new NullPointerException("command is null");
+    }
+
+    checkTimeout(timeout, timeoutTimeUnit);
+
+    final long timeoutNanos = timeoutTimeUnit.toNanos(timeout);
+    final long endNanoTime = System.nanoTime() + timeoutNanos;
+    this.protocol.write(this.device, command, timeoutNanos);
+    return this.protocol.read(this.device, this.scratch,
+        Math.max(0, endNanoTime - System.nanoTime()), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Write {@code command} and read its response, retrying failures according to {@code policy}.
+   *
+   * <p>No attempt is started once the deadline has passed, the last failure is thrown instead.
+   */
+  public String query(
+      final CharSequence command,
+      final RetryPolicy policy) throws IOException {
+
+    if (command == null) {
+      throw new NullPointerException("command is null");
+    } else if (policy == null) {
+      throw new NullPointerException("policy is null");
+    }
+
+    final long endNanoTime = System.nanoTime() + policy.getDeadlineNanos();
+    final long resyncQuietNanos = policy.getResyncQuietNanos();
+    int attempt = 0;
+
+    while (true) {
+      final long attemptNanoTime = System.nanoTime();
+      final long attemptEndNanoTime = attemptNanoTime
+          + Math.max(0, Math.min(endNanoTime - attemptNanoTime, policy.getAttemptTimeoutNanos()));
+      try {
+        this.protocol.write(this.device, command, attemptEndNanoTime - attemptNanoTime);
+        return this.protocol.read(this.device, this.scratch,
+            Math.max(0, attemptEndNanoTime - System.nanoTime()), TimeUnit.NANOSECONDS);
+      } catch (final IOException e) {
+        if (++attempt >= policy.getMaximumAttempts() || !policy.isRetryable(e)
+            || (e instanceof InterruptedIOException && !(e instanceof TimeoutException))) {
+          throw e;
+        }
+
+        final long resyncNanos = endNanoTime - System.nanoTime();
+        if (resyncNanos <= 0) {
+          throw e;
+        } else if (resyncQuietNanos > 0) {
+          this.protocol.resync(this.device, resyncQuietNanos, resyncNanos, TimeUnit.NANOSECONDS);
+          if (endNanoTime - System.nanoTime() <= 0) {
+            throw e;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Write each command and read its response back to back, sharing {@code timeout} as the deadline
+   * of the whole batch.
+   *
+   * <p>A failed command does not stop the batch, input left over from it is discarded before the
+   * next command is written.  Commands not started before the deadline fail with a
+   * {@link TimeoutException} without being written.
+   */
+  public BatchResult execute(
+      final List<? extends CharSequence> commands,
+      final long timeout,
+      final TimeUnit timeoutTimeUnit) throws IOException {
+
+    if (commands == null) {
+      throw new NullPointerException("commands is null");
+    }
+
+    checkTimeout(timeout, timeoutTimeUnit);
+
+    final int size = commands.size();
+    final String[] names = new String[size];
+    for (int index = 0; index < size; ++index) {
+      final CharSequence command = commands.get(index);
+      if (command == null) {
+        throw new NullPointerException("commands[" + index + "] is null");
+      }
+
+      names[index] = command.toString();
+    }
+
+    final String[] responses = new String[size];
+    final IOException[] failures = new IOException[size];
+    final long startNanoTime = System.nanoTime();
+    final long endNanoTime = startNanoTime + timeoutTimeUnit.toNanos(timeout);
+    boolean discard = false;
+
+    for (int index = 0; index < size; ++index) {
+      final long remainingNanos = endNanoTime - System.nanoTime();
+      if (remainingNanos <= 0) {
+        failures[index] = new TimeoutException(timeout, timeoutTimeUnit);
+        continue;
+      }
+
+      try {
+        if (discard) {
+          this.discardAvailable(endNanoTime);
+          discard = false;
+        }
+
+        this.protocol.write(this.device, names[index], endNanoTime - System.nanoTime());
+        responses[index] = this.protocol.read(this.device, this.scratch,
+            Math.max(0, endNanoTime - System.nanoTime()), TimeUnit.NANOSECONDS);
+      } catch (final IOException e) {
+        if (e instanceof InterruptedIOException && !(e instanceof TimeoutException)) {
+          throw e;
+        }
+
+        failures[index] = e;
+        discard = true;
+      }
+    }
+
+    return new BatchResult(names, responses, failures, System.nanoTime() - startNanoTime);
+  }
+
+  private void discardAvailable(final long endNanoTime) throws IOException {
+    final byte[] bytes = this.discardBuffer;
+    for (int count = 0; count < MAXIMUM_DISCARD_READS; ++count) {
+      final int bytesRead = (this.device instanceof TimeoutAwareDevice)
+          ? ((TimeoutAwareDevice) this.device).read(bytes, 0, bytes.length,
+              Math.max(0, endNanoTime - System.nanoTime()), TimeUnit.NANOSECONDS)
+          : this.device.read(bytes, 0, bytes.length);
+      if (bytesRead <= 0) {
+        return;
+      }
+    }
+  }
+
+  private static void checkBuffer(final ByteBuffer buffer) {
+    if (buffer == null) {
+      throw new NullPointerException("buffer is null");
+    } else if (buffer.isReadOnly()) {
+      throw new IllegalArgumentException("buffer is read-only");
+    }
+  }
+
+  private static void checkTimeout(final long timeout, final TimeUnit timeoutTimeUnit) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("timeout < 0");
+    } else if (timeoutTimeUnit == null) {
+      throw new NullPointerException("timeoutTimeUnit is null");
+    }
+  }
+
+}
@@ -0,0 +1,40 @@
+package com.github.voltronic.inverter.protocol;
+
+import com.github.voltronic.inverter.Device;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Receives timings of the {@link Device} operations of {@link P30Protocol}.
+ *
+ * <p>Methods are called on the thread performing the operation, so implementations should return
+ * quickly and must be thread-safe when the protocol is shared.
+ *
+ * <p>A response read with {@link P30Protocol#readAvailable(Device, ByteBuffer)}, as a
+ * {@link com.github.voltronic.inverter.concurrent.FleetPoller} does, is reported once it completes
+ * or fails, counting the reads and time since its first byte was requested with no wait time.  A
+ * response it abandons on a timeout of its own is not reported.  The channel overloads and
+ * {@link FrameDecoder} have no {@link Device} and are not reported either.
+ */
+public interface ProtocolListener {
+
+  void onWrite(Device device, CharSequence command, int bytesWritten, long elapsedNanos);
+
+  void onWriteFailure(Device device, CharSequence command, IOException cause, long elapsedNanos);
+
+  /**
+   * @param bytesRead bytes of the frame, including the digest and end of input bytes
+   * @param reads number of calls to {@link Device#read(byte[], int, int)}, including empty reads
+   * @param waitNanos time spent in the {@link ReadWaitStrategy} between empty reads
+   */
+  void onRead(Device device, int bytesRead, int reads, long waitNanos, long elapsedNanos);
+
+  void onReadFailure(
+      Device device,
+      IOException cause,
+      int bytesRead,
+      int reads,
+      long waitNanos,
+      long elapsedNanos);
+
+}
@@ -0,0 +1,149 @@
+package com.github.voltronic.inverter.protocol;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+public final class ReadWaitStrategies {
+
+  private static final ReadWaitStrategy BLOCKING_READ = new BlockingReadWaitStrategy();
+
+  private ReadWaitStrategies() {
+  }
+
+  /**
+   * Strategy for devices whose read blocks until data is available, never waits between reads.
+   */
+  public static ReadWaitStrategy blockingRead() {
+    return BLOCKING_READ;
+  }
+
+  public static ReadWaitStrategy fixedInterval(final long interval, final TimeUnit timeUnit) {
+    return new FixedIntervalWaitStrategy(toPositiveNanos(interval, timeUnit, "interval"));
+  }
+
+  public static ReadWaitStrategy spinThenPark(
+      final int spins,
+      final long parkTime,
+      final TimeUnit timeUnit) {
+
+    if (spins < 0) {
+      throw new IllegalArgumentException("spins < 0");
+    }
+
+    return new SpinThenParkWaitStrategy(spins, toPositiveNanos(parkTime, timeUnit, "parkTime"));
+  }
+
+  public static ReadWaitStrategy exponentialBackoff(
+      final long initialWait,
+      final long maximumWait,
+      final TimeUnit timeUnit) {
+
+    final long initialNanos = toPositiveNanos(initialWait, timeUnit, "initialWait");
+    final long maximumNanos = toPositiveNanos(maximumWait, timeUnit, "maximumWait");
+    if (maximumNanos < initialNanos) {
+      throw new IllegalArgumentException("maximumWait < initialWait");
+    }
+
+    return new ExponentialBackoffWaitStrategy(initialNanos, maximumNanos);
+  }
+
+  static void park(final long nanos) throws InterruptedException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+
+    final long endNanoTime = System.nanoTime() + nanos;
+    long remainingNanos = nanos;
+    while (remainingNanos > 0) {
+      LockSupport.parkNanos(remainingNanos);
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+
+      remainingNanos = endNanoTime - System.nanoTime();
+    }
+  }
+
+  private static long toPositiveNanos(final long time, final TimeUnit timeUnit, final String name) {
+    if (timeUnit == null) {
+      throw new NullPointerException("timeUnit is null");
+    } else if (time <= 0) {
+      throw new IllegalArgumentException(name + " <= 0");
+    } else {
+      return timeUnit.toNanos(time);
+    }
+  }
+
+  private static final class BlockingReadWaitStrategy implements ReadWaitStrategy {
+
+    public void await(final int idleReads, final long remainingNanos) throws InterruptedException {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+    }
+
+  }
+
+  private static final class FixedIntervalWaitStrategy implements ReadWaitStrategy {
+
+    private final long intervalNanos;
+
+    private FixedIntervalWaitStrategy(final long intervalNanos) {
+      this.intervalNanos = intervalNanos;
+    }
+
+    public void await(final int idleReads, final long remainingNanos) throws InterruptedException {
+      park(Math.min(this.intervalNanos, remainingNanos));
+    }
+
+  }
+
+  private static final class SpinThenParkWaitStrategy implements ReadWaitStrategy {
+
+    private final int spins;
+    private final long parkNanos;
+
+    private SpinThenParkWaitStrategy(final int spins, final long parkNanos) {
+      this.spins = spins;
+      this.parkNanos = parkNanos;
+    }
+
+    public void await(final int idleReads, final long remainingNanos) throws InterruptedException {
+      if (idleReads <= this.spins) {
+        Thread.yield();
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+      } else {
+        park(Math.min(this.parkNanos, remainingNanos));
+      }
+    }
+
+  }
+
+  private static final class ExponentialBackoffWaitStrategy implements ReadWaitStrategy {
+
+    private final long initialNanos;
+    private final long maximumNanos;
+
+    private ExponentialBackoffWaitStrategy(final long initialNanos, final long maximumNanos) {
+      this.initialNanos = initialNanos;
+      this.maximumNanos = maximumNanos;
+    }
+
+    public void await(final int idleReads, final long remainingNanos) throws InterruptedException {
+      park(Math.min(this.waitNanos(idleReads), remainingNanos));
+    }
+
+    private long waitNanos(final int idleReads) {
+      final int shift = Math.max(0, idleReads - 1);
+      if (shift >= Long.numberOfLeadingZeros(this.initialNanos) - 1) {
+        return this.maximumNanos;
+      } else {
+        return Math.min(this.maximumNanos, this.initialNanos << shift);
+      }
+    }
+
+  }
+
+}
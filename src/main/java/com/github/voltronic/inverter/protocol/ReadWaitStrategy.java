@@ -0,0 +1,14 @@
+package com.github.voltronic.inverter.protocol;
+
+/**
+ * Decides how long to wait before reading from a device again when the previous read returned no
+ * bytes.
+ *
+ * <p>Implementations must not wait longer than {@code remainingNanos} and must throw
+ * {@link InterruptedException} if the current thread is interrupted while waiting.
+ */
+public interface ReadWaitStrategy {
+
+  void await(int idleReads, long remainingNanos) throws InterruptedException;
+
+}
@@ -0,0 +1,186 @@
+package com.github.voltronic.inverter.protocol;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves responses to slow-changing queries of a single device from memory.
+ *
+ * <p>Only commands given a time to live with {@link #setTimeToLive(String, long, TimeUnit)} are
+ * cached, at most {@code maximumSize} of them.  Any command not starting with {@code Q} is
+ * considered a setter and invalidates every cached response once it has been sent, whatever the
+ * device responds.  {@code (NAK} responses are never cached.
+ *
+ * <p>Instances are thread-safe, queries that are not served from the cache are sent to the device
+ * one at a time.
+ */
+public final class ResponseCache {
+
+  private static final String NAK_RESPONSE = "(NAK";
+
+  private final P30Session session;
+  private final int maximumSize;
+  private final Map<String, Long> timesToLive;
+  private final LinkedHashMap<String, CachedResponse> entries;
+  private long hits;
+  private long misses;
+  private long generation;
+
+  public ResponseCache(final P30Session session, final int maximumSize) {
+    if (session == null) {
+      throw new NullPointerException("session is null");
+    } else if (maximumSize <= 0) {
+      throw new IllegalArgumentException("maximumSize <= 0");
+    }
+
+    this.session = session;
+    this.maximumSize = maximumSize;
+    this.timesToLive = new HashMap<String, Long>();
+    this.entries = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      protected boolean removeEldestEntry(final Map.Entry<String, CachedResponse> eldest) {
+        return this.size() > ResponseCache.this.maximumSize;
+      }
+    };
+  }
+
+  public P30Session getSession() {
+    return this.session;
+  }
+
+  /**
+   * Cache responses to {@code command} for {@code timeToLive}, 0 stops caching the command.
+   */
+  public void setTimeToLive(final String command, final long timeToLive, final TimeUnit timeUnit) {
+    if (command == null) {
+      throw new NullPointerException("command is null");
+    } else if (timeToLive < 0) {
+      throw new IllegalArgumentException("timeToLive < 0");
+    } else if (timeUnit == null) {
+      throw new NullPointerException("timeUnit is null");
+    }
+
+    synchronized (this.entries) {
+      if (timeToLive == 0) {
+        this.timesToLive.remove(command);
+        this.entries.remove(command);
+      } else {
+        this.timesToLive.put(command, timeUnit.toNanos(timeToLive));
+      }
+    }
+  }
+
+  /**
+   * Return the cached response to {@code command}, otherwise write it and read the response with
+   * {@code timeout} applying to the read.
+   */
+  public String query(
+      final String command,
+      final long timeout,
+      final TimeUnit timeoutTimeUnit) throws IOException {
+
+    if (command == null) {
+      throw new NullPointerException("command is null");
+    }
+
+    final Long timeToLive;
+    synchronized (this.entries) {
+      final CachedResponse entry = this.entries.get(command);
+      if (entry != null) {
+        if (System.nanoTime() - entry.expiresNanoTime < 0) {
+          ++this.hits;
+          return entry.response;
+        }
+
+        this.entries.remove(command);
+      }
+
+      ++this.misses;
+      timeToLive = this.timesToLive.get(command);
+    }
+
+    final boolean setter = command.length() == 0 || command.charAt(0) != 'Q';
+    synchronized (this.session) {
+      final long queryGeneration;
+      synchronized (this.entries) {
+        queryGeneration = this.generation;
+      }
+
+      final String response;
+      try {
+        response = this.session.query(command, timeout, timeoutTimeUnit);
+      } finally {
+        if (setter) {
+          this.invalidateAll();
+        }
+      }
+
+      if (timeToLive != null && !setter && !NAK_RESPONSE.equals(response)) {
+        synchronized (this.entries) {
+          if (this.generation == queryGeneration) {
+            this.entries.put(command,
+                new CachedResponse(response, System.nanoTime() + timeToLive));
+          }
+        }
+      }
+
+      return response;
+    }
+  }
+
+  /**
+   * Remove the cached response to {@code command}, a response being read at the same time is not
+   * cached.
+   */
+  public void invalidate(final String command) {
+    synchronized (this.entries) {
+      ++this.generation;
+      this.entries.remove(command);
+    }
+  }
+
+  /**
+   * Remove all cached responses, responses being read at the same time are not cached.
+   */
+  public void invalidateAll() {
+    synchronized (this.entries) {
+      ++this.generation;
+      this.entries.clear();
+    }
+  }
+
+  public int size() {
+    synchronized (this.entries) {
+      return this.entries.size();
+    }
+  }
+
+  public long getHits() {
+    synchronized (this.entries) {
+      return this.hits;
+    }
+  }
+
+  public long getMisses() {
+    synchronized (this.entries) {
+      return this.misses;
+    }
+  }
+
+  private static final class CachedResponse {
+
+    private final String response;
+    private final long expiresNanoTime;
+
+    private CachedResponse(final String response, final long expiresNanoTime) {
+      this.response = response;
+      this.expiresNanoTime = expiresNanoTime;
+    }
+
+  }
+
+}
@@ -0,0 +1,43 @@
+package com.github.voltronic.inverter.protocol;
+
+import java.util.concurrent.TimeUnit;
+
+public final class ResyncResult {
+
+  private final long bytesDiscarded;
+  private final long elapsedNanos;
+  private final boolean quiet;
+
+  ResyncResult(final long bytesDiscarded, final long elapsedNanos, final boolean quiet) {
+    this.bytesDiscarded = bytesDiscarded;
+    this.elapsedNanos = elapsedNanos;
+    this.quiet = quiet;
+  }
+
+  public long getBytesDiscarded() {
+    return this.bytesDiscarded;
+  }
+
+  public long getElapsedNanos() {
+    return this.elapsedNanos;
+  }
+
+  public long getElapsed(final TimeUnit timeUnit) {
+    return timeUnit.convert(this.elapsedNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Whether the device stopped sending data, if {@code false} the timeout was reached while the
+   * device was still sending data.
+   */
+  public boolean isQuiet() {
+    return this.quiet;
+  }
+
+  public String toString() {
+    return "ResyncResult[bytesDiscarded=" + this.bytesDiscarded
+        + ", elapsedNanos=" + this.elapsedNanos
+        + ", quiet=" + this.quiet + "]";
+  }
+
+}
@@ -0,0 +1,179 @@
+package com.github.voltronic.inverter.protocol;
+
+import com.github.voltronic.inverter.exception.DigestMismatchException;
+import com.github.voltronic.inverter.exception.TimeoutException;
+import com.github.voltronic.inverter.exception.TruncatedDataException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable policy for retrying a query with {@link P30Session#query(CharSequence, RetryPolicy)}.
+ *
+ * <p>A query is attempted until it succeeds, fails with an exception that is not retryable, the
+ * attempts are exhausted or the deadline passes, in which case the last failure is thrown.  Each
+ * attempt reads for at most the attempt timeout and the time left until the deadline.  Between
+ * attempts the line is resynchronized with a short quiet time instead of the full
+ * {@link P30Protocol#clear}.
+ */
+public final class RetryPolicy {
+
+  private static final int DEFAULT_MAXIMUM_ATTEMPTS = 3;
+  private static final long DEFAULT_DEADLINE_MILLISECONDS = 5000;
+  private static final long DEFAULT_ATTEMPT_TIMEOUT_MILLISECONDS = 2000;
+  private static final long DEFAULT_RESYNC_QUIET_MILLISECONDS = 20;
+
+  private final int maximumAttempts;
+  private final long deadlineNanos;
+  private final long attemptTimeoutNanos;
+  private final long resyncQuietNanos;
+  private final Class<?>[] retryable;
+
+  private RetryPolicy(final Builder builder) {
+    this.maximumAttempts = builder.maximumAttempts;
+    this.deadlineNanos = builder.deadlineNanos;
+    this.attemptTimeoutNanos = builder.attemptTimeoutNanos;
+    this.resyncQuietNanos = builder.resyncQuietNanos;
+    this.retryable = builder.retryable.toArray(new Class<?>[builder.retryable.size()]);
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public int getMaximumAttempts() {
+    return this.maximumAttempts;
+  }
+
+  public long getDeadline(final TimeUnit timeUnit) {
+    return timeUnit.convert(this.deadlineNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public long getAttemptTimeout(final TimeUnit timeUnit) {
+    return timeUnit.convert(this.attemptTimeoutNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public long getResyncQuietTime(final TimeUnit timeUnit) {
+    return timeUnit.convert(this.resyncQuietNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public boolean isRetryable(final IOException failure) {
+    for (final Class<?> type : this.retryable) {
+      if (type.isInstance(failure)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  long getDeadlineNanos() {
+    return this.deadlineNanos;
+  }
+
+  long getAttemptTimeoutNanos() {
+    return this.attemptTimeoutNanos;
+  }
+
+  long getResyncQuietNanos() {
+    return this.resyncQuietNanos;
+  }
+
+  public String toString() {
+    return "RetryPolicy[maximumAttempts=" + this.maximumAttempts
+        + ", deadlineNanos=" + this.deadlineNanos
+        + ", attemptTimeoutNanos=" + this.attemptTimeoutNanos
+        + ", resyncQuietNanos=" + this.resyncQuietNanos
+        + ", retryable=" + Arrays.toString(this.retryable) + "]";
+  }
+
+  public static final class Builder {
+
+    private int maximumAttempts = DEFAULT_MAXIMUM_ATTEMPTS;
+    private long deadlineNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_DEADLINE_MILLISECONDS);
+    private long attemptTimeoutNanos =
+        TimeUnit.MILLISECONDS.toNanos(DEFAULT_ATTEMPT_TIMEOUT_MILLISECONDS);
+    private long resyncQuietNanos =
+        TimeUnit.MILLISECONDS.toNanos(DEFAULT_RESYNC_QUIET_MILLISECONDS);
+    private final List<Class<? extends IOException>> retryable =
+        new ArrayList<Class<? extends IOException>>();
+
+    private Builder() {
+      this.retryable.add(DigestMismatchException.class);
+      this.retryable.add(TimeoutException.class);
+      this.retryable.add(TruncatedDataException.class);
+    }
+
+    public Builder setMaximumAttempts(final int maximumAttempts) {
+      if (maximumAttempts <= 0) {
+        throw new IllegalArgumentException("maximumAttempts <= 0");
+      }
+
+      this.maximumAttempts = maximumAttempts;
+      return this;
+    }
+
+    /**
+     * Overall time allowed for all attempts and the resyncs between them.
+     */
+    public Builder setDeadline(final long deadline, final TimeUnit timeUnit) {
+      this.deadlineNanos = toNanos(deadline, timeUnit, "deadline");
+      return this;
+    }
+
+    public Builder setAttemptTimeout(final long attemptTimeout, final TimeUnit timeUnit) {
+      this.attemptTimeoutNanos = toNanos(attemptTimeout, timeUnit, "attemptTimeout");
+      return this;
+    }
+
+    /**
+     * Quiet time awaited between attempts, 0 retries without resynchronizing.
+     */
+    public Builder setResyncQuietTime(final long resyncQuietTime, final TimeUnit timeUnit) {
+      if (resyncQuietTime < 0) {
+        throw new IllegalArgumentException("resyncQuietTime < 0");
+      } else if (timeUnit == null) {
+        throw new NullPointerException("timeUnit is null");
+      }
+
+      this.resyncQuietNanos = timeUnit.toNanos(resyncQuietTime);
+      return this;
+    }
+
+    /**
+     * Retry failures of {@code type}, by default digest mismatches, timeouts and truncated
+     * responses are retried.
+     */
+    public Builder addRetryable(final Class<? extends IOException> type) {
+      if (type == null) {
+        throw new NullPointerException("type is null");
+      }
+
+      this.retryable.add(type);
+      return this;
+    }
+
+    public Builder clearRetryable() {
+      this.retryable.clear();
+      return this;
+    }
+
+    public RetryPolicy build() {
+      return new RetryPolicy(this);
+    }
+
+    private static long toNanos(final long duration, final TimeUnit timeUnit, final String name) {
+      if (duration <= 0) {
+        throw new IllegalArgumentException(name + " <= 0");
+      } else if (timeUnit == null) {
+        throw new NullPointerException("timeUnit is null");
+      }
+
+      return timeUnit.toNanos(duration);
+    }
+
+  }
+
+}
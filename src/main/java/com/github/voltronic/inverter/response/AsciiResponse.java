@@ -0,0 +1,174 @@
+package com.github.voltronic.inverter.response;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link CharSequence} view of ASCII response data, decoded to a {@code String} only when
+ * {@link #toString()} is called.
+ *
+ * <p>Bytes outside of the ASCII range are presented as U+FFFD, like the US-ASCII
+ * {@code Charset} would decode them.  Fields are the space separated values following the
+ * leading {@code '('} of the response.
+ */
+public final class AsciiResponse implements CharSequence {
+
+  private static final char REPLACEMENT_CHARACTER = '\uFFFD';
+  private static final byte START_OF_RESPONSE_BYTE = (byte) '(';
+  private static final byte SEPARATOR_BYTE = (byte) ' ';
+
+  private final byte[] bytes;
+  private final int offset;
+  private final int length;
+  private String string;
+  private int[] fields;
+
+  private AsciiResponse(final byte[] bytes, final int offset, final int length) {
+    this.bytes = bytes;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  /**
+   * Create a view of {@code bytes} without copying them, the range must not be modified while the
+   * view is in use.
+   */
+  public static AsciiResponse wrap(final byte[] bytes, final int off, final int len) {
+    if (bytes == null) {
+      throw new NullPointerException("bytes is null");
+    } else if (off < 0 || len < 0 || len > bytes.length - off) {
+      throw new IndexOutOfBoundsException();
+    }
+
+    return new AsciiResponse(bytes, off, len);
+  }
+
+  /**
+   * Copy the bytes between the position and limit of {@code data}, without modifying its
+   * position.
+   */
+  public static AsciiResponse copyOf(final ByteBuffer data) {
+    final byte[] bytes = new byte[data.remaining()];
+    if (data.hasArray()) {
+      System.arraycopy(data.array(), data.arrayOffset() + data.position(), bytes, 0, bytes.length);
+    } else {
+      data.duplicate().get(bytes);
+    }
+
+    return new AsciiResponse(bytes, 0, bytes.length);
+  }
+
+  public int length() {
+    return this.length;
+  }
+
+  public char charAt(final int index) {
+    if (index < 0 || index >= this.length) {
+      throw new IndexOutOfBoundsException("index: " + index);
+    }
+
+    final byte b = this.bytes[this.offset + index];
+    return (b < 0) ? REPLACEMENT_CHARACTER : (char) b;
+  }
+
+  public AsciiResponse subSequence(final int start, final int end) {
+    if (start < 0 || end > this.length || start > end) {
+      throw new IndexOutOfBoundsException("start: " + start + ", end: " + end);
+    }
+
+    return new AsciiResponse(this.bytes, this.offset + start, end - start);
+  }
+
+  /**
+   * Read-only buffer over the response bytes, for decoding with a {@link TypedResponse}.
+   */
+  public ByteBuffer asByteBuffer() {
+    return ByteBuffer.wrap(this.bytes, this.offset, this.length).slice().asReadOnlyBuffer();
+  }
+
+  public boolean isNak() {
+    return this.contentEquals("(NAK");
+  }
+
+  public boolean contentEquals(final CharSequence other) {
+    if (other.length() != this.length) {
+      return false;
+    }
+
+    for (int index = 0; index < this.length; ++index) {
+      if (this.charAt(index) != other.charAt(index)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  public int getFieldCount() {
+    return this.fields().length / 2;
+  }
+
+  public AsciiResponse getField(final int index) {
+    final int[] fields = this.fields();
+    if (index < 0 || index >= fields.length / 2) {
+      throw new IndexOutOfBoundsException("field: " + index);
+    }
+
+    final int start = fields[index * 2];
+    return new AsciiResponse(this.bytes, this.offset + start, fields[index * 2 + 1] - start);
+  }
+
+  public String toString() {
+    if (this.string == null) {
+      final char[] chars = new char[this.length];
+      for (int index = 0; index < this.length; ++index) {
+        final byte b = this.bytes[this.offset + index];
+        chars[index] = (b < 0) ? REPLACEMENT_CHARACTER : (char) b;
+      }
+
+      this.string = new String(chars);
+    }
+
+    return this.string;
+  }
+
+  private int[] fields() {
+    if (this.fields == null) {
+      final byte[] bytes = this.bytes;
+      final int end = this.offset + this.length;
+      int index = this.offset;
+      if (index < end && bytes[index] == START_OF_RESPONSE_BYTE) {
+        ++index;
+      }
+
+      int count = 0;
+      int[] fields = new int[16];
+      while (index < end) {
+        if (bytes[index] == SEPARATOR_BYTE) {
+          ++index;
+          continue;
+        }
+
+        final int start = index;
+        while (index < end && bytes[index] != SEPARATOR_BYTE) {
+          ++index;
+        }
+
+        if (count + 2 > fields.length) {
+          final int[] grown = new int[fields.length * 2];
+          System.arraycopy(fields, 0, grown, 0, count);
+          fields = grown;
+        }
+
+        fields[count++] = start - this.offset;
+        fields[count++] = index - this.offset;
+      }
+
+      final int[] trimmed = new int[count];
+      System.arraycopy(fields, 0, trimmed, 0, count);
+      this.fields = trimmed;
+    }
+
+    return this.fields;
+  }
+
+}
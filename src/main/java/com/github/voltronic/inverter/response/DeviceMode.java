@@ -0,0 +1,43 @@
+package com.github.voltronic.inverter.response;
+
+public enum DeviceMode {
+  POWER_ON('P'),
+  STANDBY('S'),
+  LINE('L'),
+  BATTERY('B'),
+  FAULT('F'),
+  POWER_SAVING('H'),
+  SHUTDOWN('D'),
+  UNKNOWN('?');
+
+  private final char code;
+
+  DeviceMode(final char code) {
+    this.code = code;
+  }
+
+  public char getCode() {
+    return this.code;
+  }
+
+  public static DeviceMode fromCode(final char code) {
+    switch (code) {
+      case 'P':
+        return POWER_ON;
+      case 'S':
+        return STANDBY;
+      case 'L':
+        return LINE;
+      case 'B':
+        return BATTERY;
+      case 'F':
+        return FAULT;
+      case 'H':
+        return POWER_SAVING;
+      case 'D':
+        return SHUTDOWN;
+      default:
+        return UNKNOWN;
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package com.github.voltronic.inverter.response;
+
+import com.github.voltronic.inverter.exception.MalformedResponseException;
+import java.nio.ByteBuffer;
+
+public final class QmodResponse implements TypedResponse {
+
+  private final ResponseReader reader = new ResponseReader();
+  private char modeCode;
+  private DeviceMode mode = DeviceMode.UNKNOWN;
+
+  public String getCommand() {
+    return "QMOD";
+  }
+
+  public void decode(final ByteBuffer data) throws MalformedResponseException {
+    final ResponseReader reader = this.reader.reset(data);
+    this.modeCode = reader.nextChar();
+    this.mode = DeviceMode.fromCode(this.modeCode);
+  }
+
+  public char getModeCode() {
+    return this.modeCode;
+  }
+
+  public DeviceMode getMode() {
+    return this.mode;
+  }
+
+  public String toString() {
+    return "QmodResponse[mode=" + this.mode + "]";
+  }
+
+}
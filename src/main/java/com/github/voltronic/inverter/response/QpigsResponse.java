@@ -0,0 +1,234 @@
+package com.github.voltronic.inverter.response;
+
+import com.github.voltronic.inverter.exception.MalformedResponseException;
+import java.nio.ByteBuffer;
+
+public final class QpigsResponse implements TypedResponse {
+
+  private static final int AC_CHARGING = 1;
+  private static final int SCC_CHARGING = 1 << 1;
+  private static final int CHARGING = 1 << 2;
+  private static final int BATTERY_VOLTAGE_STEADY = 1 << 3;
+  private static final int LOAD_ON = 1 << 4;
+  private static final int SCC_FIRMWARE_UPDATED = 1 << 5;
+  private static final int CONFIGURATION_CHANGED = 1 << 6;
+  private static final int SBU_PRIORITY_VERSION = 1 << 7;
+  private static final int DUSTPROOF_INSTALLED = 1;
+  private static final int SWITCHED_ON = 1 << 1;
+  private static final int CHARGING_TO_FLOAT = 1 << 2;
+
+  private final ResponseReader reader = new ResponseReader();
+  private double gridVoltage;
+  private double gridFrequency;
+  private double acOutputVoltage;
+  private double acOutputFrequency;
+  private int acOutputApparentPower;
+  private int acOutputActivePower;
+  private int outputLoadPercent;
+  private int busVoltage;
+  private double batteryVoltage;
+  private int batteryChargingCurrent;
+  private int batteryCapacity;
+  private int heatSinkTemperature;
+  private double pvInputCurrent;
+  private double pvInputVoltage;
+  private double batteryVoltageFromScc;
+  private int batteryDischargeCurrent;
+  private int deviceStatus;
+  private boolean extended;
+  private int batteryVoltageOffset;
+  private int eepromVersion;
+  private int pvChargingPower;
+  private int deviceStatus2;
+
+  public String getCommand() {
+    return "QPIGS";
+  }
+
+  public void decode(final ByteBuffer data) throws MalformedResponseException {
+    final ResponseReader reader = this.reader.reset(data);
+    this.gridVoltage = reader.nextDouble();
+    this.gridFrequency = reader.nextDouble();
+    this.acOutputVoltage = reader.nextDouble();
+    this.acOutputFrequency = reader.nextDouble();
+    this.acOutputApparentPower = reader.nextInt();
+    this.acOutputActivePower = reader.nextInt();
+    this.outputLoadPercent = reader.nextInt();
+    this.busVoltage = reader.nextInt();
+    this.batteryVoltage = reader.nextDouble();
+    this.batteryChargingCurrent = reader.nextInt();
+    this.batteryCapacity = reader.nextInt();
+    this.heatSinkTemperature = reader.nextInt();
+    this.pvInputCurrent = reader.nextDouble();
+    this.pvInputVoltage = reader.nextDouble();
+    this.batteryVoltageFromScc = reader.nextDouble();
+    this.batteryDischargeCurrent = reader.nextInt();
+    this.deviceStatus = reader.nextBits();
+
+    this.extended = reader.hasNext();
+    if (this.extended) {
+      this.batteryVoltageOffset = reader.nextInt();
+      this.eepromVersion = reader.nextInt();
+      this.pvChargingPower = reader.nextInt();
+      this.deviceStatus2 = reader.nextBits();
+    } else {
+      this.batteryVoltageOffset = 0;
+      this.eepromVersion = 0;
+      this.pvChargingPower = 0;
+      this.deviceStatus2 = 0;
+    }
+  }
+
+  public double getGridVoltage() {
+    return this.gridVoltage;
+  }
+
+  public double getGridFrequency() {
+    return this.gridFrequency;
+  }
+
+  public double getAcOutputVoltage() {
+    return this.acOutputVoltage;
+  }
+
+  public double getAcOutputFrequency() {
+    return this.acOutputFrequency;
+  }
+
+  public int getAcOutputApparentPower() {
+    return this.acOutputApparentPower;
+  }
+
+  public int getAcOutputActivePower() {
+    return this.acOutputActivePower;
+  }
+
+  public int getOutputLoadPercent() {
+    return this.outputLoadPercent;
+  }
+
+  public int getBusVoltage() {
+    return this.busVoltage;
+  }
+
+  public double getBatteryVoltage() {
+    return this.batteryVoltage;
+  }
+
+  public int getBatteryChargingCurrent() {
+    return this.batteryChargingCurrent;
+  }
+
+  public int getBatteryCapacity() {
+    return this.batteryCapacity;
+  }
+
+  public int getHeatSinkTemperature() {
+    return this.heatSinkTemperature;
+  }
+
+  public double getPvInputCurrent() {
+    return this.pvInputCurrent;
+  }
+
+  public double getPvInputVoltage() {
+    return this.pvInputVoltage;
+  }
+
+  public double getBatteryVoltageFromScc() {
+    return this.batteryVoltageFromScc;
+  }
+
+  public int getBatteryDischargeCurrent() {
+    return this.batteryDischargeCurrent;
+  }
+
+  /**
+   * Device status bits {@code b7..b0}, {@code b0} being the least significant bit.
+   */
+  public int getDeviceStatus() {
+    return this.deviceStatus;
+  }
+
+  public boolean isAcCharging() {
+    return (this.deviceStatus & AC_CHARGING) != 0;
+  }
+
+  public boolean isSccCharging() {
+    return (this.deviceStatus & SCC_CHARGING) != 0;
+  }
+
+  public boolean isCharging() {
+    return (this.deviceStatus & CHARGING) != 0;
+  }
+
+  public boolean isBatteryVoltageSteady() {
+    return (this.deviceStatus & BATTERY_VOLTAGE_STEADY) != 0;
+  }
+
+  public boolean isLoadOn() {
+    return (this.deviceStatus & LOAD_ON) != 0;
+  }
+
+  public boolean isSccFirmwareUpdated() {
+    return (this.deviceStatus & SCC_FIRMWARE_UPDATED) != 0;
+  }
+
+  public boolean isConfigurationChanged() {
+    return (this.deviceStatus & CONFIGURATION_CHANGED) != 0;
+  }
+
+  public boolean isSbuPriorityVersion() {
+    return (this.deviceStatus & SBU_PRIORITY_VERSION) != 0;
+  }
+
+  /**
+   * Whether the response contained the fields following the device status, older firmware omits
+   * them.
+   */
+  public boolean isExtended() {
+    return this.extended;
+  }
+
+  public int getBatteryVoltageOffset() {
+    return this.batteryVoltageOffset;
+  }
+
+  public int getEepromVersion() {
+    return this.eepromVersion;
+  }
+
+  public int getPvChargingPower() {
+    return this.pvChargingPower;
+  }
+
+  /**
+   * Device status bits {@code b10..b8}, {@code b8} being the least significant bit.
+   */
+  public int getDeviceStatus2() {
+    return this.deviceStatus2;
+  }
+
+  public boolean isDustproofInstalled() {
+    return (this.deviceStatus2 & DUSTPROOF_INSTALLED) != 0;
+  }
+
+  public boolean isSwitchedOn() {
+    return (this.deviceStatus2 & SWITCHED_ON) != 0;
+  }
+
+  public boolean isChargingToFloat() {
+    return (this.deviceStatus2 & CHARGING_TO_FLOAT) != 0;
+  }
+
+  public String toString() {
+    return "QpigsResponse[gridVoltage=" + this.gridVoltage
+        + ", acOutputVoltage=" + this.acOutputVoltage
+        + ", acOutputActivePower=" + this.acOutputActivePower
+        + ", batteryVoltage=" + this.batteryVoltage
+        + ", batteryCapacity=" + this.batteryCapacity
+        + ", pvInputVoltage=" + this.pvInputVoltage
+        + ", deviceStatus=" + Integer.toBinaryString(this.deviceStatus) + "]";
+  }
+
+}
@@ -0,0 +1,183 @@
+package com.github.voltronic.inverter.response;
+
+import com.github.voltronic.inverter.exception.MalformedResponseException;
+import java.nio.ByteBuffer;
+
+public final class QpiriResponse implements TypedResponse {
+
+  private final ResponseReader reader = new ResponseReader();
+  private double gridRatingVoltage;
+  private double gridRatingCurrent;
+  private double acOutputRatingVoltage;
+  private double acOutputRatingFrequency;
+  private double acOutputRatingCurrent;
+  private int acOutputRatingApparentPower;
+  private int acOutputRatingActivePower;
+  private double batteryRatingVoltage;
+  private double batteryRechargeVoltage;
+  private double batteryUnderVoltage;
+  private double batteryBulkVoltage;
+  private double batteryFloatVoltage;
+  private int batteryType;
+  private int maximumAcChargingCurrent;
+  private int maximumChargingCurrent;
+  private int inputVoltageRange;
+  private int outputSourcePriority;
+  private int chargerSourcePriority;
+  private int parallelMaximum;
+  private int machineType;
+  private int topology;
+  private int outputMode;
+  private double batteryRedischargeVoltage;
+  private int pvOkCondition;
+  private int pvPowerBalance;
+
+  public String getCommand() {
+    return "QPIRI";
+  }
+
+  public void decode(final ByteBuffer data) throws MalformedResponseException {
+    final ResponseReader reader = this.reader.reset(data);
+    this.gridRatingVoltage = reader.nextDouble();
+    this.gridRatingCurrent = reader.nextDouble();
+    this.acOutputRatingVoltage = reader.nextDouble();
+    this.acOutputRatingFrequency = reader.nextDouble();
+    this.acOutputRatingCurrent = reader.nextDouble();
+    this.acOutputRatingApparentPower = reader.nextInt();
+    this.acOutputRatingActivePower = reader.nextInt();
+    this.batteryRatingVoltage = reader.nextDouble();
+    this.batteryRechargeVoltage = reader.nextDouble();
+    this.batteryUnderVoltage = reader.nextDouble();
+    this.batteryBulkVoltage = reader.nextDouble();
+    this.batteryFloatVoltage = reader.nextDouble();
+    this.batteryType = reader.nextInt();
+    this.maximumAcChargingCurrent = reader.nextInt();
+    this.maximumChargingCurrent = reader.nextInt();
+    this.inputVoltageRange = reader.nextInt();
+    this.outputSourcePriority = reader.nextInt();
+    this.chargerSourcePriority = reader.nextInt();
+    this.parallelMaximum = reader.nextInt();
+    this.machineType = reader.nextInt();
+    this.topology = reader.nextInt();
+    this.outputMode = reader.nextInt();
+
+    if (reader.hasNext()) {
+      this.batteryRedischargeVoltage = reader.nextDouble();
+      this.pvOkCondition = reader.nextInt();
+      this.pvPowerBalance = reader.nextInt();
+    } else {
+      this.batteryRedischargeVoltage = 0;
+      this.pvOkCondition = 0;
+      this.pvPowerBalance = 0;
+    }
+  }
+
+  public double getGridRatingVoltage() {
+    return this.gridRatingVoltage;
+  }
+
+  public double getGridRatingCurrent() {
+    return this.gridRatingCurrent;
+  }
+
+  public double getAcOutputRatingVoltage() {
+    return this.acOutputRatingVoltage;
+  }
+
+  public double getAcOutputRatingFrequency() {
+    return this.acOutputRatingFrequency;
+  }
+
+  public double getAcOutputRatingCurrent() {
+    return this.acOutputRatingCurrent;
+  }
+
+  public int getAcOutputRatingApparentPower() {
+    return this.acOutputRatingApparentPower;
+  }
+
+  public int getAcOutputRatingActivePower() {
+    return this.acOutputRatingActivePower;
+  }
+
+  public double getBatteryRatingVoltage() {
+    return this.batteryRatingVoltage;
+  }
+
+  public double getBatteryRechargeVoltage() {
+    return this.batteryRechargeVoltage;
+  }
+
+  public double getBatteryUnderVoltage() {
+    return this.batteryUnderVoltage;
+  }
+
+  public double getBatteryBulkVoltage() {
+    return this.batteryBulkVoltage;
+  }
+
+  public double getBatteryFloatVoltage() {
+    return this.batteryFloatVoltage;
+  }
+
+  public int getBatteryType() {
+    return this.batteryType;
+  }
+
+  public int getMaximumAcChargingCurrent() {
+    return this.maximumAcChargingCurrent;
+  }
+
+  public int getMaximumChargingCurrent() {
+    return this.maximumChargingCurrent;
+  }
+
+  public int getInputVoltageRange() {
+    return this.inputVoltageRange;
+  }
+
+  public int getOutputSourcePriority() {
+    return this.outputSourcePriority;
+  }
+
+  public int getChargerSourcePriority() {
+    return this.chargerSourcePriority;
+  }
+
+  public int getParallelMaximum() {
+    return this.parallelMaximum;
+  }
+
+  public int getMachineType() {
+    return this.machineType;
+  }
+
+  public int getTopology() {
+    return this.topology;
+  }
+
+  public int getOutputMode() {
+    return this.outputMode;
+  }
+
+  public double getBatteryRedischargeVoltage() {
+    return this.batteryRedischargeVoltage;
+  }
+
+  public int getPvOkCondition() {
+    return this.pvOkCondition;
+  }
+
+  public int getPvPowerBalance() {
+    return this.pvPowerBalance;
+  }
+
+  public String toString() {
+    return "QpiriResponse[acOutputRatingVoltage=" + this.acOutputRatingVoltage
+        + ", acOutputRatingActivePower=" + this.acOutputRatingActivePower
+        + ", batteryRatingVoltage=" + this.batteryRatingVoltage
+        + ", outputSourcePriority=" + this.outputSourcePriority
+        + ", chargerSourcePriority=" + this.chargerSourcePriority + "]";
+  }
+
+}
@@ -0,0 +1,74 @@
+package com.github.voltronic.inverter.response;
+
+import com.github.voltronic.inverter.exception.MalformedResponseException;
+import java.nio.ByteBuffer;
+
+public final class QpiwsResponse implements TypedResponse {
+
+  public static final int INVERTER_FAULT = 1;
+  public static final int BUS_OVER = 2;
+  public static final int BUS_UNDER = 3;
+  public static final int BUS_SOFT_FAIL = 4;
+  public static final int LINE_FAIL = 5;
+  public static final int OUTPUT_SHORT = 6;
+  public static final int INVERTER_VOLTAGE_TOO_LOW = 7;
+  public static final int INVERTER_VOLTAGE_TOO_HIGH = 8;
+  public static final int OVER_TEMPERATURE = 9;
+  public static final int FAN_LOCKED = 10;
+  public static final int BATTERY_VOLTAGE_HIGH = 11;
+  public static final int BATTERY_LOW_ALARM = 12;
+  public static final int BATTERY_UNDER_SHUTDOWN = 14;
+  public static final int OVER_LOAD = 16;
+  public static final int EEPROM_FAULT = 17;
+  public static final int INVERTER_OVER_CURRENT = 18;
+  public static final int INVERTER_SOFT_FAIL = 19;
+  public static final int SELF_TEST_FAIL = 20;
+  public static final int OUTPUT_DC_VOLTAGE_OVER = 21;
+  public static final int BATTERY_OPEN = 22;
+  public static final int CURRENT_SENSOR_FAIL = 23;
+  public static final int BATTERY_SHORT = 24;
+  public static final int POWER_LIMIT = 25;
+  public static final int PV_VOLTAGE_HIGH = 26;
+  public static final int MPPT_OVERLOAD_FAULT = 27;
+  public static final int MPPT_OVERLOAD_WARNING = 28;
+  public static final int BATTERY_TOO_LOW_TO_CHARGE = 29;
+
+  private final ResponseReader reader = new ResponseReader();
+  private long warnings;
+
+  public String getCommand() {
+    return "QPIWS";
+  }
+
+  public void decode(final ByteBuffer data) throws MalformedResponseException {
+    this.warnings = this.reader.reset(data).nextFlags();
+  }
+
+  /**
+   * Warning flags, bit {@code n} corresponds to status bit {@code a<n>} of the response.
+   */
+  public long getWarnings() {
+    return this.warnings;
+  }
+
+  public boolean isSet(final int warning) {
+    if (warning < 0 || warning >= 64) {
+      throw new IllegalArgumentException("warning out of range");
+    }
+
+    return (this.warnings & (1L << warning)) != 0;
+  }
+
+  public boolean hasWarnings() {
+    return this.warnings != 0;
+  }
+
+  public int getWarningCount() {
+    return Long.bitCount(this.warnings);
+  }
+
+  public String toString() {
+    return "QpiwsResponse[warnings=0x" + Long.toHexString(this.warnings) + "]";
+  }
+
+}
@@ -0,0 +1,228 @@
+package com.github.voltronic.inverter.response;
+
+import com.github.voltronic.inverter.exception.MalformedResponseException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads space separated fields from response data without creating intermediate strings.
+ *
+ * <p>Instances are reusable, {@link #reset(ByteBuffer)} points the reader at new response data
+ * without modifying the position or limit of the buffer.
+ */
+public final class ResponseReader {
+
+  private static final byte START_OF_RESPONSE_BYTE = (byte) '(';
+  private static final byte SEPARATOR_BYTE = (byte) ' ';
+  private static final double[] POWERS_OF_TEN = new double[]{
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+  };
+
+  private ByteBuffer buffer;
+  private int position;
+  private int end;
+  private int fieldIndex;
+
+  public ResponseReader reset(final ByteBuffer data) throws MalformedResponseException {
+    if (data == null) {
+      throw new NullPointerException("data is null");
+    }
+
+    this.buffer = data;
+    this.position = data.position();
+    this.end = data.limit();
+    this.fieldIndex = 0;
+
+    if (this.position < this.end && data.get(this.position) == START_OF_RESPONSE_BYTE) {
+      ++this.position;
+    }
+
+    if (this.end - this.position == 3
+        && data.get(this.position) == 'N'
+        && data.get(this.position + 1) == 'A'
+        && data.get(this.position + 2) == 'K') {
+      throw new MalformedResponseException("Device responded with NAK", -1);
+    }
+
+    this.skipSeparators();
+    return this;
+  }
+
+  public boolean hasNext() {
+    return this.position < this.end;
+  }
+
+  /**
+   * Index of the next field to be read.
+   */
+  public int getFieldIndex() {
+    return this.fieldIndex;
+  }
+
+  public void skip() throws MalformedResponseException {
+    this.fieldEnd();
+    this.nextField();
+  }
+
+  public double nextDouble() throws MalformedResponseException {
+    final int fieldEnd = this.fieldEnd();
+    int index = this.position;
+    final boolean negative = this.buffer.get(index) == '-';
+    if (negative || this.buffer.get(index) == '+') {
+      ++index;
+    }
+
+    long mantissa = 0;
+    int digits = 0;
+    int fractionDigits = -1;
+    for (; index < fieldEnd; ++index) {
+      final int b = this.buffer.get(index);
+      if (b >= '0' && b <= '9') {
+        if (++digits >= POWERS_OF_TEN.length) {
+          throw this.malformed("too many digits");
+        }
+
+        mantissa = mantissa * 10 + (b - '0');
+        if (fractionDigits >= 0) {
+          ++fractionDigits;
+        }
+      } else if (b == '.' && fractionDigits < 0) {
+        fractionDigits = 0;
+      } else {
+        throw this.malformed("not a number");
+      }
+    }
+
+    if (digits == 0) {
+      throw this.malformed("not a number");
+    }
+
+    double value = mantissa;
+    if (fractionDigits > 0) {
+      value /= POWERS_OF_TEN[fractionDigits];
+    }
+
+    this.nextField();
+    return negative ? -value : value;
+  }
+
+  public int nextInt() throws MalformedResponseException {
+    final int fieldEnd = this.fieldEnd();
+    int index = this.position;
+    final boolean negative = this.buffer.get(index) == '-';
+    if (negative || this.buffer.get(index) == '+') {
+      ++index;
+    }
+
+    if (index == fieldEnd || fieldEnd - index > 9) {
+      throw this.malformed("not an integer");
+    }
+
+    int value = 0;
+    for (; index < fieldEnd; ++index) {
+      final int b = this.buffer.get(index);
+      if (b < '0' || b > '9') {
+        throw this.malformed("not an integer");
+      }
+
+      value = value * 10 + (b - '0');
+    }
+
+    this.nextField();
+    return negative ? -value : value;
+  }
+
+  /**
+   * Read a field of {@code '0'} and {@code '1'} characters, the first character becomes bit 0 of
+   * the result.
+   */
+  public long nextFlags() throws MalformedResponseException {
+    final int fieldEnd = this.fieldEnd();
+    if (fieldEnd - this.position > 64) {
+      throw this.malformed("more than 64 flags");
+    }
+
+    long flags = 0;
+    for (int index = this.position, bit = 0; index < fieldEnd; ++index, ++bit) {
+      final int b = this.buffer.get(index);
+      if (b == '1') {
+        flags |= 1L << bit;
+      } else if (b != '0') {
+        throw this.malformed("not a flag");
+      }
+    }
+
+    this.nextField();
+    return flags;
+  }
+
+  /**
+   * Read a field of {@code '0'} and {@code '1'} characters as a binary number, the last character
+   * becomes bit 0 of the result.
+   */
+  public int nextBits() throws MalformedResponseException {
+    final int fieldEnd = this.fieldEnd();
+    if (fieldEnd - this.position > 31) {
+      throw this.malformed("more than 31 bits");
+    }
+
+    int bits = 0;
+    for (int index = this.position; index < fieldEnd; ++index) {
+      final int b = this.buffer.get(index);
+      if (b != '0' && b != '1') {
+        throw this.malformed("not a bit");
+      }
+
+      bits = (bits << 1) | (b - '0');
+    }
+
+    this.nextField();
+    return bits;
+  }
+
+  public char nextChar() throws MalformedResponseException {
+    final int fieldEnd = this.fieldEnd();
+    if (fieldEnd - this.position != 1) {
+      throw this.malformed("not a single character");
+    }
+
+    final char value = (char) (this.buffer.get(this.position) & 0xFF);
+    this.nextField();
+    return value;
+  }
+
+  private int fieldEnd() throws MalformedResponseException {
+    if (this.position >= this.end) {
+      throw new MalformedResponseException(
+          "Expected field " + this.fieldIndex + " but response ended", this.fieldIndex);
+    }
+
+    int index = this.position;
+    while (index < this.end && this.buffer.get(index) != SEPARATOR_BYTE) {
+      ++index;
+    }
+
+    return index;
+  }
+
+  private void nextField() {
+    while (this.position < this.end && this.buffer.get(this.position) != SEPARATOR_BYTE) {
+      ++this.position;
+    }
+
+    this.skipSeparators();
+    ++this.fieldIndex;
+  }
+
+  private void skipSeparators() {
+    while (this.position < this.end && this.buffer.get(this.position) == SEPARATOR_BYTE) {
+      ++this.position;
+    }
+  }
+
+  private MalformedResponseException malformed(final String reason) {
+    return new MalformedResponseException(
+        "Field " + this.fieldIndex + " is " + reason, this.fieldIndex);
+  }
+
+}
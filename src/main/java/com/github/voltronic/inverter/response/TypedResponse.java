@@ -0,0 +1,19 @@
+package com.github.voltronic.inverter.response;
+
+import com.github.voltronic.inverter.exception.MalformedResponseException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable record decoded from the response data of a single query command.
+ */
+public interface TypedResponse {
+
+  String getCommand();
+
+  /**
+   * Replace the contents of this record with the response held between the position and limit of
+   * {@code data}, the buffer itself is not modified.
+   */
+  void decode(ByteBuffer data) throws MalformedResponseException;
+
+}
@@ -0,0 +1,26 @@
+package com.github.voltronic.inverter.telemetry;
+
+public enum Resolution {
+  SECOND(1000L),
+  MINUTE(60 * 1000L),
+  QUARTER_HOUR(15 * 60 * 1000L);
+
+  private final long millis;
+
+  Resolution(final long millis) {
+    this.millis = millis;
+  }
+
+  public long getMillis() {
+    return this.millis;
+  }
+
+  long bucket(final long timestampMillis) {
+    return timestampMillis - floorMod(timestampMillis, this.millis);
+  }
+
+  private static long floorMod(final long value, final long divisor) {
+    final long mod = value % divisor;
+    return (mod < 0) ? mod + divisor : mod;
+  }
+}
@@ -0,0 +1,201 @@
+package com.github.voltronic.inverter.telemetry;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Ring buffers of minimum, maximum and average per field and {@link Resolution} for one device.
+ *
+ * <p>Each bucket occupies a bucket start timestamp, a sample count and per field a float minimum,
+ * float maximum and double sum, {@code 16 + 16 * fieldCount} bytes of direct memory in total.
+ * Samples older than the current bucket of a resolution are dropped for that resolution.
+ */
+public final class TelemetryHistory {
+
+  private static final int HEADER_BYTES = 16;
+  private static final int FIELD_BYTES = 16;
+  private static final Resolution[] RESOLUTIONS = Resolution.values();
+
+  private final int fieldCount;
+  private final int bucketBytes;
+  private final Tier[] tiers;
+  private long droppedSamples;
+
+  TelemetryHistory(final int fieldCount, final int[] capacities) {
+    this.fieldCount = fieldCount;
+    this.bucketBytes = HEADER_BYTES + fieldCount * FIELD_BYTES;
+    this.tiers = new Tier[RESOLUTIONS.length];
+
+    final ByteBuffer memory = ByteBuffer.allocateDirect((int) memoryBytes(fieldCount, capacities));
+    int offset = 0;
+    for (int index = 0; index < RESOLUTIONS.length; ++index) {
+      this.tiers[index] = new Tier(RESOLUTIONS[index], memory, offset, capacities[index]);
+      offset += capacities[index] * this.bucketBytes;
+    }
+  }
+
+  /**
+   * Direct memory allocated by a history of {@code fieldCount} fields with the given capacities.
+   *
+   * @throws IllegalArgumentException if it exceeds {@link Integer#MAX_VALUE} bytes
+   */
+  static long memoryBytes(final int fieldCount, final int[] capacities) {
+    long totalBytes = 0;
+    for (final int capacity : capacities) {
+      totalBytes += capacity * (HEADER_BYTES + (long) fieldCount * FIELD_BYTES);
+    }
+
+    if (totalBytes > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("memory > " + Integer.MAX_VALUE + " bytes");
+    }
+
+    return totalBytes;
+  }
+
+  public int getFieldCount() {
+    return this.fieldCount;
+  }
+
+  public synchronized void record(final long timestampMillis, final double... values) {
+    if (values.length != this.fieldCount) {
+      throw new IllegalArgumentException("values.length != " + this.fieldCount);
+    }
+
+    for (final Tier tier : this.tiers) {
+      if (!tier.record(timestampMillis, values)) {
+        ++this.droppedSamples;
+      }
+    }
+  }
+
+  /**
+   * Number of samples dropped from a resolution because they were older than its current bucket.
+   */
+  public synchronized long getDroppedSamples() {
+    return this.droppedSamples;
+  }
+
+  public synchronized int size(final Resolution resolution) {
+    return this.tiers[resolution.ordinal()].size;
+  }
+
+  /**
+   * Copy the most recent buckets of {@code field} starting at or after {@code sinceMillis}, oldest
+   * first, into the given arrays, any of which but {@code timestamps} may be {@code null}.
+   *
+   * @return number of buckets copied, at most {@code timestamps.length}
+   */
+  public synchronized int read(
+      final Resolution resolution,
+      final int field,
+      final long sinceMillis,
+      final long[] timestamps,
+      final double[] minimum,
+      final double[] maximum,
+      final double[] average) {
+
+    if (field < 0 || field >= this.fieldCount) {
+      throw new IndexOutOfBoundsException("field: " + field);
+    }
+
+    final Tier tier = this.tiers[resolution.ordinal()];
+    int count = 0;
+    while (count < tier.size && count < timestamps.length
+        && tier.timestamp(tier.size - 1 - count) >= sinceMillis) {
+      ++count;
+    }
+
+    for (int index = 0; index < count; ++index) {
+      final int age = count - 1 - index;
+      final int bucket = tier.offset(age);
+      final int fieldOffset = bucket + HEADER_BYTES + field * FIELD_BYTES;
+      timestamps[index] = tier.memory.getLong(bucket);
+      if (minimum != null) {
+        minimum[index] = tier.memory.getFloat(fieldOffset);
+      }
+      if (maximum != null) {
+        maximum[index] = tier.memory.getFloat(fieldOffset + 4);
+      }
+      if (average != null) {
+        average[index] = tier.memory.getDouble(fieldOffset + 8) / tier.memory.getLong(bucket + 8);
+      }
+    }
+
+    return count;
+  }
+
+  private final class Tier {
+
+    private final Resolution resolution;
+    private final ByteBuffer memory;
+    private final int start;
+    private final int capacity;
+    private int head = -1;
+    private int size;
+
+    private Tier(
+        final Resolution resolution,
+        final ByteBuffer memory,
+        final int start,
+        final int capacity) {
+
+      this.resolution = resolution;
+      this.memory = memory;
+      this.start = start;
+      this.capacity = capacity;
+    }
+
+    private boolean record(final long timestampMillis, final double[] values) {
+      final long bucket = this.resolution.bucket(timestampMillis);
+      int offset;
+
+      if (this.size > 0 && bucket == this.memory.getLong(this.offset(0))) {
+        offset = this.offset(0);
+        this.memory.putLong(offset + 8, this.memory.getLong(offset + 8) + 1);
+        for (int field = 0; field < values.length; ++field) {
+          final int fieldOffset = offset + HEADER_BYTES + field * FIELD_BYTES;
+          final float value = (float) values[field];
+          if (value < this.memory.getFloat(fieldOffset)) {
+            this.memory.putFloat(fieldOffset, value);
+          }
+          if (value > this.memory.getFloat(fieldOffset + 4)) {
+            this.memory.putFloat(fieldOffset + 4, value);
+          }
+          this.memory.putDouble(
+              fieldOffset + 8, this.memory.getDouble(fieldOffset + 8) + values[field]);
+        }
+
+        return true;
+      } else if (this.size > 0 && bucket < this.memory.getLong(this.offset(0))) {
+        return false;
+      }
+
+      this.head = (this.head + 1) % this.capacity;
+      this.size = Math.min(this.size + 1, this.capacity);
+      offset = this.offset(0);
+      this.memory.putLong(offset, bucket);
+      this.memory.putLong(offset + 8, 1);
+      for (int field = 0; field < values.length; ++field) {
+        final int fieldOffset = offset + HEADER_BYTES + field * FIELD_BYTES;
+        this.memory.putFloat(fieldOffset, (float) values[field]);
+        this.memory.putFloat(fieldOffset + 4, (float) values[field]);
+        this.memory.putDouble(fieldOffset + 8, values[field]);
+      }
+
+      return true;
+    }
+
+    /**
+     * Byte offset of the bucket {@code age} buckets before the most recent one.
+     */
+    private int offset(final int age) {
+      final int index = (this.head - age + this.capacity) % this.capacity;
+      return this.start + index * TelemetryHistory.this.bucketBytes;
+    }
+
+    private long timestamp(final int index) {
+      return this.memory.getLong(this.offset(this.size - 1 - index));
+    }
+
+  }
+
+}
@@ -0,0 +1,105 @@
+package com.github.voltronic.inverter.telemetry;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Fixed-size history of numeric telemetry per device.
+ *
+ * <p>Every device gets one {@link TelemetryHistory} holding a ring of buckets per
+ * {@link Resolution} in off-heap memory, so memory use depends only on the number of devices,
+ * fields and configured capacities.  The whole history of a device is allocated when its key is
+ * first recorded, {@code (16 + 16 * fieldCount) * (secondCapacity + minuteCapacity +
+ * quarterHourCapacity)} bytes as returned by {@link #getMemoryPerDevice()}.  With the default
+ * capacities that is about 2.4 MiB per device for 30 fields.
+ *
+ * @param <K> key identifying a device, e.g. its serial number
+ */
+public class TelemetryStore<K> {
+
+  private static final int DEFAULT_SECOND_CAPACITY = 15 * 60;
+  private static final int DEFAULT_MINUTE_CAPACITY = 24 * 60;
+  private static final int DEFAULT_QUARTER_HOUR_CAPACITY = 28 * 24 * 4;
+
+  private final ConcurrentMap<K, TelemetryHistory> histories =
+      new ConcurrentHashMap<K, TelemetryHistory>();
+  private final int fieldCount;
+  private final int[] capacities;
+  private final long memoryPerDevice;
+
+  /**
+   * Keep 15 minutes of 1 second, 1 day of 1 minute and 28 days of 15 minute buckets.
+   */
+  public TelemetryStore(final int fieldCount) {
+    this(fieldCount, DEFAULT_SECOND_CAPACITY, DEFAULT_MINUTE_CAPACITY,
+        DEFAULT_QUARTER_HOUR_CAPACITY);
+  }
+
+  public TelemetryStore(
+      final int fieldCount,
+      final int secondCapacity,
+      final int minuteCapacity,
+      final int quarterHourCapacity) {
+
+    if (fieldCount <= 0) {
+      throw new IllegalArgumentException("fieldCount <= 0");
+    } else if (secondCapacity <= 0 || minuteCapacity <= 0 || quarterHourCapacity <= 0) {
+      throw new IllegalArgumentException("capacity <= 0");
+    }
+
+    this.fieldCount = fieldCount;
+    this.capacities = new int[]{secondCapacity, minuteCapacity, quarterHourCapacity};
+    this.memoryPerDevice = TelemetryHistory.memoryBytes(fieldCount, this.capacities);
+  }
+
+  public int getFieldCount() {
+    return this.fieldCount;
+  }
+
+  public int getCapacity(final Resolution resolution) {
+    return this.capacities[resolution.ordinal()];
+  }
+
+  /**
+   * Bytes of direct memory allocated for the history of each device.
+   */
+  public long getMemoryPerDevice() {
+    return this.memoryPerDevice;
+  }
+
+  /**
+   * Record one value per field for the device identified by {@code key}, creating its history on
+   * first use.
+   */
+  public void record(final K key, final long timestampMillis, final double... values) {
+    this.getHistory(key).record(timestampMillis, values);
+  }
+
+  public TelemetryHistory getHistory(final K key) {
+    if (key == null) {
+      throw new NullPointerException("key is null");
+    }
+
+    TelemetryHistory history = this.histories.get(key);
+    if (history == null) {
+      final TelemetryHistory created = new TelemetryHistory(this.fieldCount, this.capacities);
+      history = this.histories.putIfAbsent(key, created);
+      if (history == null) {
+        history = created;
+      }
+    }
+
+    return history;
+  }
+
+  public Set<K> getKeys() {
+    return Collections.unmodifiableSet(this.histories.keySet());
+  }
+
+  public void remove(final K key) {
+    this.histories.remove(key);
+  }
+
+}
@@ -0,0 +1,110 @@
+package com.github.voltronic.inverter;
+
+import com.github.voltronic.inverter.digest.V1VoltronicMessageDigest;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class CommandTestDevice implements Device {
+
+  private final Map<String, String> responses = new HashMap<String, String>();
+  private final Map<String, Long> responseDelays = new HashMap<String, Long>();
+  private final List<String> commands = new ArrayList<String>();
+  private final List<DelayedResponse> delayedResponses = new ArrayList<DelayedResponse>();
+  private final ByteArrayOutputStream input = new ByteArrayOutputStream();
+  private byte[] output = new byte[0];
+  private int outputPosition;
+
+  public static byte[] frame(final String data) {
+    final byte[] dataBytes = ByteUtil.bytes(data);
+    final MessageDigest digest = new V1VoltronicMessageDigest();
+    digest.update(dataBytes);
+    return ByteUtil.bytes(dataBytes, digest.digest(), ByteUtil.bytes((byte) '\r'));
+  }
+
+  public synchronized void setResponse(final String command, final String response) {
+    this.responses.put(command, response);
+  }
+
+  /**
+   * Answer {@code command} only after {@code delay}, later commands are answered in the meantime.
+   */
+  public synchronized void setResponseDelay(
+      final String command,
+      final long delay,
+      final TimeUnit timeUnit) {
+
+    this.responseDelays.put(command, timeUnit.toNanos(delay));
+  }
+
+  public synchronized List<String> getCommands() {
+    return new ArrayList<String>(this.commands);
+  }
+
+  public synchronized int read(final byte[] b, final int off, final int len) {
+    final long nanoTime = System.nanoTime();
+    for (final Iterator<DelayedResponse> iterator = this.delayedResponses.iterator();
+        iterator.hasNext(); ) {
+
+      final DelayedResponse delayed = iterator.next();
+      if (nanoTime - delayed.dueNanoTime >= 0) {
+        iterator.remove();
+        this.output = ByteUtil.bytes(
+            Arrays.copyOfRange(this.output, this.outputPosition, this.output.length),
+            delayed.bytes);
+        this.outputPosition = 0;
+      }
+    }
+
+    final int length = Math.min(len, this.output.length - this.outputPosition);
+    System.arraycopy(this.output, this.outputPosition, b, off, length);
+    this.outputPosition += length;
+    return length;
+  }
+
+  public synchronized void write(final byte[] b, final int off, final int len) {
+    for (int index = off; index < off + len; ++index) {
+      if (b[index] == '\r') {
+        final byte[] frame = this.input.toByteArray();
+        final String command = new String(frame, 0, Math.max(0, frame.length - 2));
+        this.input.reset();
+        this.commands.add(command);
+
+        final String response = this.responses.get(command);
+        final Long delay = this.responseDelays.get(command);
+        if (delay == null) {
+          this.output = frame((response == null) ? "(NAK" : response);
+          this.outputPosition = 0;
+        } else {
+          this.delayedResponses.add(new DelayedResponse(System.nanoTime() + delay,
+              frame((response == null) ? "(NAK" : response)));
+        }
+      } else {
+        this.input.write(b[index]);
+      }
+    }
+  }
+
+  public void close() throws IOException {
+  }
+
+  private static final class DelayedResponse {
+
+    private final long dueNanoTime;
+    private final byte[] bytes;
+
+    private DelayedResponse(final long dueNanoTime, final byte[] bytes) {
+      this.dueNanoTime = dueNanoTime;
+      this.bytes = bytes;
+    }
+
+  }
+
+}
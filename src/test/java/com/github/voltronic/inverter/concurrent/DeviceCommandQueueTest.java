@@ -0,0 +1,215 @@
+package com.github.voltronic.inverter.concurrent;
+
+import com.github.voltronic.inverter.CommandTestDevice;
+import com.github.voltronic.inverter.Device;
+import com.github.voltronic.inverter.device.WatchdogDevice;
+import com.github.voltronic.inverter.exception.TimeoutException;
+import com.github.voltronic.inverter.protocol.P30Protocol;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeviceCommandQueueTest {
+
+  private CommandTestDevice device;
+  private ExecutorService executor;
+  private DeviceCommandQueue queue;
+  private CountDownLatch blocker;
+
+  @BeforeEach
+  public void setup() {
+    this.device = new CommandTestDevice();
+    this.device.setResponse("QMOD", "(B");
+    this.device.setResponse("QPIGS", "(240.1 49.9");
+    this.device.setResponse("POP02", "(ACK");
+
+    this.executor = Executors.newSingleThreadExecutor();
+    this.queue = new DeviceCommandQueue(new P30Protocol(), this.device, this.executor);
+    this.blocker = new CountDownLatch(1);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    this.blocker.countDown();
+    this.queue.close();
+    this.executor.shutdownNow();
+  }
+
+  @Test
+  @DisplayName("Commands complete with the device response")
+  public void testCommandsComplete() throws Exception {
+    final Future<String> mode = queue.submit("QMOD", 5, TimeUnit.SECONDS);
+    final Future<String> status = queue.submit("QPIGS", 5, TimeUnit.SECONDS);
+    final Future<String> unknown = queue.submit("QXYZ", 5, TimeUnit.SECONDS);
+
+    assertEquals("(B", mode.get());
+    assertEquals("(240.1 49.9", status.get());
+    assertEquals("(NAK", unknown.get());
+    assertEquals(Arrays.asList("QMOD", "QPIGS", "QXYZ"), device.getCommands());
+  }
+
+  @Test
+  @DisplayName("Control commands are executed before queued telemetry commands")
+  public void testControlCommandsHavePriority() throws Exception {
+    blockExecutor();
+
+    final Future<String> first = queue.submit("QPIGS", 5, TimeUnit.SECONDS);
+    final Future<String> second = queue.submit("QMOD", 5, TimeUnit.SECONDS);
+    final Future<String> control = queue.submit(
+        "POP02", CommandPriority.CONTROL, 5, TimeUnit.SECONDS);
+    assertEquals(3, queue.size());
+
+    blocker.countDown();
+    assertEquals("(ACK", control.get());
+    assertEquals("(240.1 49.9", first.get());
+    assertEquals("(B", second.get());
+    assertEquals(Arrays.asList("POP02", "QPIGS", "QMOD"), device.getCommands());
+  }
+
+  @Test
+  @DisplayName("Commands whose deadline passed while queued fail with TimeoutException")
+  public void testDeadlineExpiresInQueue() throws Exception {
+    blockExecutor();
+
+    final Future<String> expired = queue.submit("QMOD", 1, TimeUnit.MILLISECONDS);
+    Thread.sleep(20);
+    blocker.countDown();
+
+    final ExecutionException e = assertThrows(ExecutionException.class, new Executable() {
+      public void execute() throws Throwable {
+        expired.get();
+      }
+    });
+
+    assertTrue(e.getCause() instanceof TimeoutException);
+    assertTrue(device.getCommands().isEmpty());
+  }
+
+  @Test
+  @DisplayName("Callbacks are notified on completion")
+  public void testCallbackNotified() throws Exception {
+    final AtomicReference<String> response = new AtomicReference<String>();
+    final CountDownLatch completed = new CountDownLatch(1);
+
+    queue.submit("QMOD", CommandPriority.TELEMETRY, 5, TimeUnit.SECONDS, new ResponseCallback() {
+      public void completed(final String command, final String value) {
+        response.set(command + "=" + value);
+        completed.countDown();
+      }
+
+      public void failed(final String command, final Throwable cause) {
+        response.set(cause.toString());
+        completed.countDown();
+      }
+    });
+
+    assertTrue(completed.await(5, TimeUnit.SECONDS));
+    assertEquals("QMOD=(B", response.get());
+  }
+
+  @Test
+  @DisplayName("Closing cancels queued commands and rejects new commands")
+  public void testCloseCancelsAndRejects() throws Exception {
+    blockExecutor();
+
+    final Future<String> pending = queue.submit("QMOD", 5, TimeUnit.SECONDS);
+    queue.close();
+
+    assertTrue(queue.isClosed());
+    assertTrue(pending.isCancelled());
+    assertThrows(CancellationException.class, new Executable() {
+      public void execute() throws Throwable {
+        pending.get();
+      }
+    });
+
+    assertThrows(RejectedExecutionException.class, new Executable() {
+      public void execute() throws Throwable {
+        queue.submit("QMOD", 5, TimeUnit.SECONDS);
+      }
+    });
+  }
+
+  @Test
+  @DisplayName("A late response to a failed command does not complete the next command")
+  public void testLateResponseDiscarded() throws Exception {
+    device.setResponseDelay("QPIGS", 120, TimeUnit.MILLISECONDS);
+
+    final Future<String> late = queue.submit("QPIGS", 50, TimeUnit.MILLISECONDS);
+    final ExecutionException e = assertThrows(ExecutionException.class, new Executable() {
+      public void execute() throws Throwable {
+        late.get();
+      }
+    });
+    assertTrue(e.getCause() instanceof TimeoutException);
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(50),
+        ((TimeoutException) e.getCause()).getNanosecondsTimeout());
+
+    assertEquals("(B", queue.submit("QMOD", 5, TimeUnit.SECONDS).get());
+    assertEquals("(B", queue.submit("QMOD", 5, TimeUnit.SECONDS).get());
+  }
+
+  @Test
+  @DisplayName("A write blocking in the device fails at the deadline of the command")
+  public void testBlockingWrite() throws Exception {
+    final Device blocking = new Device() {
+      public int read(final byte[] b, final int off, final int len) throws IOException {
+        return 0;
+      }
+
+      public void write(final byte[] b, final int off, final int len) throws IOException {
+        try {
+          blocker.await();
+        } catch (final InterruptedException e) {
+          throw new InterruptedIOException();
+        }
+      }
+
+      public void close() {
+      }
+    };
+    queue.close();
+    queue = new DeviceCommandQueue(
+        new P30Protocol(), new WatchdogDevice(blocking, false), executor);
+
+    final Future<String> future = queue.submit("QPIGS", 100, TimeUnit.MILLISECONDS);
+    final ExecutionException e = assertThrows(ExecutionException.class, new Executable() {
+      public void execute() throws Throwable {
+        future.get(5, TimeUnit.SECONDS);
+      }
+    });
+    assertTrue(e.getCause() instanceof TimeoutException);
+  }
+
+  private void blockExecutor() throws InterruptedException {
+    final CountDownLatch started = new CountDownLatch(1);
+    executor.execute(new Runnable() {
+      public void run() {
+        started.countDown();
+        try {
+          blocker.await();
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+  }
+
+}
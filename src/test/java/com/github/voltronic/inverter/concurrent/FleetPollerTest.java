@@ -0,0 +1,155 @@
+package com.github.voltronic.inverter.concurrent;
+
+import com.github.voltronic.inverter.CommandTestDevice;
+import com.github.voltronic.inverter.Device;
+import com.github.voltronic.inverter.protocol.P30Protocol;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FleetPollerTest {
+
+  private FleetPoller poller;
+  private CountingListener listener;
+
+  @BeforeEach
+  public void setup() {
+    this.poller = new FleetPoller(new P30Protocol(), 2);
+    this.poller.setJitter(5, TimeUnit.MILLISECONDS);
+    this.listener = new CountingListener();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    this.poller.close();
+  }
+
+  @Test
+  @DisplayName("Many devices are polled from a couple of scheduler threads")
+  public void testPollsManyDevices() throws Exception {
+    final List<CommandTestDevice> devices = new ArrayList<CommandTestDevice>();
+    for (int count = 0; count < 200; ++count) {
+      final CommandTestDevice device = new CommandTestDevice();
+      device.setResponse("QPIGS", "(240.1 49.9");
+      device.setResponse("QMOD", "(B");
+      devices.add(device);
+
+      final PolledDevice polledDevice = poller.addDevice(device, listener);
+      polledDevice.schedule("QPIGS", 20, TimeUnit.MILLISECONDS);
+      polledDevice.schedule("QMOD", 50, TimeUnit.MILLISECONDS);
+    }
+
+    final long endTime = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (listener.minimumResponses(devices, "QMOD") < 2 && System.nanoTime() < endTime) {
+      Thread.sleep(10);
+    }
+
+    assertTrue(listener.minimumResponses(devices, "QMOD") >= 2);
+    assertTrue(listener.minimumResponses(devices, "QPIGS") >= 2);
+    assertEquals(0, listener.failures.get());
+  }
+
+  @Test
+  @DisplayName("A failing device does not affect other devices")
+  public void testFailureIsolation() throws Exception {
+    final CommandTestDevice healthy = new CommandTestDevice();
+    healthy.setResponse("QMOD", "(B");
+
+    final Device broken = new CommandTestDevice() {
+      public synchronized void write(final byte[] b, final int off, final int len) {
+        throw new IllegalStateException("Port disconnected");
+      }
+    };
+
+    poller.addDevice(healthy, listener).schedule("QMOD", 10, TimeUnit.MILLISECONDS);
+    final PolledDevice brokenDevice = poller.addDevice(broken, listener);
+    brokenDevice.schedule("QMOD", 10, TimeUnit.MILLISECONDS);
+
+    final long endTime = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while ((listener.responses(healthy, "QMOD") < 5 || listener.failures.get() == 0)
+        && System.nanoTime() < endTime) {
+      Thread.sleep(10);
+    }
+
+    assertTrue(listener.responses(healthy, "QMOD") >= 5);
+    assertEquals(0, listener.responses(broken, "QMOD"));
+    assertEquals(1, listener.failures.get());
+    assertEquals(1, brokenDevice.getConsecutiveFailures());
+  }
+
+  @Test
+  @DisplayName("Removed devices are no longer polled")
+  public void testRemoveStopsPolling() throws Exception {
+    final CommandTestDevice device = new CommandTestDevice();
+    final PolledDevice polledDevice = poller.addDevice(device, listener);
+    polledDevice.schedule("QMOD", 5, TimeUnit.MILLISECONDS);
+
+    final long endTime = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (device.getCommands().isEmpty() && System.nanoTime() < endTime) {
+      Thread.sleep(5);
+    }
+
+    polledDevice.remove();
+    Thread.sleep(50);
+    final int commands = device.getCommands().size();
+    Thread.sleep(50);
+
+    assertTrue(commands > 0);
+    assertEquals(commands, device.getCommands().size());
+    assertThrows(IllegalStateException.class, new Executable() {
+      public void execute() throws Throwable {
+        polledDevice.schedule("QMOD", 5, TimeUnit.MILLISECONDS);
+      }
+    });
+  }
+
+  private static final class CountingListener implements PollListener {
+
+    private final Map<String, AtomicInteger> responses = new ConcurrentHashMap<String, AtomicInteger>();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    public void onResponse(final Device device, final String command, final String response) {
+      final String key = key(device, command);
+      AtomicInteger count = responses.get(key);
+      if (count == null) {
+        responses.put(key, new AtomicInteger());
+        count = responses.get(key);
+      }
+      count.incrementAndGet();
+    }
+
+    public void onFailure(final Device device, final String command, final IOException cause) {
+      failures.incrementAndGet();
+    }
+
+    int responses(final Device device, final String command) {
+      final AtomicInteger count = responses.get(key(device, command));
+      return (count == null) ? 0 : count.get();
+    }
+
+    int minimumResponses(final List<CommandTestDevice> devices, final String command) {
+      int minimum = Integer.MAX_VALUE;
+      for (final Device device : devices) {
+        minimum = Math.min(minimum, responses(device, command));
+      }
+      return minimum;
+    }
+
+    private static String key(final Device device, final String command) {
+      return System.identityHashCode(device) + command;
+    }
+
+  }
+
+}
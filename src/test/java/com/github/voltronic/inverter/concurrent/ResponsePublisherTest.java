@@ -0,0 +1,219 @@
+package com.github.voltronic.inverter.concurrent;
+
+import com.github.voltronic.inverter.CommandTestDevice;
+import com.github.voltronic.inverter.exception.MalformedResponseException;
+import com.github.voltronic.inverter.exception.TimeoutException;
+import com.github.voltronic.inverter.protocol.P30Protocol;
+import com.github.voltronic.inverter.response.DeviceMode;
+import com.github.voltronic.inverter.response.QmodResponse;
+import com.github.voltronic.inverter.response.QpigsResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponsePublisherTest {
+
+  private static final Executor DIRECT_EXECUTOR = new Executor() {
+    public void execute(final Runnable command) {
+      command.run();
+    }
+  };
+
+  private ResponsePublisher publisher;
+  private CommandTestDevice device;
+  private RecordingSubscriber subscriber;
+
+  @BeforeEach
+  public void setup() {
+    this.publisher = new ResponsePublisher(DIRECT_EXECUTOR);
+    this.device = new CommandTestDevice();
+    this.subscriber = new RecordingSubscriber();
+    this.publisher.subscribe(this.subscriber);
+  }
+
+  @Test
+  @DisplayName("Responses waiting for demand are replaced by newer ones")
+  public void testConflation() {
+    publisher.onResponse(device, "QPIGS", "(1");
+    publisher.onResponse(device, "QPIGS", "(2");
+    publisher.onResponse(device, "QMOD", "(L");
+    publisher.onFailure(device, "QPIGS", new TimeoutException(1, TimeUnit.SECONDS));
+    publisher.onResponse(device, "QPIGS", "(3");
+    assertEquals(0, subscriber.items.size());
+    assertEquals(3, publisher.getReplacedResponses());
+
+    subscriber.subscription.request(1);
+    assertEquals(1, subscriber.items.size());
+    assertEquals("(3", subscriber.items.get(0).getResponse());
+
+    subscriber.subscription.request(5);
+    assertEquals(2, subscriber.items.size());
+    assertEquals("QMOD", subscriber.items.get(1).getCommand());
+
+    publisher.onFailure(device, "QMOD", new TimeoutException(1, TimeUnit.SECONDS));
+    assertEquals(3, subscriber.items.size());
+    assertFalse(subscriber.items.get(2).isSuccessful());
+    assertTrue(subscriber.items.get(2).getFailure() instanceof TimeoutException);
+  }
+
+  @Test
+  @DisplayName("Responses of different devices are not replaced by each other")
+  public void testSeparateDevices() {
+    final CommandTestDevice other = new CommandTestDevice();
+    publisher.onResponse(device, "QMOD", "(L");
+    publisher.onResponse(other, "QMOD", "(B");
+
+    subscriber.subscription.request(Long.MAX_VALUE);
+    assertEquals(2, subscriber.items.size());
+    assertSame(device, subscriber.items.get(0).getDevice());
+    assertSame(other, subscriber.items.get(1).getDevice());
+  }
+
+  @Test
+  @DisplayName("Closing completes subscribers after waiting responses are delivered")
+  public void testClose() {
+    publisher.onResponse(device, "QMOD", "(L");
+    publisher.close();
+    publisher.onResponse(device, "QPIGS", "(1");
+    assertFalse(subscriber.completed);
+
+    subscriber.subscription.request(10);
+    assertEquals(1, subscriber.items.size());
+    assertTrue(subscriber.completed);
+    assertEquals(0, publisher.getSubscriberCount());
+
+    final RecordingSubscriber late = new RecordingSubscriber();
+    publisher.subscribe(late);
+    assertNotNull(late.subscription);
+    assertTrue(late.completed);
+  }
+
+  @Test
+  @DisplayName("Cancelled and failed subscriptions receive nothing more")
+  public void testCancelAndInvalidRequest() {
+    subscriber.subscription.cancel();
+    publisher.onResponse(device, "QMOD", "(L");
+    subscriber.subscription.request(1);
+    assertEquals(0, subscriber.items.size());
+    assertEquals(0, publisher.getSubscriberCount());
+
+    final RecordingSubscriber invalid = new RecordingSubscriber();
+    publisher.subscribe(invalid);
+    invalid.subscription.request(0);
+    assertTrue(invalid.error instanceof IllegalArgumentException);
+    assertEquals(0, publisher.getSubscriberCount());
+  }
+
+  @Test
+  @DisplayName("Responses to commands with a decoder are published decoded")
+  public void testDecoders() {
+    publisher.addDecoder(QmodResponse.class);
+    publisher.addDecoder(QpigsResponse.class);
+    subscriber.subscription.request(Long.MAX_VALUE);
+
+    publisher.onResponse(device, "QMOD", "(B");
+    publisher.onResponse(device, "QMOD", "(L");
+    publisher.onResponse(device, "QPIGS", "(NAK");
+    publisher.onResponse(device, "QPIRI", "(230.0");
+    assertEquals(4, subscriber.items.size());
+
+    final QmodResponse first = (QmodResponse) subscriber.items.get(0).getTypedResponse();
+    final QmodResponse second = (QmodResponse) subscriber.items.get(1).getTypedResponse();
+    assertEquals(DeviceMode.BATTERY, first.getMode());
+    assertEquals(DeviceMode.LINE, second.getMode());
+    assertEquals("(B", subscriber.items.get(0).getResponse());
+
+    assertFalse(subscriber.items.get(2).isSuccessful());
+    assertTrue(subscriber.items.get(2).getFailure() instanceof MalformedResponseException);
+    assertNull(subscriber.items.get(2).getTypedResponse());
+
+    assertEquals("(230.0", subscriber.items.get(3).getResponse());
+    assertNull(subscriber.items.get(3).getTypedResponse());
+
+    publisher.removeDecoder("QMOD");
+    publisher.onResponse(device, "QMOD", "(B");
+    assertNull(subscriber.items.get(4).getTypedResponse());
+  }
+
+  @Test
+  @DisplayName("Subscribers rejected by the executor are not registered")
+  public void testRejectedSubscribe() {
+    final ResponsePublisher rejecting = new ResponsePublisher(new Executor() {
+      public void execute(final Runnable command) {
+        throw new RejectedExecutionException();
+      }
+    });
+    final RecordingSubscriber rejected = new RecordingSubscriber();
+
+    assertThrows(RejectedExecutionException.class, new Executable() {
+      public void execute() throws Throwable {
+        rejecting.subscribe(rejected);
+      }
+    });
+
+    rejecting.onResponse(device, "QMOD", "(L");
+    assertNull(rejected.subscription);
+    assertNull(rejected.error);
+    assertEquals(0, rejecting.getSubscriberCount());
+  }
+
+  @Test
+  @DisplayName("Polled responses are published")
+  public void testFleetPoller() throws Exception {
+    device.setResponse("QMOD", "(B");
+    subscriber.subscription.request(Long.MAX_VALUE);
+
+    final FleetPoller poller = new FleetPoller(new P30Protocol(), 1);
+    try {
+      poller.addDevice(device, publisher).schedule("QMOD", 10, TimeUnit.MILLISECONDS);
+
+      final long endTime = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (subscriber.size() < 3 && System.nanoTime() < endTime) {
+        Thread.sleep(10);
+      }
+    } finally {
+      poller.close();
+    }
+
+    assertTrue(subscriber.size() >= 3);
+    assertEquals("(B", subscriber.items.get(0).getResponse());
+  }
+
+  private static final class RecordingSubscriber implements Subscriber<PolledResponse> {
+
+    private final List<PolledResponse> items = new ArrayList<PolledResponse>();
+    private Subscription subscription;
+    private Throwable error;
+    private boolean completed;
+
+    public synchronized void onSubscribe(final Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    public synchronized void onNext(final PolledResponse item) {
+      this.items.add(item);
+    }
+
+    public synchronized void onError(final Throwable cause) {
+      this.error = cause;
+    }
+
+    public synchronized void onComplete() {
+      this.completed = true;
+    }
+
+    private synchronized int size() {
+      return this.items.size();
+    }
+
+  }
+
+}
@@ -0,0 +1,73 @@
+package com.github.voltronic.inverter.device;
+
+import com.github.voltronic.inverter.CommandTestDevice;
+import com.github.voltronic.inverter.protocol.P30Protocol;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import static com.github.voltronic.inverter.ByteUtil.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChannelDeviceTest {
+
+  private P30Protocol protocol;
+  private ByteArrayOutputStream output;
+
+  @BeforeEach
+  public void setup() {
+    this.protocol = new P30Protocol();
+    this.output = new ByteArrayOutputStream();
+  }
+
+  @Test
+  @DisplayName("Device contract reads and writes through the channels")
+  public void testDeviceContract() throws Exception {
+    final ChannelDevice device = new ChannelDevice(
+        Channels.newChannel(new ByteArrayInputStream(CommandTestDevice.frame("(PI30"))),
+        Channels.newChannel(output));
+
+    protocol.write(device, "QPI");
+    assertArrayEquals(bytes(bytes("QPI"), bytes(0xBE, 0xAC), bytes('\r')), output.toByteArray());
+    assertEquals("(PI30", protocol.read(device, 1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  @DisplayName("Protocol frames directly to and from channels using direct buffers")
+  public void testChannelOverloads() throws Exception {
+    protocol.write(Channels.newChannel(output), "QPI");
+    assertArrayEquals(bytes(bytes("QPI"), bytes(0xBE, 0xAC), bytes('\r')), output.toByteArray());
+
+    final ReadableByteChannel channel = Channels.newChannel(
+        new ByteArrayInputStream(bytes(CommandTestDevice.frame("(PI30"), bytes("(NAK"))));
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+    buffer.position(3);
+
+    assertEquals(5, protocol.read(channel, buffer, 1, TimeUnit.SECONDS));
+    assertEquals(8, buffer.position());
+    assertEquals(64, buffer.limit());
+    assertEquals('(', buffer.get(3));
+    assertEquals('0', buffer.get(7));
+  }
+
+  @Test
+  @DisplayName("Channel reaching end of stream before the end of input throws EOFException")
+  public void testChannelEndOfStream() {
+    final ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(bytes("(PI")));
+
+    assertThrows(EOFException.class, new Executable() {
+      public void execute() throws Throwable {
+        protocol.read(channel, ByteBuffer.allocateDirect(64), 1, TimeUnit.SECONDS);
+      }
+    });
+  }
+
+}
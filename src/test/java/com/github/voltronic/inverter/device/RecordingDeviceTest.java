@@ -0,0 +1,133 @@
+package com.github.voltronic.inverter.device;
+
+import com.github.voltronic.inverter.CommandTestDevice;
+import com.github.voltronic.inverter.protocol.P30Protocol;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import static com.github.voltronic.inverter.ByteUtil.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecordingDeviceTest {
+
+  private File captureFile;
+  private CommandTestDevice device;
+  private P30Protocol protocol;
+
+  @BeforeEach
+  public void setup() throws IOException {
+    this.captureFile = File.createTempFile("capture", ".bin");
+    this.device = new CommandTestDevice();
+    this.device.setResponse("QPI", "(PI30");
+    this.device.setResponse("QMOD", "(L");
+    this.protocol = new P30Protocol();
+  }
+
+  @AfterEach
+  public void teardown() {
+    this.captureFile.delete();
+  }
+
+  @Test
+  @DisplayName("Recorded traffic is replayed into the protocol")
+  public void testRecordAndReplay() throws Exception {
+    final RecordingDevice recording = new RecordingDevice(device, captureFile, 4096);
+    protocol.write(recording, "QPI");
+    assertEquals("(PI30", protocol.read(recording, 1, TimeUnit.SECONDS));
+    protocol.write(recording, "QMOD");
+    assertEquals("(L", protocol.read(recording, 1, TimeUnit.SECONDS));
+    assertEquals(0, recording.getDroppedBytes());
+    recording.close();
+
+    final ReplayDevice replay = new ReplayDevice(captureFile, Double.POSITIVE_INFINITY);
+    protocol.write(replay, "QPI");
+    assertEquals("(PI30", protocol.read(replay, 1, TimeUnit.SECONDS));
+    protocol.write(replay, "QMOD");
+    assertEquals("(L", protocol.read(replay, 1, TimeUnit.SECONDS));
+    assertEquals(0, replay.getMismatchedWrites());
+    assertTrue(replay.isFinished());
+    assertEquals(0, replay.read(new byte[8], 0, 8));
+  }
+
+  @Test
+  @DisplayName("Replayed reads keep their recorded delay")
+  public void testReplayTiming() throws Exception {
+    final RecordingDevice recording = new RecordingDevice(device, captureFile, 4096);
+    protocol.write(recording, "QPI");
+    Thread.sleep(100);
+    protocol.read(recording, 1, TimeUnit.SECONDS);
+    recording.close();
+
+    final ReplayDevice replay = new ReplayDevice(captureFile, 1);
+    protocol.write(replay, "QPMOD");
+    assertEquals(1, replay.getMismatchedWrites());
+    assertEquals(0, replay.read(new byte[8], 0, 8));
+
+    final long startNanoTime = System.nanoTime();
+    assertEquals("(PI30", protocol.read(replay, 1, TimeUnit.SECONDS));
+    assertTrue(System.nanoTime() - startNanoTime >= TimeUnit.MILLISECONDS.toNanos(50));
+  }
+
+  @Test
+  @DisplayName("Chunks beyond the capacity are dropped")
+  public void testCapacityExhausted() throws Exception {
+    final RecordingDevice recording = new RecordingDevice(device, captureFile, 32);
+    protocol.write(recording, "QPI");
+    protocol.read(recording, 1, TimeUnit.SECONDS);
+    assertEquals(8, recording.getDroppedBytes());
+    recording.close();
+
+    assertThrows(IOException.class, new Executable() {
+      public void execute() throws Throwable {
+        final File empty = File.createTempFile("empty", ".bin");
+        try {
+          new ReplayDevice(empty, 1);
+        } finally {
+          empty.delete();
+        }
+      }
+    });
+  }
+
+  @Test
+  @DisplayName("Records extending past the end of the capture fail with an IOException")
+  public void testCorruptRecordLength() throws Exception {
+    final RecordingDevice recording = new RecordingDevice(device, captureFile, 4096);
+    protocol.write(recording, "QPI");
+    protocol.read(recording, 1, TimeUnit.SECONDS);
+    recording.close();
+
+    final RandomAccessFile file = new RandomAccessFile(captureFile, "rw");
+    try {
+      file.seek(8 + 13 + 6 + 9);
+      file.writeInt(1 << 20);
+    } finally {
+      file.close();
+    }
+
+    final ReplayDevice replay = new ReplayDevice(captureFile, Double.POSITIVE_INFINITY);
+    protocol.write(replay, "QPI");
+    assertThrows(IOException.class, new Executable() {
+      public void execute() throws Throwable {
+        replay.read(new byte[16], 0, 16);
+      }
+    });
+  }
+
+  @Test
+  @DisplayName("Written bytes are recorded as they were sent")
+  public void testRecordsRawBytes() throws Exception {
+    final RecordingDevice recording = new RecordingDevice(device, captureFile, 64);
+    recording.write(bytes("QPI\r"), 0, 4);
+    assertEquals(8 + 13 + 4, recording.getRecordedBytes());
+    recording.close();
+  }
+
+}
@@ -0,0 +1,99 @@
+package com.github.voltronic.inverter.device;
+
+import com.github.voltronic.inverter.exception.DigestMismatchException;
+import com.github.voltronic.inverter.exception.TimeoutException;
+import com.github.voltronic.inverter.protocol.P30Protocol;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import static com.github.voltronic.inverter.ByteUtil.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SimulatedInverterDeviceTest {
+
+  private P30Protocol protocol;
+  private SimulatedInverterDevice device;
+
+  @BeforeEach
+  public void setup() {
+    this.protocol = new P30Protocol();
+    this.device = new SimulatedInverterDevice(1);
+  }
+
+  @Test
+  @DisplayName("Common queries are answered with framed responses")
+  public void testResponses() throws Exception {
+    device.setBytesPerRead(3);
+    assertEquals("(PI30", query("QPI"));
+    assertEquals("(L", query("QMOD"));
+    assertTrue(query("QPIGS").startsWith("(240.1 49.9"));
+    assertEquals("(NAK", query("QXYZ"));
+    assertEquals("(ACK", query("PCP02"));
+
+    device.setResponse("QMOD", "(B");
+    assertEquals("(B", query("QMOD"));
+    assertEquals(6, device.getCommandsReceived());
+
+    device.write(bytes(bytes("QPI"), bytes(0x00, 0x00, '\r')), 0, 6);
+    assertEquals("(NAK", protocol.read(device, 1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  @DisplayName("Responses are delayed by the configured latency")
+  public void testLatency() throws Exception {
+    device.setLatency(50, TimeUnit.MILLISECONDS);
+    device.setJitter(10, TimeUnit.MILLISECONDS);
+
+    protocol.write(device, "QPI");
+    assertEquals(0, device.read(new byte[8], 0, 8));
+
+    final long startNanoTime = System.nanoTime();
+    assertEquals("(PI30", protocol.read(device, 1, TimeUnit.SECONDS));
+    assertTrue(System.nanoTime() - startNanoTime >= TimeUnit.MILLISECONDS.toNanos(30));
+  }
+
+  @Test
+  @DisplayName("Corrupted and dropped bytes surface as protocol failures")
+  public void testFaultInjection() throws Exception {
+    device.setCorruptionRate(1);
+    assertThrows(DigestMismatchException.class, new Executable() {
+      public void execute() throws Throwable {
+        query("QPI");
+      }
+    });
+
+    device.setBytesPerRead(1);
+    for (final String response : new String[] {"(9", "(27", "(224"}) {
+      device.setResponse("QTEST", response);
+      assertThrows(DigestMismatchException.class, new Executable() {
+        public void execute() throws Throwable {
+          query("QTEST");
+        }
+      });
+      assertEquals(0, device.read(new byte[8], 0, 8));
+    }
+
+    device.setCorruptionRate(0);
+    device.setDropRate(1);
+    assertThrows(TimeoutException.class, new Executable() {
+      public void execute() throws Throwable {
+        query("QPI");
+      }
+    });
+
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      public void execute() throws Throwable {
+        device.setDropRate(1.5);
+      }
+    });
+  }
+
+  private String query(final String command) throws Exception {
+    protocol.write(device, command);
+    return protocol.read(device, 100, TimeUnit.MILLISECONDS);
+  }
+
+}
@@ -0,0 +1,233 @@
+package com.github.voltronic.inverter.device;
+
+import com.github.voltronic.inverter.CommandTestDevice;
+import com.github.voltronic.inverter.Device;
+import com.github.voltronic.inverter.exception.DigestMismatchException;
+import com.github.voltronic.inverter.exception.TimeoutException;
+import com.github.voltronic.inverter.protocol.BatchResult;
+import com.github.voltronic.inverter.protocol.P30Protocol;
+import com.github.voltronic.inverter.protocol.RetryPolicy;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WatchdogDeviceTest {
+
+  private P30Protocol protocol;
+
+  @BeforeEach
+  public void setup() {
+    this.protocol = new P30Protocol();
+  }
+
+  @Test
+  @DisplayName("A read blocking in the device is interrupted at the deadline")
+  public void testInterruptBlockingRead() throws Exception {
+    final WatchdogDevice device = new WatchdogDevice(new BlockingDevice(true), false);
+
+    final long startNanoTime = System.nanoTime();
+    assertThrows(TimeoutException.class, new Executable() {
+      public void execute() throws Throwable {
+        protocol.read(device, 100, TimeUnit.MILLISECONDS);
+      }
+    });
+
+    assertTrue(System.nanoTime() - startNanoTime < TimeUnit.SECONDS.toNanos(5));
+    assertFalse(Thread.currentThread().isInterrupted());
+  }
+
+  @Test
+  @DisplayName("A device ignoring interrupts is closed at the deadline")
+  public void testCloseOnTimeout() throws Exception {
+    final BlockingDevice blocking = new BlockingDevice(false);
+    final WatchdogDevice device = new WatchdogDevice(blocking, true);
+
+    assertThrows(TimeoutException.class, new Executable() {
+      public void execute() throws Throwable {
+        protocol.read(device, 100, TimeUnit.MILLISECONDS);
+      }
+    });
+
+    assertEquals(0, blocking.closed.getCount());
+    assertFalse(Thread.currentThread().isInterrupted());
+  }
+
+  @Test
+  @DisplayName("The deadline of a query covers a blocking write")
+  public void testQueryDeadlineCoversWrite() throws Exception {
+    final WatchdogDevice device = new WatchdogDevice(new BlockingDevice(true), false);
+
+    final long startNanoTime = System.nanoTime();
+    assertThrows(TimeoutException.class, new Executable() {
+      public void execute() throws Throwable {
+        protocol.newSession(device).query("QPI", 100, TimeUnit.MILLISECONDS);
+      }
+    });
+
+    assertTrue(System.nanoTime() - startNanoTime < TimeUnit.SECONDS.toNanos(5));
+  }
+
+  @Test
+  @DisplayName("Input discarded after a failed batch command is read until the deadline")
+  public void testExecuteDiscardDeadline() throws Exception {
+    final BlockingDevice blocking = new BlockingDevice(true);
+    blocking.reply = "(PI30AB\r".getBytes("US-ASCII");
+    final WatchdogDevice device = new WatchdogDevice(blocking, false);
+
+    final long startNanoTime = System.nanoTime();
+    final BatchResult result = protocol.newSession(device).execute(
+        Arrays.asList("QPI", "QPI"), 200, TimeUnit.MILLISECONDS);
+
+    assertTrue(System.nanoTime() - startNanoTime < TimeUnit.SECONDS.toNanos(5));
+    assertTrue(result.getFailure(0) instanceof DigestMismatchException);
+    assertTrue(result.getFailure(1) instanceof TimeoutException);
+    assertFalse(Thread.currentThread().isInterrupted());
+  }
+
+  @Test
+  @DisplayName("The resync between retried attempts ends at the deadline")
+  public void testRetryResyncDeadline() throws Exception {
+    final BlockingDevice blocking = new BlockingDevice(true);
+    blocking.reply = "(PI30AB\r".getBytes("US-ASCII");
+    final WatchdogDevice device = new WatchdogDevice(blocking, false);
+
+    final long startNanoTime = System.nanoTime();
+    assertThrows(DigestMismatchException.class, new Executable() {
+      public void execute() throws Throwable {
+        protocol.newSession(device).query("QPI", RetryPolicy.builder()
+            .setDeadline(200, TimeUnit.MILLISECONDS)
+            .build());
+      }
+    });
+
+    assertTrue(System.nanoTime() - startNanoTime < TimeUnit.SECONDS.toNanos(5));
+    assertFalse(Thread.currentThread().isInterrupted());
+  }
+
+  @Test
+  @DisplayName("Completed reads and writes are not interrupted afterwards")
+  public void testNoLateInterrupt() throws Exception {
+    final CommandTestDevice commandDevice = new CommandTestDevice();
+    commandDevice.setResponse("QPI", "(PI30");
+    final WatchdogDevice device = new WatchdogDevice(commandDevice, true);
+
+    assertEquals("(PI30", protocol.newSession(device).query("QPI", 50, TimeUnit.MILLISECONDS));
+    Thread.sleep(150);
+    assertFalse(Thread.interrupted());
+    assertEquals(1, commandDevice.getCommands().size());
+  }
+
+  @Test
+  @DisplayName("Reads until the same deadline share one watchdog")
+  public void testWatchPerDeadline() throws Exception {
+    final AtomicInteger scheduled = new AtomicInteger();
+    final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1) {
+      public ScheduledFuture<?> schedule(
+          final Runnable command,
+          final long delay,
+          final TimeUnit unit) {
+
+        scheduled.incrementAndGet();
+        return super.schedule(command, delay, unit);
+      }
+    };
+
+    try {
+      final SimulatedInverterDevice simulated = new SimulatedInverterDevice(1);
+      simulated.setBytesPerRead(1);
+      final WatchdogDevice device = new WatchdogDevice(simulated, scheduler, false);
+
+      protocol.write(simulated, "QPI");
+      assertEquals("(PI30", protocol.read(device, 1, TimeUnit.SECONDS));
+      assertEquals(1, scheduled.get());
+
+      Thread.sleep(50);
+      protocol.write(simulated, "QPI");
+      assertEquals("(PI30", protocol.read(device, 1, TimeUnit.SECONDS));
+      assertEquals(2, scheduled.get());
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  @Test
+  @DisplayName("Interrupts not caused by the watchdog are kept")
+  public void testForeignInterruptKept() throws Exception {
+    final WatchdogDevice device = new WatchdogDevice(new BlockingDevice(false), true);
+
+    Thread.currentThread().interrupt();
+    try {
+      device.read(new byte[8], 0, 8, 100, TimeUnit.MILLISECONDS);
+      fail("read returned");
+    } catch (final TimeoutException e) {
+      // Expected
+    }
+
+    assertTrue(Thread.interrupted());
+  }
+
+  private static final class BlockingDevice implements Device {
+
+    private final boolean interruptible;
+    private final CountDownLatch closed = new CountDownLatch(1);
+    // When set, commands are written at once and answered with this response, anything else blocks
+    private byte[] reply;
+    private boolean replyPending;
+
+    private BlockingDevice(final boolean interruptible) {
+      this.interruptible = interruptible;
+    }
+
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      if (this.replyPending) {
+        this.replyPending = false;
+        System.arraycopy(this.reply, 0, b, off, this.reply.length);
+        return this.reply.length;
+      }
+
+      this.block();
+      return 0;
+    }
+
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      if (this.reply != null) {
+        this.replyPending = len > 1;
+        return;
+      }
+
+      this.block();
+    }
+
+    public void close() {
+      this.closed.countDown();
+    }
+
+    private void block() throws IOException {
+      final long endNanoTime = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (System.nanoTime() < endNanoTime) {
+        try {
+          if (this.closed.await(10, TimeUnit.MILLISECONDS)) {
+            throw new IOException("Device closed");
+          }
+        } catch (final InterruptedException e) {
+          if (this.interruptible) {
+            throw new InterruptedIOException();
+          }
+        }
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,72 @@
+package com.github.voltronic.inverter.digest;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import static com.github.voltronic.inverter.ByteUtil.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class V1VoltronicCrcTest {
+
+  @Test
+  @DisplayName("CRC matches the message digest for heap and direct buffers")
+  public void testMatchesMessageDigest() {
+    final Random random = new Random(42);
+    for (int length = 0; length < 200; ++length) {
+      final byte[] data = new byte[length + 3];
+      random.nextBytes(data);
+
+      final V1VoltronicMessageDigest digest = new V1VoltronicMessageDigest();
+      digest.update(data, 3, length);
+      final byte[] expected = digest.digest();
+
+      final byte[] actual = new byte[V1VoltronicCrc.LENGTH];
+      V1VoltronicCrc.write(V1VoltronicCrc.calculate(data, 3, length), actual, 0);
+      assertArrayEquals(expected, actual);
+
+      final ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+      direct.put(data).position(3);
+      assertEquals(V1VoltronicCrc.calculate(data, 3, length), V1VoltronicCrc.calculate(direct));
+      assertEquals(3, direct.position());
+    }
+  }
+
+  @Test
+  @DisplayName("Trailing CRC is verified in place")
+  public void testVerify() {
+    final byte[] frame = bytes(bytes("(PI30"), bytes(0x9A, 0x0B));
+    assertTrue(V1VoltronicCrc.verify(frame, 0, frame.length));
+    assertTrue(V1VoltronicCrc.verify(ByteBuffer.wrap(frame), 0, frame.length));
+
+    final ByteBuffer direct = ByteBuffer.allocateDirect(frame.length + 1);
+    direct.put((byte) 'x').put(frame);
+    assertTrue(V1VoltronicCrc.verify(direct, 1, frame.length));
+
+    frame[1] = 'Q';
+    assertFalse(V1VoltronicCrc.verify(frame, 0, frame.length));
+
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      public void execute() throws Throwable {
+        V1VoltronicCrc.verify(new byte[1], 0, 1);
+      }
+    });
+  }
+
+  @Test
+  @DisplayName("Reserved bytes are incremented when written")
+  public void testReservedBytes() {
+    final byte[] bytes = new byte[V1VoltronicCrc.LENGTH];
+    V1VoltronicCrc.write(0x0A28, bytes, 0);
+    assertArrayEquals(bytes(0x0B, 0x29), bytes);
+
+    final ByteBuffer buffer = ByteBuffer.allocate(3);
+    V1VoltronicCrc.put(0x0D01, buffer, 1);
+    assertEquals(0x0E, buffer.get(1));
+    assertEquals(0x01, buffer.get(2));
+    assertEquals(0, buffer.position());
+  }
+
+}
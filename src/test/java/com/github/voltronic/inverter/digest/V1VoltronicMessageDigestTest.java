@@ -1,5 +1,6 @@
 package com.github.voltronic.inverter.digest;
 
+import com.github.voltronic.inverter.digest.V1VoltronicMessageDigest.CrcStrategy;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.security.MessageDigest;
@@ -7,6 +8,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Random;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -127,6 +129,73 @@ public class V1VoltronicMessageDigestTest {
     assertArrayEquals(bytes(0xBE, 0xAC), md.digest());
   }
 
+  @Test
+  @DisplayName("All CRC strategies produce identical digests")
+  public void testStrategiesProduceIdenticalDigests() {
+    final CrcStrategy[] strategies = CrcStrategy.values();
+    final Random random = new Random(0x17AD);
+
+    for (int length = 0; length <= 300; ++length) {
+      final byte[] input = new byte[length];
+      random.nextBytes(input);
+      final int split = (length == 0) ? 0 : random.nextInt(length);
+
+      final MessageDigest reference = new V1VoltronicMessageDigest(CrcStrategy.HALF_BYTE);
+      for (final byte b : input) {
+        reference.update(b);
+      }
+      final byte[] expected = reference.digest();
+
+      for (final CrcStrategy strategy : strategies) {
+        final MessageDigest digest = new V1VoltronicMessageDigest(strategy);
+        digest.update(input, 0, split);
+        digest.update(input, split, length - split);
+        assertArrayEquals(expected, digest.digest(), strategy + " length " + length);
+
+        final ByteBuffer direct = ByteBuffer.allocateDirect(length);
+        direct.put(input).flip();
+        final MessageDigest directDigest = new V1VoltronicMessageDigest(strategy);
+        directDigest.update(direct);
+        assertEquals(length, direct.position());
+        assertArrayEquals(expected, directDigest.digest(), strategy + " direct length " + length);
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Test known inputs for correctness with every CRC strategy")
+  public void testKnownInputsAllStrategies() {
+    for (final CrcStrategy strategy : CrcStrategy.values()) {
+      md = new V1VoltronicMessageDigest(strategy);
+      assertEquals(strategy, ((V1VoltronicMessageDigest) md).getStrategy());
+      testKnownInputs();
+    }
+  }
+
+  @Test
+  @DisplayName("Bytes with the high bit set are digested")
+  public void testHighBitBytes() {
+    final byte[] highBytes = new byte[32];
+    for (int index = 0; index < highBytes.length; ++index) {
+      highBytes[index] = (byte) (0x80 + index * 4);
+    }
+
+    for (final CrcStrategy strategy : CrcStrategy.values()) {
+      md = new V1VoltronicMessageDigest(strategy);
+      md.update(bytes(0x80, 0xFF, 0xB7));
+      assertArrayEquals(bytes(0xEF, 0x99), md.digest(), strategy.toString());
+
+      // CRC-16/XMODEM 0x2877, the reserved high byte 0x28 is incremented
+      md = new V1VoltronicMessageDigest(strategy);
+      md.update(bytes(0x80, 0x9B, 0xB7));
+      assertArrayEquals(bytes(0x29, 0x77), md.digest(), strategy.toString());
+
+      md = new V1VoltronicMessageDigest(strategy);
+      md.update(highBytes);
+      assertArrayEquals(bytes(0x34, 0x3E), md.digest(), strategy.toString());
+    }
+  }
+
   private byte[] writeCrcBytes(final int crc) {
     final byte[] bytes = new byte[2];
     Arrays.fill(bytes, (byte) 0);
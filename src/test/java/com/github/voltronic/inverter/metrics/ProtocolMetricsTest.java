@@ -0,0 +1,146 @@
+package com.github.voltronic.inverter.metrics;
+
+import com.github.voltronic.inverter.CommandTestDevice;
+import com.github.voltronic.inverter.IOTestDevice;
+import com.github.voltronic.inverter.exception.TimeoutException;
+import com.github.voltronic.inverter.protocol.P30Protocol;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import static com.github.voltronic.inverter.ByteUtil.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProtocolMetricsTest {
+
+  private P30Protocol protocol;
+  private ProtocolMetrics metrics;
+  private IOTestDevice device;
+
+  @BeforeEach
+  public void setup() {
+    this.protocol = new P30Protocol();
+    this.metrics = new ProtocolMetrics();
+    this.protocol.setProtocolListener(this.metrics);
+    this.device = new IOTestDevice();
+  }
+
+  @Test
+  @DisplayName("Reads are attributed to the command last written to the device")
+  public void testReadsAttributedToLastCommand() throws Exception {
+    device.setInput(CommandTestDevice.frame("(PI30"));
+    device.setCharsPerRead(3);
+
+    protocol.write(device, "QPI");
+    assertEquals("(PI30", protocol.read(device, 1, TimeUnit.SECONDS));
+
+    final CommandMetrics qpi = metrics.getMetrics(device, "QPI");
+    assertEquals(6, qpi.getBytesWritten());
+    assertEquals(1, qpi.getWriteLatency().getCount());
+    assertEquals(8, qpi.getBytesRead());
+    assertEquals(1, qpi.getReadLatency().getCount());
+    assertEquals(3, qpi.getReads());
+    assertEquals(3.0, qpi.getReadsPerFrame());
+    assertEquals(1, metrics.getMetrics(device).size());
+  }
+
+  @Test
+  @DisplayName("Failures are counted by type")
+  public void testFailuresCounted() throws Exception {
+    protocol.write(device, protocol.prepare("QPIGS"));
+    assertThrows(TimeoutException.class, new Executable() {
+      public void execute() throws Throwable {
+        protocol.read(device, ByteBuffer.allocate(64), 0, TimeUnit.MILLISECONDS);
+      }
+    });
+
+    device.setInput(bytes(bytes("(PI30"), bytes(0x00, 0x00, '\r')));
+    assertThrows(Exception.class, new Executable() {
+      public void execute() throws Throwable {
+        protocol.read(device, 1, TimeUnit.SECONDS);
+      }
+    });
+
+    final CommandMetrics qpigs = metrics.getMetrics(device, "QPIGS");
+    assertEquals(1, qpigs.getTimeouts());
+    assertEquals(1, qpigs.getDigestMismatches());
+    assertEquals(0, qpigs.getReadLatency().getCount());
+    assertEquals(0.0, qpigs.getReadsPerFrame());
+  }
+
+  @Test
+  @DisplayName("Reads before any write use the unknown command")
+  public void testUnknownCommand() throws Exception {
+    device.setInput(CommandTestDevice.frame("(PI30"));
+    protocol.read(device, 1, TimeUnit.SECONDS);
+
+    assertEquals(1,
+        metrics.getMetrics(device, ProtocolMetrics.UNKNOWN_COMMAND).getReadLatency().getCount());
+    metrics.remove(device);
+    assertTrue(metrics.getMetrics(device).isEmpty());
+  }
+
+  @Test
+  @DisplayName("Responses read incrementally are reported once complete")
+  public void testReadAvailable() throws Exception {
+    final byte[] frame = CommandTestDevice.frame("(PI30");
+    device.setCharsPerRead(3);
+    protocol.write(device, "QPI");
+
+    final ByteBuffer buffer = ByteBuffer.allocate(64);
+    device.setInput(frame, 0, 4);
+    assertEquals(-1, protocol.readAvailable(device, buffer));
+    assertEquals(0, metrics.getMetrics(device, "QPI").getReadLatency().getCount());
+    device.setInput(frame, 4, frame.length - 4);
+    assertEquals(5, protocol.readAvailable(device, buffer));
+
+    final CommandMetrics qpi = metrics.getMetrics(device, "QPI");
+    assertEquals(1, qpi.getReadLatency().getCount());
+    assertEquals(8, qpi.getBytesRead());
+  }
+
+  @Test
+  @DisplayName("Setter arguments share a key and the number of keys is capped")
+  public void testCommandKeys() throws Exception {
+    assertEquals("QPGS0", ProtocolMetrics.commandKey("QPGS0"));
+    assertEquals("PBCV", ProtocolMetrics.commandKey("PBCV44.0"));
+    assertEquals("MUCHGC", ProtocolMetrics.commandKey("MUCHGC030"));
+    assertEquals("PE", ProtocolMetrics.commandKey("PEabc"));
+
+    final ProtocolMetrics capped = new ProtocolMetrics(2);
+    capped.onWrite(device, "PBCV44.0", 11, 1);
+    capped.onWrite(device, "PBCV48.0", 11, 1);
+    capped.onWrite(device, "QPIGS", 8, 1);
+    capped.onWrite(device, "QPIRI", 8, 1);
+    capped.onWrite(device, "QMOD", 7, 1);
+
+    assertEquals(2, capped.getMetrics(device, "PBCV").getWriteLatency().getCount());
+    assertEquals(1, capped.getMetrics(device, "QPIGS").getWriteLatency().getCount());
+    assertNull(capped.getMetrics(device, "QPIRI"));
+    assertEquals(2,
+        capped.getMetrics(device, ProtocolMetrics.OTHER_COMMAND).getWriteLatency().getCount());
+  }
+
+  @Test
+  @DisplayName("Histogram percentiles are reported as power of two bucket bounds")
+  public void testHistogramPercentiles() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getPercentileNanos(50));
+
+    for (int index = 0; index < 99; ++index) {
+      histogram.record(100);
+    }
+    histogram.record(5000);
+
+    assertEquals(100, histogram.getCount());
+    assertEquals(5000, histogram.getMaximumNanos());
+    assertEquals(149, histogram.getMean(TimeUnit.NANOSECONDS));
+    assertEquals(127, histogram.getPercentileNanos(50));
+    assertEquals(127, histogram.getPercentileNanos(99));
+    assertEquals(8191, histogram.getPercentileNanos(100));
+  }
+
+}
@@ -0,0 +1,172 @@
+package com.github.voltronic.inverter.protocol;
+
+import com.github.voltronic.inverter.CommandTestDevice;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CapabilityDetectorTest {
+
+  private File cacheFile;
+  private P30Protocol protocol;
+
+  @BeforeEach
+  public void setup() throws IOException {
+    this.cacheFile = File.createTempFile("capabilities", ".properties");
+    this.protocol = new P30Protocol();
+  }
+
+  @AfterEach
+  public void teardown() {
+    this.cacheFile.delete();
+  }
+
+  private static CommandTestDevice device(final String serialNumber) {
+    final CommandTestDevice device = new CommandTestDevice();
+    device.setResponse("QID", "(" + serialNumber);
+    device.setResponse("QPI", "(PI30");
+    device.setResponse("QMN", "(MKS2-5000");
+    device.setResponse("QVFW", "(VERFW:00072.70");
+    device.setResponse("QPIGS", "(240.1 49.9");
+    device.setResponse("QMOD", "(L");
+    return device;
+  }
+
+  private CapabilityDetector detector() throws IOException {
+    final CapabilityDetector detector = new CapabilityDetector(protocol, cacheFile);
+    detector.setProbeCommands(Arrays.asList("QPIGS", "QMOD", "QPIGS2"));
+    detector.setTimeout(100, TimeUnit.MILLISECONDS);
+    return detector;
+  }
+
+  @Test
+  @DisplayName("Commands answered with NAK are not supported")
+  public void testDetect() throws Exception {
+    final DeviceCapabilities capabilities = detector().detect(device("92931701100510"));
+
+    assertEquals("92931701100510", capabilities.getSerialNumber());
+    assertEquals("PI30", capabilities.getProtocolId());
+    assertEquals("MKS2-5000", capabilities.getModel());
+    assertEquals("VERFW:00072.70", capabilities.getFirmwareVersion());
+    assertTrue(capabilities.isSupported("QPIGS"));
+    assertTrue(capabilities.isSupported("QMOD"));
+    assertFalse(capabilities.isSupported("QPIGS2"));
+  }
+
+  @Test
+  @DisplayName("Known serial numbers are not probed again, also after a restart")
+  public void testCachedCapabilities() throws Exception {
+    detector().detect(device("1"));
+
+    final CommandTestDevice device = device("1");
+    final DeviceCapabilities capabilities = detector().detect(device);
+    assertEquals(Arrays.asList("QID"), device.getCommands());
+    assertEquals("PI30", capabilities.getProtocolId());
+    assertTrue(capabilities.isSupported("QMOD"));
+    assertFalse(capabilities.isSupported("QPIGS2"));
+
+    final CapabilityDetector detector = detector();
+    detector.invalidate("1");
+    assertNull(detector.getCapabilities("1"));
+    assertNull(detector().getCapabilities("1"));
+  }
+
+  @Test
+  @DisplayName("Devices without a serial number are probed every time")
+  public void testNoSerialNumber() throws Exception {
+    final CommandTestDevice device = device("1");
+    device.setResponse("QID", "(NAK");
+
+    final CapabilityDetector detector = detector();
+    assertNull(detector.detect(device).getSerialNumber());
+    detector.detect(device);
+    assertEquals(14, device.getCommands().size());
+  }
+
+  @Test
+  @DisplayName("Late responses are discarded and detections with timeouts are not remembered")
+  public void testLateResponse() throws Exception {
+    final CommandTestDevice device = device("1");
+    device.setResponseDelay("QPIGS", 150, TimeUnit.MILLISECONDS);
+    device.setResponseDelay("QPIGS2", 100, TimeUnit.MILLISECONDS);
+
+    final CapabilityDetector detector = detector();
+    final DeviceCapabilities capabilities = detector.detect(device);
+    assertFalse(capabilities.isSupported("QPIGS"));
+    assertTrue(capabilities.isSupported("QMOD"));
+    assertFalse(capabilities.isSupported("QPIGS2"));
+    assertNull(detector.getCapabilities("1"));
+    assertNull(detector().getCapabilities("1"));
+  }
+
+  @Test
+  @DisplayName("Devices are detected concurrently")
+  public void testDetectAll() throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final CapabilityDetector detector = detector();
+      final DetectionBatch batch = detector.detectAll(
+          Arrays.asList(device("1"), device("2"), device("3")), executor);
+
+      assertEquals(3, batch.getFutures().size());
+      for (final Future<DeviceCapabilities> future : batch.getFutures().values()) {
+        assertEquals("PI30", future.get().getProtocolId());
+      }
+      assertNull(batch.getSave().get());
+
+      assertNotNull(detector().getCapabilities("1"));
+      assertNotNull(detector().getCapabilities("2"));
+      assertNotNull(detector().getCapabilities("3"));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  @DisplayName("Rejected devices and cache write failures are reported separately")
+  public void testDetectAllFailures() throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      final CommandTestDevice device = device("1");
+      final DetectionBatch batch = new CapabilityDetector(
+          protocol, new File(cacheFile, "missing.properties")).detectAll(
+              Arrays.asList(device), executor);
+
+      assertEquals("PI30", batch.getFuture(device).get().getProtocolId());
+      final ExecutionException e = assertThrows(ExecutionException.class, new Executable() {
+        public void execute() throws Throwable {
+          batch.getSave().get(5, TimeUnit.SECONDS);
+        }
+      });
+      assertTrue(e.getCause() instanceof IOException);
+    } finally {
+      executor.shutdown();
+    }
+
+    final DetectionBatch rejected = detector().detectAll(
+        Arrays.asList(device("2"), device("3")), executor);
+    for (final Future<DeviceCapabilities> future : rejected.getFutures().values()) {
+      try {
+        future.get();
+        fail("detection was not rejected");
+      } catch (final ExecutionException e) {
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+      }
+    }
+    assertNull(rejected.getSave().get(5, TimeUnit.SECONDS));
+  }
+
+}
@@ -0,0 +1,104 @@
+package com.github.voltronic.inverter.protocol;
+
+import com.github.voltronic.inverter.CommandTestDevice;
+import com.github.voltronic.inverter.IOTestDevice;
+import com.github.voltronic.inverter.exception.BufferOverflowException;
+import com.github.voltronic.inverter.exception.DigestMismatchException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static com.github.voltronic.inverter.ByteUtil.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrameDecoderTest {
+
+  private final List<String> frames = new ArrayList<String>();
+  private final List<IOException> errors = new ArrayList<IOException>();
+  private P30Protocol protocol;
+  private FrameDecoder decoder;
+
+  @BeforeEach
+  public void setup() {
+    this.protocol = new P30Protocol();
+    this.protocol.setMaximumBufferSize(16);
+    this.decoder = this.protocol.newFrameDecoder(new FrameListener() {
+      public void onFrame(final ByteBuffer data) {
+        frames.add(Charset.forName("US-ASCII").decode(data).toString());
+      }
+
+      public void onFrameError(final IOException cause) {
+        errors.add(cause);
+      }
+    });
+  }
+
+  @Test
+  @DisplayName("Back to back responses in one chunk are all decoded")
+  public void testBackToBackResponses() throws Exception {
+    final byte[] input = bytes(CommandTestDevice.frame("(PI30"), CommandTestDevice.frame("(B"),
+        bytes("(PI"));
+
+    assertEquals(2, decoder.decode(input, 0, input.length));
+    assertEquals(3, decoder.getBufferedBytes());
+    assertEquals(0, errors.size());
+
+    final byte[] rest = bytes(bytes("30"), bytes(0x9A, 0x0B, '\r'));
+    assertEquals(1, decoder.decode(ByteBuffer.wrap(rest)));
+    assertEquals(0, decoder.getBufferedBytes());
+    assertEquals("[(PI30, (B, (PI30]", frames.toString());
+  }
+
+  @Test
+  @DisplayName("Responses split at every offset are decoded")
+  public void testEverySplit() throws Exception {
+    final byte[] input = bytes(CommandTestDevice.frame("(PI30"), CommandTestDevice.frame("(L"));
+    for (int split = 0; split <= input.length; ++split) {
+      final ByteBuffer direct = ByteBuffer.allocateDirect(input.length - split);
+      direct.put(input, split, input.length - split).flip();
+
+      decoder.decode(input, 0, split);
+      decoder.decode(direct);
+    }
+
+    assertEquals(2 * (input.length + 1), frames.size());
+    assertEquals(0, errors.size());
+  }
+
+  @Test
+  @DisplayName("Invalid responses are reported and decoding continues")
+  public void testRecoversAfterErrors() throws Exception {
+    final byte[] input = bytes(
+        bytes("(PI30"), bytes(0x00, 0x00, '\r'),
+        bytes("01234567890123456789"), bytes('\r'),
+        CommandTestDevice.frame("(S"));
+
+    assertEquals(1, decoder.decode(input, 0, input.length));
+    assertEquals("[(S]", frames.toString());
+    assertEquals(2, errors.size());
+    assertTrue(errors.get(0) instanceof DigestMismatchException);
+    assertTrue(errors.get(1) instanceof BufferOverflowException);
+  }
+
+  @Test
+  @DisplayName("Available device input is decoded without dropping trailing bytes")
+  public void testReadAvailable() throws Exception {
+    final IOTestDevice device = new IOTestDevice();
+    device.setCharsPerRead(5);
+    device.setInput(bytes(CommandTestDevice.frame("(PI30"), CommandTestDevice.frame("(PI30")));
+
+    assertEquals(2, decoder.readAvailable(device));
+    assertEquals(0, decoder.readAvailable(device));
+    assertEquals("[(PI30, (PI30]", frames.toString());
+
+    decoder.decode(bytes("(PI"), 0, 3);
+    decoder.reset();
+    assertEquals(0, decoder.getBufferedBytes());
+  }
+
+}
@@ -0,0 +1,12 @@
+package com.github.voltronic.inverter.protocol;
+
+/**
+ * {@link P30ProtocolStressTest} with millions of frames, excluded from the default test run.
+ */
+public class P30ProtocolStressIntegrationTest extends P30ProtocolStressTest {
+
+  protected int getFrameCount() {
+    return 2000000;
+  }
+
+}
@@ -0,0 +1,195 @@
+package com.github.voltronic.inverter.protocol;
+
+import com.github.voltronic.inverter.CommandTestDevice;
+import com.github.voltronic.inverter.IOTestDevice;
+import com.github.voltronic.inverter.exception.BufferOverflowException;
+import com.github.voltronic.inverter.response.AsciiResponse;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives many randomly fragmented frames through {@link P30Protocol}, checking every response and
+ * the bytes allocated by the reading thread per frame.
+ *
+ * <p>{@link P30ProtocolStressIntegrationTest} runs the same tests with millions of frames.
+ */
+public class P30ProtocolStressTest {
+
+  private static final int FRAME_POOL_SIZE = 256;
+  private static final int MAXIMUM_POOLED_DATA_LENGTH = 160;
+  private static final int WARMUP_FRAMES = 2000;
+  private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+  private P30Protocol protocol;
+  private IOTestDevice device;
+  private Random random;
+  private byte[][] data;
+  private byte[][] frames;
+
+  protected int getFrameCount() {
+    return 20000;
+  }
+
+  @BeforeEach
+  public void setup() {
+    this.protocol = new P30Protocol();
+    this.device = new IOTestDevice();
+    this.random = new Random(0x5EEDL);
+    this.data = new byte[FRAME_POOL_SIZE][];
+    this.frames = new byte[FRAME_POOL_SIZE][];
+
+    for (int index = 0; index < FRAME_POOL_SIZE; ++index) {
+      this.data[index] = this.randomData(1 + this.random.nextInt(MAXIMUM_POOLED_DATA_LENGTH));
+      this.frames[index] = CommandTestDevice.frame(new String(this.data[index]));
+    }
+  }
+
+  @Test
+  @DisplayName("Randomly fragmented frames are read correctly without allocating")
+  public void testRandomFragmentation() throws Exception {
+    final ByteBuffer buffer = ByteBuffer.allocate(protocol.getMaximumBufferSize());
+    final int frameCount = this.getFrameCount();
+    long allocatedBytes = 0;
+
+    for (int count = 0; count < WARMUP_FRAMES + frameCount; ++count) {
+      final int index = this.random.nextInt(FRAME_POOL_SIZE);
+      this.feed(this.frames[index]);
+      buffer.clear();
+
+      final long startAllocatedBytes = allocatedBytes();
+      final int length = protocol.read(device, buffer, 1, TimeUnit.SECONDS);
+      final long frameAllocatedBytes = allocatedBytes() - startAllocatedBytes;
+
+      assertEquals(this.data[index].length, length);
+      for (int position = 0; position < length; ++position) {
+        if (buffer.get(position) != this.data[index][position]) {
+          fail("Frame " + count + " differs at " + position);
+        }
+      }
+
+      if (count >= WARMUP_FRAMES) {
+        allocatedBytes += frameAllocatedBytes;
+      }
+    }
+
+    assertTrue(allocatedBytes <= frameCount,
+        "Allocated " + allocatedBytes + " bytes reading " + frameCount + " frames");
+  }
+
+  @Test
+  @DisplayName("ASCII responses allocate only the response copy")
+  public void testReadAsciiAllocation() throws Exception {
+    final int frameCount = this.getFrameCount();
+    long allocatedBytes = 0;
+    long dataBytes = 0;
+
+    for (int count = 0; count < WARMUP_FRAMES + frameCount; ++count) {
+      final int index = this.random.nextInt(FRAME_POOL_SIZE);
+      this.feed(this.frames[index]);
+
+      final long startAllocatedBytes = allocatedBytes();
+      final AsciiResponse response = protocol.readAscii(device, 1, TimeUnit.SECONDS);
+      final long frameAllocatedBytes = allocatedBytes() - startAllocatedBytes;
+
+      assertEquals(this.data[index].length, response.length());
+      assertEquals(this.data[index][0], (byte) response.charAt(0));
+
+      if (count >= WARMUP_FRAMES) {
+        allocatedBytes += frameAllocatedBytes;
+        dataBytes += response.length();
+      }
+    }
+
+    final long overheadBytes = (allocatedBytes - dataBytes) / frameCount;
+    assertTrue(overheadBytes <= 64, "Allocated " + overheadBytes + " bytes per frame over data");
+  }
+
+  @Test
+  @DisplayName("Frames of the maximum size are read one byte at a time")
+  public void testMaximumSizeFrames() throws Exception {
+    final int maximumDataLength = protocol.getMaximumBufferSize() - 3;
+    final ByteBuffer buffer = ByteBuffer.allocate(protocol.getMaximumBufferSize() * 2);
+
+    for (int count = 0; count < 4; ++count) {
+      final byte[] data = this.randomData(maximumDataLength);
+      device.setInput(CommandTestDevice.frame(new String(data)));
+      device.setCharsPerRead(1);
+      buffer.clear();
+
+      assertEquals(maximumDataLength, protocol.read(device, buffer, 1, TimeUnit.SECONDS));
+      buffer.flip();
+      final byte[] actual = new byte[buffer.remaining()];
+      buffer.get(actual);
+      assertArrayEquals(data, actual);
+    }
+
+    device.setInput(CommandTestDevice.frame(new String(this.randomData(maximumDataLength + 1))));
+    device.setCharsPerRead(1);
+    buffer.clear();
+    assertThrows(BufferOverflowException.class, new Executable() {
+      public void execute() throws Throwable {
+        protocol.read(device, buffer, 1, TimeUnit.SECONDS);
+      }
+    });
+  }
+
+  /**
+   * Set {@code frame} as the device input with a chunk size that favours the boundaries around
+   * the digest and end of input bytes.
+   */
+  private void feed(final byte[] frame) {
+    this.device.setInput(frame);
+
+    final int charsPerRead;
+    switch (this.random.nextInt(6)) {
+      case 0:
+        charsPerRead = 1;
+        break;
+      case 1:
+        charsPerRead = Math.max(1, frame.length - 1);
+        break;
+      case 2:
+        charsPerRead = Math.max(1, frame.length - 2);
+        break;
+      case 3:
+        charsPerRead = -1;
+        break;
+      default:
+        charsPerRead = 1 + this.random.nextInt(frame.length);
+        break;
+    }
+
+    this.device.setCharsPerRead(charsPerRead);
+  }
+
+  private byte[] randomData(final int length) {
+    final byte[] bytes = new byte[length];
+    for (int index = 0; index < length; ++index) {
+      bytes[index] = (byte) (' ' + this.random.nextInt('~' - ' ' + 1));
+    }
+
+    return bytes;
+  }
+
+  private static long allocatedBytes() {
+    Assumptions.assumeTrue(THREAD_BEAN instanceof com.sun.management.ThreadMXBean,
+        "Thread allocation counters are not available");
+
+    final com.sun.management.ThreadMXBean threadBean =
+        (com.sun.management.ThreadMXBean) THREAD_BEAN;
+    Assumptions.assumeTrue(threadBean.isThreadAllocatedMemoryEnabled(),
+        "Thread allocation counters are disabled");
+    return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+}
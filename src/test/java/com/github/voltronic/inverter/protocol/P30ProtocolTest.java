@@ -1,5 +1,6 @@
 package com.github.voltronic.inverter.protocol;
 
+import com.github.voltronic.inverter.Device;
 import com.github.voltronic.inverter.IOTestDevice;
 import com.github.voltronic.inverter.MessageDigestSupplier;
 import com.github.voltronic.inverter.Protocol;
@@ -9,6 +10,7 @@ import com.github.voltronic.inverter.exception.DigestMismatchException;
 import com.github.voltronic.inverter.exception.TimeoutException;
 import com.github.voltronic.inverter.exception.TruncatedDataException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.security.MessageDigest;
 import java.util.concurrent.TimeUnit;
@@ -185,4 +187,322 @@ public class P30ProtocolTest {
     assertEquals("Limit of " + (inputBytes.length - 1) + " bytes reached", e.getMessage());
   }
 
+  @Test
+  @DisplayName("Reads response data into a caller supplied buffer")
+  public void testReadIntoBuffer() throws Exception {
+    device.setCharsPerRead(3);
+    device.setInput(bytes(bytes("Hello"), md.digest(), bytes(END_OF_INPUT)));
+
+    final ByteBuffer buffer = ByteBuffer.allocate(32);
+    buffer.position(2);
+
+    assertEquals(5, configurableProtocol.read(device, buffer, 255, TimeUnit.DAYS));
+    assertEquals(7, buffer.position());
+    assertArrayEquals(bytes("Hello"), md.getUpdateBytes());
+
+    final byte[] data = new byte[5];
+    buffer.flip().position(2);
+    buffer.get(data);
+    assertArrayEquals(bytes("Hello"), data);
+  }
+
+  @Test
+  @DisplayName("Reads response data into a direct buffer")
+  public void testReadIntoDirectBuffer() throws Exception {
+    device.setInput(bytes(bytes("Hello"), md.digest(), bytes(END_OF_INPUT)));
+
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(32);
+    assertEquals(5, configurableProtocol.read(device, buffer, 255, TimeUnit.DAYS));
+    assertEquals(5, buffer.position());
+    assertEquals(32, buffer.limit());
+    assertArrayEquals(bytes("Hello"), md.getUpdateBytes());
+  }
+
+  @Test
+  @DisplayName("Reads and verifies known response with the default digest into a reused buffer")
+  public void testReadIntoBufferDefaultDigest() throws Exception {
+    final P30Protocol defaultProtocol = new P30Protocol();
+    final ByteBuffer buffer = ByteBuffer.allocate(16);
+
+    for (int count = 0; count < 3; ++count) {
+      device.setInput(bytes(bytes("(PI30"), bytes(0x9A, 0x0B), bytes(END_OF_INPUT)));
+      buffer.clear();
+
+      assertEquals(5, defaultProtocol.read(device, buffer, 255, TimeUnit.DAYS));
+      assertEquals("(PI30", new String(buffer.array(), 0, buffer.position(), "US-ASCII"));
+    }
+
+    device.setInput(bytes(bytes("(PI31"), bytes(0x9A, 0x0B), bytes(END_OF_INPUT)));
+    buffer.clear();
+    assertThrows(DigestMismatchException.class, new Executable() {
+      public void execute() throws Throwable {
+        defaultProtocol.read(device, buffer, 255, TimeUnit.DAYS);
+      }
+    });
+  }
+
+  @Test
+  @DisplayName("Buffer read throws DigestMismatchException when the digest does not match")
+  public void testReadIntoBufferDigestMismatch() {
+    final byte[] receivedDigest = bytes(0x09, 0x08, 0x07, 0x06);
+    device.setInput(bytes(bytes("Hi"), receivedDigest, bytes(END_OF_INPUT)));
+
+    final DigestMismatchException e = assertThrows(DigestMismatchException.class, new Executable() {
+      public void execute() throws Throwable {
+        configurableProtocol.read(device, ByteBuffer.allocate(32), 255, TimeUnit.DAYS);
+      }
+    });
+
+    assertArrayEquals(receivedDigest, e.getReceivedDigest());
+    assertArrayEquals(bytes(0x01, 0x02, 0x03, 0x04), e.getCalculatedDigest());
+  }
+
+  @Test
+  @DisplayName("Buffer read throws BufferOverflowException when the buffer is too small")
+  public void testReadIntoBufferEnforcesRemaining() {
+    device.setInput(bytes(bytes("Hello"), md.digest(), bytes(END_OF_INPUT)));
+
+    final BufferOverflowException e = assertThrows(BufferOverflowException.class, new Executable() {
+      public void execute() throws Throwable {
+        configurableProtocol.read(device, ByteBuffer.allocate(9), 255, TimeUnit.DAYS);
+      }
+    });
+
+    assertEquals(9, e.getByteLimit());
+  }
+
+  @Test
+  @DisplayName("Buffer read rejects read-only buffers")
+  public void testReadIntoReadOnlyBuffer() {
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      public void execute() throws Throwable {
+        configurableProtocol.read(device, ByteBuffer.allocate(32).asReadOnlyBuffer(), 1, TimeUnit.DAYS);
+      }
+    });
+  }
+
+  @Test
+  @DisplayName("Fragmented responses are read without waiting between reads that returned data")
+  public void testFragmentedReadDoesNotWaitBetweenReads() throws Exception {
+    final String data = "(240.1 49.9 240.1 49.9 0240 0185 004 435 54.00 000 100 0055 0000 000.0 00.00 00000";
+    device.setCharsPerRead(1);
+    device.setInput(bytes(bytes(data), md.digest(), bytes(END_OF_INPUT)));
+    configurableProtocol.setMaximumBufferSize(1024);
+    configurableProtocol.setReadWaitStrategy(ReadWaitStrategies.fixedInterval(50, TimeUnit.MILLISECONDS));
+
+    final long startTime = System.nanoTime();
+    assertEquals(data, protocol.read(device, 255, TimeUnit.DAYS));
+    assertTrue(System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(2));
+  }
+
+  @Test
+  @DisplayName("Configured read wait strategy is used when no data is available")
+  public void testReadWaitStrategyUsedWhenIdle() {
+    final int[] idleReads = new int[1];
+    configurableProtocol.setReadWaitStrategy(new ReadWaitStrategy() {
+      public void await(final int idle, final long remainingNanos) {
+        assertEquals(idleReads[0] + 1, idle);
+        assertTrue(remainingNanos >= 0);
+        idleReads[0] = idle;
+      }
+    });
+
+    assertThrows(TimeoutException.class, new Executable() {
+      public void execute() throws Throwable {
+        protocol.read(device, 10, TimeUnit.MILLISECONDS);
+      }
+    });
+
+    assertTrue(idleReads[0] > 0);
+  }
+
+  @Test
+  @DisplayName("Read wait strategy may not be null")
+  public void testReadWaitStrategyNotNull() {
+    assertThrows(NullPointerException.class, new Executable() {
+      public void execute() throws Throwable {
+        configurableProtocol.setReadWaitStrategy(null);
+      }
+    });
+  }
+
+  @Test
+  @DisplayName("Resync terminates input and discards output until the line is quiet")
+  public void testResyncDiscardsUntilQuiet() throws Exception {
+    device.setCharsPerRead(3);
+    device.setInput(bytes("partial response\r(NAKss\r"));
+
+    final ResyncResult result = configurableProtocol.resync(device, 20, 10000, TimeUnit.MILLISECONDS);
+
+    assertTrue(result.isQuiet());
+    assertEquals(24, result.getBytesDiscarded());
+    assertTrue(result.getElapsed(TimeUnit.MILLISECONDS) >= 20);
+    assertTrue(result.getElapsed(TimeUnit.SECONDS) < 5);
+    assertArrayEquals(bytes(END_OF_INPUT), device.getOutput());
+  }
+
+  @Test
+  @DisplayName("Resync gives up when the device keeps sending data")
+  public void testResyncTimesOutOnNoisyLine() throws Exception {
+    final Device noisyDevice = new Device() {
+      public int read(final byte[] b, final int off, final int len) {
+        b[off] = 0x55;
+        return 1;
+      }
+
+      public void write(final byte[] b, final int off, final int len) {
+      }
+
+      public void close() {
+      }
+    };
+
+    final ResyncResult result = configurableProtocol.resync(noisyDevice, 20, 50, TimeUnit.MILLISECONDS);
+
+    assertFalse(result.isQuiet());
+    assertTrue(result.getBytesDiscarded() > 0);
+    assertTrue(result.getElapsedNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+  }
+
+  @Test
+  @DisplayName("Clear returns as soon as the line is quiet")
+  public void testClearReturnsWhenQuiet() throws Exception {
+    final long startTime = System.nanoTime();
+    configurableProtocol.clear(device);
+
+    assertTrue(System.nanoTime() - startTime < TimeUnit.MILLISECONDS.toNanos(1000));
+    assertArrayEquals(bytes(END_OF_INPUT), device.getOutput());
+  }
+
+  @Test
+  @DisplayName("readAvailable accumulates partial responses without waiting")
+  public void testReadAvailable() throws Exception {
+    final ByteBuffer buffer = ByteBuffer.allocate(32);
+    assertEquals(-1, configurableProtocol.readAvailable(device, buffer));
+    assertEquals(0, buffer.position());
+
+    device.setInput(bytes("Hel"));
+    assertEquals(-1, configurableProtocol.readAvailable(device, buffer));
+    assertEquals(3, buffer.position());
+
+    device.setInput(bytes(bytes("lo"), md.digest(), bytes(END_OF_INPUT)));
+    assertEquals(5, configurableProtocol.readAvailable(device, buffer));
+    assertEquals(5, buffer.position());
+    assertArrayEquals(bytes("Hello"), md.getUpdateBytes());
+  }
+
+  @Test
+  @DisplayName("Prepared frames and cached commands write identical bytes")
+  public void testPreparedCommandFrames() throws Exception {
+    final P30Protocol defaultProtocol = new P30Protocol();
+    final byte[] expected = bytes(bytes("QPI"), bytes(0xBE, 0xAC), bytes(END_OF_INPUT));
+
+    final CommandFrame frame = defaultProtocol.prepare("QPI");
+    assertEquals("QPI", frame.getCommand());
+    assertEquals(6, frame.getLength());
+    assertArrayEquals(expected, frame.toByteArray());
+    assertTrue(frame.asByteBuffer().isReadOnly());
+
+    defaultProtocol.write(device, frame);
+    defaultProtocol.write(device, "QPI");
+    defaultProtocol.write(device, "QPI");
+    defaultProtocol.write(device, new StringBuilder("QPI"));
+    assertArrayEquals(bytes(expected, expected, expected, expected), device.getOutput());
+
+    device.reset();
+    defaultProtocol.setCommandCacheSize(0);
+    assertEquals(0, defaultProtocol.getCommandCacheSize());
+    defaultProtocol.write(device, "QPI");
+    assertArrayEquals(expected, device.getOutput());
+  }
+
+  @Test
+  @DisplayName("Command cache size setter enforces limits")
+  public void testCommandCacheSizeEnforcesLimits() {
+    assertEquals(0, configurableProtocol.getCommandCacheSize());
+    configurableProtocol.setCommandCacheSize(0);
+    assertThrows(UnsupportedOperationException.class, new Executable() {
+      public void execute() throws Throwable {
+        configurableProtocol.setCommandCacheSize(1);
+      }
+    });
+
+    final P30Protocol defaultProtocol = new P30Protocol();
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      public void execute() throws Throwable {
+        defaultProtocol.setCommandCacheSize(-1);
+      }
+    });
+    defaultProtocol.setCommandCacheSize(4);
+    assertEquals(4, defaultProtocol.getCommandCacheSize());
+  }
+
+  @Test
+  @DisplayName("Built protocols are immutable")
+  public void testBuilderCreatesImmutableProtocol() throws Exception {
+    final P30Protocol built = P30Protocol.builder()
+        .setMaximumBufferSize(64)
+        .setVerifyDigest(false)
+        .setCommandCacheSize(4)
+        .setReadWaitStrategy(ReadWaitStrategies.blockingRead())
+        .build();
+
+    assertTrue(built.isImmutable());
+    assertFalse(configurableProtocol.isImmutable());
+    assertEquals(64, built.getMaximumBufferSize());
+    assertFalse(built.isVerifyDigest());
+    assertEquals(4, built.getCommandCacheSize());
+
+    assertThrows(UnsupportedOperationException.class, new Executable() {
+      public void execute() throws Throwable {
+        built.setMaximumBufferSize(32);
+      }
+    });
+
+    assertThrows(UnsupportedOperationException.class, new Executable() {
+      public void execute() throws Throwable {
+        built.setVerifyDigest(true);
+      }
+    });
+
+    assertThrows(UnsupportedOperationException.class, new Executable() {
+      public void execute() throws Throwable {
+        P30Protocol.builder().setMessageDigestSupplier(new MessageDigestSupplier() {
+          public MessageDigest get() {
+            return md;
+          }
+        }).setCommandCacheSize(1).build();
+      }
+    });
+
+    built.write(device, "QPI");
+    assertArrayEquals(bytes(bytes("QPI"), bytes(0xBE, 0xAC), bytes(END_OF_INPUT)),
+        device.getOutput());
+  }
+
+  @Test
+  @DisplayName("Sessions read and write their device")
+  public void testSession() throws Exception {
+    final P30Protocol built = P30Protocol.builder().build();
+    final P30Session session = built.newSession(device);
+    assertSame(device, session.getDevice());
+    assertSame(built, session.getProtocol());
+
+    device.setInput(bytes(bytes("(PI30"), bytes(0x9A, 0x0B, END_OF_INPUT)));
+    assertEquals("(PI30", session.query("QPI", 1, TimeUnit.SECONDS));
+    assertArrayEquals(bytes(bytes("QPI"), bytes(0xBE, 0xAC), bytes(END_OF_INPUT)),
+        device.getOutput());
+
+    device.setInput(bytes(bytes("(PI30"), bytes(0x9A, 0x0B, END_OF_INPUT)));
+    final ByteBuffer buffer = ByteBuffer.allocate(16);
+    assertEquals(5, session.read(buffer, 1, TimeUnit.SECONDS));
+    assertEquals(5, buffer.position());
+
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      public void execute() throws Throwable {
+        session.read(-1, TimeUnit.SECONDS);
+      }
+    });
+  }
+
 }
@@ -0,0 +1,143 @@
+package com.github.voltronic.inverter.protocol;
+
+import com.github.voltronic.inverter.CommandTestDevice;
+import com.github.voltronic.inverter.device.SimulatedInverterDevice;
+import com.github.voltronic.inverter.exception.DigestMismatchException;
+import com.github.voltronic.inverter.exception.BufferOverflowException;
+import com.github.voltronic.inverter.exception.TimeoutException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class P30SessionTest {
+
+  private CommandTestDevice device;
+
+  @BeforeEach
+  public void setup() {
+    this.device = new CommandTestDevice();
+    this.device.setResponse("QPIGS", "(240.1 49.9 240.1 49.9 0240 0185 004 435 54.00 000 100");
+    this.device.setResponse("QMOD", "(L");
+    this.device.setResponse("QPIWS", "(00000000000000000000000000000000");
+  }
+
+  @Test
+  @DisplayName("Batches return the responses in command order")
+  public void testBatch() throws Exception {
+    final P30Session session = new P30Protocol().newSession(device);
+    final BatchResult result = session.execute(
+        Arrays.asList("QPIGS", "QMOD", "QPIWS", "QPGS0"), 1, TimeUnit.SECONDS);
+
+    assertTrue(result.isAllSuccessful());
+    assertEquals(4, result.size());
+    assertEquals("QMOD", result.getCommand(1));
+    assertEquals("(L", result.getResponse(1));
+    assertEquals("(NAK", result.getResponse(3));
+    assertEquals(Arrays.asList("QPIGS", "QMOD", "QPIWS", "QPGS0"), device.getCommands());
+  }
+
+  @Test
+  @DisplayName("Failed commands do not stop the batch")
+  public void testBatchContinuesAfterFailure() throws Exception {
+    final P30Session session = P30Protocol.builder()
+        .setMaximumBufferSize(40)
+        .build()
+        .newSession(device);
+
+    final BatchResult result = session.execute(
+        Arrays.asList("QMOD", "QPIGS", "QMOD"), 1, TimeUnit.SECONDS);
+
+    assertFalse(result.isAllSuccessful());
+    assertEquals("(L", result.getResponse(0));
+    assertNull(result.getResponse(1));
+    assertTrue(result.getFailure(1) instanceof BufferOverflowException);
+    assertTrue(result.isSuccessful(2));
+    assertEquals("(L", result.getResponse(2));
+  }
+
+  @Test
+  @DisplayName("Commands after the deadline are not written")
+  public void testBatchDeadline() throws Exception {
+    final BatchResult result = new P30Protocol().newSession(device).execute(
+        Arrays.asList("QMOD", "QPIWS"), 0, TimeUnit.SECONDS);
+
+    assertTrue(result.getFailure(0) instanceof TimeoutException);
+    assertTrue(result.getFailure(1) instanceof TimeoutException);
+    assertTrue(device.getCommands().isEmpty());
+  }
+
+  @Test
+  @DisplayName("Retryable failures are retried after a resync")
+  public void testRetryPolicy() throws Exception {
+    final SimulatedInverterDevice simulated = new SimulatedInverterDevice(7);
+    simulated.setCorruptionRate(0.5);
+    final P30Session session = new P30Protocol().newSession(simulated);
+    final RetryPolicy policy = RetryPolicy.builder()
+        .setMaximumAttempts(20)
+        .setAttemptTimeout(100, TimeUnit.MILLISECONDS)
+        .setResyncQuietTime(1, TimeUnit.MILLISECONDS)
+        .build();
+
+    for (int index = 0; index < 10; ++index) {
+      assertEquals("(PI30", session.query("QPI", policy));
+    }
+
+    assertTrue(simulated.getCommandsReceived() > 10);
+  }
+
+  @Test
+  @DisplayName("Retries stop at the attempt budget and for non-retryable failures")
+  public void testRetryPolicyGivesUp() throws Exception {
+    final SimulatedInverterDevice simulated = new SimulatedInverterDevice(7);
+    simulated.setCorruptionRate(1);
+    final P30Session session = new P30Protocol().newSession(simulated);
+
+    assertThrows(DigestMismatchException.class, new Executable() {
+      public void execute() throws Throwable {
+        session.query("QPI", RetryPolicy.builder()
+            .setMaximumAttempts(3)
+            .setResyncQuietTime(0, TimeUnit.MILLISECONDS)
+            .build());
+      }
+    });
+    assertEquals(3, simulated.getCommandsReceived());
+
+    assertThrows(DigestMismatchException.class, new Executable() {
+      public void execute() throws Throwable {
+        session.query("QPI", RetryPolicy.builder()
+            .clearRetryable()
+            .addRetryable(TimeoutException.class)
+            .build());
+      }
+    });
+    assertEquals(4, simulated.getCommandsReceived());
+  }
+
+  @Test
+  @DisplayName("No attempt is written after a resync used up the deadline")
+  public void testRetryPolicyResyncDeadline() throws Exception {
+    final SimulatedInverterDevice simulated = new SimulatedInverterDevice(7);
+    simulated.setCorruptionRate(1);
+    simulated.setLatency(40, TimeUnit.MILLISECONDS);
+    final P30Session session = new P30Protocol().newSession(simulated);
+
+    assertThrows(DigestMismatchException.class, new Executable() {
+      public void execute() throws Throwable {
+        session.query("QPI", RetryPolicy.builder()
+            .setMaximumAttempts(5)
+            .setDeadline(100, TimeUnit.MILLISECONDS)
+            .setResyncQuietTime(200, TimeUnit.MILLISECONDS)
+            .build());
+      }
+    });
+
+    // The command and the carriage return written by the resync
+    assertEquals(2, simulated.getCommandsReceived());
+  }
+
+}
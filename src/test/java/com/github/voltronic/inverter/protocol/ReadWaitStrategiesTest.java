@@ -0,0 +1,102 @@
+package com.github.voltronic.inverter.protocol;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReadWaitStrategiesTest {
+
+  @AfterEach
+  public void clearInterrupt() {
+    Thread.interrupted();
+  }
+
+  @Test
+  @DisplayName("Factory methods reject invalid arguments")
+  public void testInvalidArguments() {
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      public void execute() throws Throwable {
+        ReadWaitStrategies.fixedInterval(0, TimeUnit.MILLISECONDS);
+      }
+    });
+
+    assertThrows(NullPointerException.class, new Executable() {
+      public void execute() throws Throwable {
+        ReadWaitStrategies.fixedInterval(1, null);
+      }
+    });
+
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      public void execute() throws Throwable {
+        ReadWaitStrategies.spinThenPark(-1, 1, TimeUnit.MILLISECONDS);
+      }
+    });
+
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      public void execute() throws Throwable {
+        ReadWaitStrategies.exponentialBackoff(10, 1, TimeUnit.MILLISECONDS);
+      }
+    });
+  }
+
+  @Test
+  @DisplayName("Waits are capped by the remaining time")
+  public void testWaitCappedByRemaining() throws Exception {
+    final ReadWaitStrategy[] strategies = new ReadWaitStrategy[]{
+        ReadWaitStrategies.fixedInterval(10, TimeUnit.SECONDS),
+        ReadWaitStrategies.spinThenPark(0, 10, TimeUnit.SECONDS),
+        ReadWaitStrategies.exponentialBackoff(10, 20, TimeUnit.SECONDS)
+    };
+
+    for (final ReadWaitStrategy strategy : strategies) {
+      final long startTime = System.nanoTime();
+      strategy.await(Integer.MAX_VALUE, TimeUnit.MILLISECONDS.toNanos(5));
+      strategy.await(1, 0);
+      assertTrue(System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(5));
+    }
+  }
+
+  @Test
+  @DisplayName("Exponential backoff grows up to the maximum wait")
+  public void testExponentialBackoffGrows() throws Exception {
+    final ReadWaitStrategy strategy = ReadWaitStrategies.exponentialBackoff(
+        1, 4, TimeUnit.MILLISECONDS);
+
+    long startTime = System.nanoTime();
+    strategy.await(1, TimeUnit.SECONDS.toNanos(1));
+    final long first = System.nanoTime() - startTime;
+    assertTrue(first >= TimeUnit.MILLISECONDS.toNanos(1));
+
+    startTime = System.nanoTime();
+    strategy.await(40, TimeUnit.SECONDS.toNanos(1));
+    final long capped = System.nanoTime() - startTime;
+    assertTrue(capped >= TimeUnit.MILLISECONDS.toNanos(4));
+    assertTrue(capped < TimeUnit.MILLISECONDS.toNanos(500));
+  }
+
+  @Test
+  @DisplayName("Interrupted threads stop waiting")
+  public void testInterruptedThreadStopsWaiting() {
+    final ReadWaitStrategy[] strategies = new ReadWaitStrategy[]{
+        ReadWaitStrategies.blockingRead(),
+        ReadWaitStrategies.fixedInterval(10, TimeUnit.SECONDS),
+        ReadWaitStrategies.spinThenPark(1, 10, TimeUnit.SECONDS),
+        ReadWaitStrategies.exponentialBackoff(10, 20, TimeUnit.SECONDS)
+    };
+
+    for (final ReadWaitStrategy strategy : strategies) {
+      Thread.currentThread().interrupt();
+      assertThrows(InterruptedException.class, new Executable() {
+        public void execute() throws Throwable {
+          strategy.await(1, TimeUnit.SECONDS.toNanos(10));
+        }
+      });
+      assertFalse(Thread.currentThread().isInterrupted());
+    }
+  }
+
+}
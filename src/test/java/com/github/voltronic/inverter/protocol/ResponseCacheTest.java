@@ -0,0 +1,131 @@
+package com.github.voltronic.inverter.protocol;
+
+import com.github.voltronic.inverter.CommandTestDevice;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseCacheTest {
+
+  private CommandTestDevice device;
+  private ResponseCache cache;
+
+  @BeforeEach
+  public void setup() {
+    this.device = new CommandTestDevice();
+    this.device.setResponse("QID", "(92931701100510");
+    this.device.setResponse("QVFW", "(VERFW:00072.70");
+    this.device.setResponse("QMOD", "(L");
+    this.device.setResponse("PCP02", "(ACK");
+    this.cache = new ResponseCache(new P30Protocol().newSession(this.device), 2);
+    this.cache.setTimeToLive("QID", 1, TimeUnit.HOURS);
+    this.cache.setTimeToLive("QVFW", 1, TimeUnit.HOURS);
+  }
+
+  @Test
+  @DisplayName("Responses are served from memory until they expire")
+  public void testCachedUntilExpired() throws Exception {
+    assertEquals("(92931701100510", cache.query("QID", 1, TimeUnit.SECONDS));
+    assertEquals("(92931701100510", cache.query("QID", 1, TimeUnit.SECONDS));
+    assertEquals("(L", cache.query("QMOD", 1, TimeUnit.SECONDS));
+    assertEquals("(L", cache.query("QMOD", 1, TimeUnit.SECONDS));
+    assertEquals("[QID, QMOD, QMOD]", device.getCommands().toString());
+    assertEquals(1, cache.getHits());
+    assertEquals(3, cache.getMisses());
+
+    cache.setTimeToLive("QVFW", 1, TimeUnit.NANOSECONDS);
+    cache.query("QVFW", 1, TimeUnit.SECONDS);
+    cache.query("QVFW", 1, TimeUnit.SECONDS);
+    assertEquals("[QID, QMOD, QMOD, QVFW, QVFW]", device.getCommands().toString());
+  }
+
+  @Test
+  @DisplayName("Setter commands invalidate cached responses")
+  public void testSetterInvalidates() throws Exception {
+    cache.query("QID", 1, TimeUnit.SECONDS);
+    cache.query("QVFW", 1, TimeUnit.SECONDS);
+    assertEquals(2, cache.size());
+
+    assertEquals("(ACK", cache.query("PCP02", 1, TimeUnit.SECONDS));
+    assertEquals(0, cache.size());
+
+    cache.query("QID", 1, TimeUnit.SECONDS);
+    cache.invalidate("QID");
+    cache.query("QID", 1, TimeUnit.SECONDS);
+    assertEquals("[QID, QVFW, PCP02, QID, QID]", device.getCommands().toString());
+  }
+
+  @Test
+  @DisplayName("Responses read while the cache is invalidated are not cached")
+  public void testConcurrentSetterAndQuery() throws Exception {
+    device.setResponseDelay("QID", 100, TimeUnit.MILLISECONDS);
+
+    final Thread invalidated = startQuery("QID");
+    awaitCommands(1);
+    cache.invalidateAll();
+    invalidated.join();
+    assertEquals(0, cache.size());
+
+    final Thread overtaken = startQuery("QID");
+    awaitCommands(2);
+    assertEquals("(ACK", cache.query("PCP02", 5, TimeUnit.SECONDS));
+    overtaken.join();
+    assertEquals(0, cache.size());
+
+    cache.query("QID", 5, TimeUnit.SECONDS);
+    assertEquals("[QID, QID, PCP02, QID]", device.getCommands().toString());
+  }
+
+  private Thread startQuery(final String command) {
+    final Thread thread = new Thread(new Runnable() {
+      public void run() {
+        try {
+          cache.query(command, 5, TimeUnit.SECONDS);
+        } catch (final IOException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+
+    thread.start();
+    return thread;
+  }
+
+  private void awaitCommands(final int count) throws InterruptedException {
+    final long endTime = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (device.getCommands().size() < count && System.nanoTime() < endTime) {
+      Thread.sleep(1);
+    }
+    assertEquals(count, device.getCommands().size());
+  }
+
+  @Test
+  @DisplayName("Cache size is bounded and NAK responses are not cached")
+  public void testBoundedAndNakNotCached() throws Exception {
+    cache.setTimeToLive("QMN", 1, TimeUnit.HOURS);
+    cache.query("QID", 1, TimeUnit.SECONDS);
+    cache.query("QVFW", 1, TimeUnit.SECONDS);
+    cache.query("QID", 1, TimeUnit.SECONDS);
+    assertEquals("(NAK", cache.query("QMN", 1, TimeUnit.SECONDS));
+    assertEquals(2, cache.size());
+
+    device.setResponse("QMN", "(MKS2-5000");
+    cache.query("QMN", 1, TimeUnit.SECONDS);
+    assertEquals(2, cache.size());
+    cache.query("QID", 1, TimeUnit.SECONDS);
+    cache.query("QVFW", 1, TimeUnit.SECONDS);
+    assertEquals("[QID, QVFW, QMN, QMN, QVFW]", device.getCommands().toString());
+
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      public void execute() throws Throwable {
+        new ResponseCache(cache.getSession(), 0);
+      }
+    });
+  }
+
+}
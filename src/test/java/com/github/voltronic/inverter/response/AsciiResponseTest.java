@@ -0,0 +1,60 @@
+package com.github.voltronic.inverter.response;
+
+import com.github.voltronic.inverter.CommandTestDevice;
+import com.github.voltronic.inverter.IOTestDevice;
+import com.github.voltronic.inverter.protocol.P30Protocol;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import static com.github.voltronic.inverter.ByteUtil.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsciiResponseTest {
+
+  @Test
+  @DisplayName("Responses are read as ASCII views")
+  public void testReadAscii() throws Exception {
+    final IOTestDevice device = new IOTestDevice();
+    device.setInput(CommandTestDevice.frame("(230.0 50.0 L"));
+
+    final AsciiResponse response = new P30Protocol().readAscii(device, 1, TimeUnit.SECONDS);
+    assertEquals(13, response.length());
+    assertEquals('(', response.charAt(0));
+    assertEquals(3, response.getFieldCount());
+    assertTrue(response.getField(1).toString().equals("50.0"));
+    assertEquals("(230.0 50.0 L", response.toString());
+    assertSame(response.toString(), response.toString());
+    assertFalse(response.isNak());
+
+    final QmodResponse qmod = new QmodResponse();
+    qmod.decode(response.getField(2).asByteBuffer());
+    assertEquals(DeviceMode.LINE, qmod.getMode());
+  }
+
+  @Test
+  @DisplayName("Views behave like the decoded string")
+  public void testCharSequenceContract() {
+    final byte[] bytes = bytes(bytes("x(NAK"), bytes(0x80));
+    final AsciiResponse response = AsciiResponse.wrap(bytes, 1, 5);
+
+    assertEquals("(NAK\uFFFD", response.toString());
+    assertTrue(response.subSequence(0, 4).isNak());
+    assertTrue(response.contentEquals("(NAK\uFFFD"));
+    assertEquals("NA", response.subSequence(1, 3).toString());
+    assertEquals(1, response.getFieldCount());
+
+    final ByteBuffer data = ByteBuffer.wrap(bytes("(1 2"));
+    assertEquals(2, AsciiResponse.copyOf(data).getFieldCount());
+    assertEquals(0, data.position());
+
+    assertThrows(IndexOutOfBoundsException.class, new Executable() {
+      public void execute() throws Throwable {
+        response.charAt(5);
+      }
+    });
+  }
+
+}
@@ -0,0 +1,118 @@
+package com.github.voltronic.inverter.response;
+
+import com.github.voltronic.inverter.exception.MalformedResponseException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TypedResponseTest {
+
+  private static final String QPIGS = "(240.1 49.9 240.1 49.9 0240 0185 004 435 54.00 000 100 "
+      + "0055 0000 000.0 00.00 00000 00010101 00 00 00000 110";
+
+  private static ByteBuffer data(final String response) {
+    return ByteBuffer.wrap(response.getBytes(Charset.forName("US-ASCII")));
+  }
+
+  @Test
+  @DisplayName("QPIGS is decoded into primitive fields")
+  public void testQpigs() throws Exception {
+    final QpigsResponse response = new QpigsResponse();
+    final ByteBuffer data = data(QPIGS);
+    response.decode(data);
+
+    assertEquals(0, data.position());
+    assertEquals("QPIGS", response.getCommand());
+    assertEquals(240.1, response.getGridVoltage());
+    assertEquals(49.9, response.getGridFrequency());
+    assertEquals(240, response.getAcOutputApparentPower());
+    assertEquals(185, response.getAcOutputActivePower());
+    assertEquals(4, response.getOutputLoadPercent());
+    assertEquals(435, response.getBusVoltage());
+    assertEquals(54.0, response.getBatteryVoltage());
+    assertEquals(100, response.getBatteryCapacity());
+    assertEquals(55, response.getHeatSinkTemperature());
+    assertEquals(0x15, response.getDeviceStatus());
+    assertTrue(response.isLoadOn());
+    assertTrue(response.isCharging());
+    assertTrue(response.isAcCharging());
+    assertFalse(response.isSccCharging());
+    assertTrue(response.isExtended());
+    assertTrue(response.isSwitchedOn());
+    assertTrue(response.isChargingToFloat());
+    assertFalse(response.isDustproofInstalled());
+
+    response.decode(data("(230.0 50.0 230.0 50.0 0100 0090 002 400 52.10 010 080 "
+        + "0040 0001 120.5 52.20 00000 00000110"));
+    assertEquals(230.0, response.getGridVoltage());
+    assertEquals(120.5, response.getPvInputVoltage());
+    assertEquals(52.2, response.getBatteryVoltageFromScc());
+    assertTrue(response.isSccCharging());
+    assertFalse(response.isLoadOn());
+    assertFalse(response.isExtended());
+    assertEquals(0, response.getDeviceStatus2());
+  }
+
+  @Test
+  @DisplayName("QPIRI, QMOD and QPIWS are decoded")
+  public void testOtherResponses() throws Exception {
+    final QpiriResponse qpiri = new QpiriResponse();
+    qpiri.decode(data("(230.0 21.7 230.0 50.0 21.7 5000 4000 48.0 46.0 42.0 56.4 54.0 "
+        + "0 10 010 1 0 0 6 01 0 0 54.0 0 1"));
+    assertEquals(230.0, qpiri.getGridRatingVoltage());
+    assertEquals(5000, qpiri.getAcOutputRatingApparentPower());
+    assertEquals(56.4, qpiri.getBatteryBulkVoltage());
+    assertEquals(10, qpiri.getMaximumChargingCurrent());
+    assertEquals(6, qpiri.getParallelMaximum());
+    assertEquals(54.0, qpiri.getBatteryRedischargeVoltage());
+    assertEquals(1, qpiri.getPvPowerBalance());
+
+    final QmodResponse qmod = new QmodResponse();
+    qmod.decode(data("(B"));
+    assertEquals(DeviceMode.BATTERY, qmod.getMode());
+    qmod.decode(data("(X"));
+    assertEquals(DeviceMode.UNKNOWN, qmod.getMode());
+    assertEquals('X', qmod.getModeCode());
+
+    final QpiwsResponse qpiws = new QpiwsResponse();
+    qpiws.decode(data("(01000000000000000000000000000000"));
+    assertTrue(qpiws.isSet(QpiwsResponse.INVERTER_FAULT));
+    assertFalse(qpiws.isSet(QpiwsResponse.BUS_OVER));
+    assertEquals(1, qpiws.getWarningCount());
+  }
+
+  @Test
+  @DisplayName("Malformed responses report the offending field")
+  public void testMalformed() throws Exception {
+    final QpigsResponse response = new QpigsResponse();
+
+    final MalformedResponseException nak = assertThrows(MalformedResponseException.class,
+        new Executable() {
+          public void execute() throws Throwable {
+            response.decode(data("(NAK"));
+          }
+        });
+    assertEquals(-1, nak.getFieldIndex());
+
+    final MalformedResponseException invalid = assertThrows(MalformedResponseException.class,
+        new Executable() {
+          public void execute() throws Throwable {
+            response.decode(data("(240.1 49.x9"));
+          }
+        });
+    assertEquals(1, invalid.getFieldIndex());
+
+    final MalformedResponseException truncated = assertThrows(MalformedResponseException.class,
+        new Executable() {
+          public void execute() throws Throwable {
+            response.decode(data("(240.1 49.9 240.1"));
+          }
+        });
+    assertEquals(3, truncated.getFieldIndex());
+  }
+
+}
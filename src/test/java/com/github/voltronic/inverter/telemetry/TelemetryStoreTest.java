@@ -0,0 +1,125 @@
+package com.github.voltronic.inverter.telemetry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TelemetryStoreTest {
+
+  private TelemetryStore<String> store;
+
+  @BeforeEach
+  public void setup() {
+    this.store = new TelemetryStore<String>(2, 4, 4, 4);
+  }
+
+  @Test
+  @DisplayName("Samples within one bucket are aggregated to minimum, maximum and average")
+  public void testAggregation() {
+    store.record("A", 60000, 230.0, 10.0);
+    store.record("A", 60500, 232.0, 30.0);
+    store.record("A", 61000, 231.0, 20.0);
+
+    final long[] timestamps = new long[8];
+    final double[] minimum = new double[8];
+    final double[] maximum = new double[8];
+    final double[] average = new double[8];
+
+    final TelemetryHistory history = store.getHistory("A");
+    assertEquals(2, history.read(Resolution.SECOND, 0, 0, timestamps, minimum, maximum, average));
+    assertEquals(60000, timestamps[0]);
+    assertEquals(230.0, minimum[0]);
+    assertEquals(232.0, maximum[0]);
+    assertEquals(231.0, average[0]);
+    assertEquals(61000, timestamps[1]);
+
+    assertEquals(1, history.read(Resolution.MINUTE, 1, 0, timestamps, minimum, maximum, average));
+    assertEquals(60000, timestamps[0]);
+    assertEquals(10.0, minimum[0]);
+    assertEquals(30.0, maximum[0]);
+    assertEquals(20.0, average[0]);
+  }
+
+  @Test
+  @DisplayName("Oldest buckets are overwritten once a resolution is full")
+  public void testRingOverwrite() {
+    for (int second = 0; second < 10; ++second) {
+      store.record("A", second * 1000L, second, -second);
+    }
+
+    final TelemetryHistory history = store.getHistory("A");
+    assertEquals(4, history.size(Resolution.SECOND));
+    assertEquals(1, history.size(Resolution.MINUTE));
+
+    final long[] timestamps = new long[8];
+    final double[] maximum = new double[8];
+    assertEquals(4, history.read(Resolution.SECOND, 0, 0, timestamps, null, maximum, null));
+    assertArrayEquals(new long[]{6000, 7000, 8000, 9000, 0, 0, 0, 0}, timestamps);
+    assertEquals(9.0, maximum[3]);
+
+    assertEquals(2, history.read(Resolution.SECOND, 0, 8000, timestamps, null, null, null));
+    assertEquals(8000, timestamps[0]);
+    assertEquals(1, history.read(Resolution.SECOND, 0, 0, new long[1], null, null, null));
+  }
+
+  @Test
+  @DisplayName("Samples older than the current bucket are dropped")
+  public void testOutOfOrderSamples() {
+    store.record("A", 5000, 1.0, 1.0);
+    store.record("A", 3000, 2.0, 2.0);
+
+    final TelemetryHistory history = store.getHistory("A");
+    assertEquals(1, history.getDroppedSamples());
+    assertEquals(1, history.size(Resolution.SECOND));
+    assertEquals(1, history.size(Resolution.MINUTE));
+  }
+
+  @Test
+  @DisplayName("Devices keep separate histories")
+  public void testSeparateDevices() {
+    store.record("A", 1000, 1.0, 1.0);
+    store.record("B", 1000, 2.0, 2.0);
+
+    assertEquals(2, store.getKeys().size());
+    assertNotSame(store.getHistory("A"), store.getHistory("B"));
+
+    store.remove("A");
+    assertFalse(store.getKeys().contains("A"));
+  }
+
+  @Test
+  @DisplayName("Field count and capacities are validated")
+  public void testValidation() {
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      public void execute() {
+        store.record("A", 0, 1.0);
+      }
+    });
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      public void execute() {
+        new TelemetryStore<String>(0);
+      }
+    });
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      public void execute() {
+        new TelemetryStore<String>(1, 0, 1, 1);
+      }
+    });
+    assertEquals((16 + 16 * 30) * (900 + 1440 + 2688),
+        new TelemetryStore<String>(30).getMemoryPerDevice());
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      public void execute() {
+        new TelemetryStore<String>(1 << 20, 1000, 1, 1);
+      }
+    });
+    assertThrows(NullPointerException.class, new Executable() {
+      public void execute() {
+        store.getHistory(null);
+      }
+    });
+  }
+
+}